@@ -0,0 +1,49 @@
+package elf.bench;
+
+import java.util.concurrent.Callable;
+
+/**
+ * One measured operation. The runner calls {@link #setUp()} once, then {@link #run()} over and over,
+ * first to warm up and then to measure; whatever run returns is kept alive so that the work can
+ * not be optimized away.
+ */
+public abstract class Benchmark {
+    private final String name;
+
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Benchmark of an operation without state of its own.
+     */
+    public static Benchmark of(String name, Callable<Object> operation) {
+        return new Benchmark(name) {
+            @Override
+            public Object run() throws Exception {
+                return operation.call();
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Prepares state shared by every call of {@link #run()}. Its time and allocations are not measured.
+     */
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Performs the operation once.
+     */
+    public abstract Object run() throws Exception;
+
+    /**
+     * Releases what {@link #setUp()} acquired.
+     */
+    public void tearDown() throws Exception {
+    }
+}
@@ -0,0 +1,187 @@
+package elf.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Runs benchmarks the way JMH does in its simplest mode: a few warmup iterations, then measured
+ * iterations of fixed duration, each calling the operation as many times as fits.
+ *
+ * Besides throughput it reports, like JMH's gc profiler, bytes allocated per operation by the
+ * measuring thread, and collections and their time over the measured iterations, so that
+ * allocation regressions show up as well as slowdowns. Allocation of other threads, e.g. the
+ * fork join pool, is not counted.
+ *
+ * Usage: BenchmarkRunner [regex] [-wi warmupIterations] [-i iterations] [-t millisPerIteration] [-l]
+ * where regex selects benchmarks by name and -l only lists them.
+ */
+public class BenchmarkRunner {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Keeps results of the measured operation reachable
+    public static volatile Object sink;
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+
+    public BenchmarkRunner(int warmupIterations, int iterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    public static List<Benchmark> allBenchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.addAll(DataTypeBenchmarks.all());
+        benchmarks.addAll(TableBenchmarks.all());
+        benchmarks.addAll(ElfBenchmarks.all());
+        return benchmarks;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Pattern filter = Pattern.compile(".*");
+        int warmupIterations = 3;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        boolean list = false;
+
+        for(int i = 0; i < args.length; i++){
+            switch (args[i]){
+                case "-wi": warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i":  iterations = Integer.parseInt(args[++i]);       break;
+                case "-t":  iterationMillis = Long.parseLong(args[++i]);    break;
+                case "-l":  list = true;                                    break;
+                default:    filter = Pattern.compile(args[i]);
+            }
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, iterations, iterationMillis);
+        System.out.println(String.format(Locale.ROOT, "%-40s %14s %10s %14s %14s %8s %8s",
+                "Benchmark", "ops/s", "error", "ns/op", "B/op", "gc.count", "gc.ms"));
+        for(Benchmark benchmark : allBenchmarks()){
+            if(!filter.matcher(benchmark.getName()).find()){
+                continue;
+            }
+            if(list){
+                System.out.println(benchmark.getName());
+                continue;
+            }
+            System.out.println(runner.run(benchmark));
+        }
+    }
+
+    public Result run(Benchmark benchmark) throws Exception {
+        benchmark.setUp();
+        try {
+            for(int i = 0; i < warmupIterations; i++){
+                iterate(benchmark);
+            }
+
+            double[] throughputs = new double[iterations];
+            long operations = 0;
+            long nanos = 0;
+            long bytes = 0;
+            long collectionsBefore = collectionCount();
+            long collectionMillisBefore = collectionMillis();
+            for(int i = 0; i < iterations; i++){
+                long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+                long[] iteration = iterate(benchmark);
+                bytes += THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                operations += iteration[0];
+                nanos += iteration[1];
+                throughputs[i] = iteration[0] * 1e9 / iteration[1];
+            }
+            return new Result(benchmark.getName(), throughputs, (double) nanos / operations,
+                    (double) bytes / operations, collectionCount() - collectionsBefore,
+                    collectionMillis() - collectionMillisBefore);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    // Returns number of operations and nanoseconds they took; runs at least one operation
+    private long[] iterate(Benchmark benchmark) throws Exception {
+        long operations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink = benchmark.run();
+            operations++;
+            elapsed = System.nanoTime() - start;
+        } while(elapsed < iterationNanos);
+        return new long[]{operations, elapsed};
+    }
+
+    private static long collectionCount() {
+        long count = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()){
+            count += Math.max(collector.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private static long collectionMillis() {
+        long millis = 0;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()){
+            millis += Math.max(collector.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+
+    public static class Result {
+        private final String name;
+        private final double throughput;
+        private final double error;
+        private final double nanosPerOperation;
+        private final double bytesPerOperation;
+        private final long collections;
+        private final long collectionMillis;
+
+        Result(String name, double[] throughputs, double nanosPerOperation, double bytesPerOperation,
+               long collections, long collectionMillis) {
+            this.name = name;
+            this.nanosPerOperation = nanosPerOperation;
+            this.bytesPerOperation = bytesPerOperation;
+            this.collections = collections;
+            this.collectionMillis = collectionMillis;
+
+            double sum = 0;
+            for(double throughput : throughputs){
+                sum += throughput;
+            }
+            throughput = sum / throughputs.length;
+            double squares = 0;
+            for(double t : throughputs){
+                squares += (t - throughput) * (t - throughput);
+            }
+            // Standard deviation; there is no spread to report for a single iteration
+            error = throughputs.length > 1 ? Math.sqrt(squares / (throughputs.length - 1)) : 0;
+        }
+
+        public String getName() { return name; }
+
+        public double getThroughput() { return throughput; }
+
+        public double getError() { return error; }
+
+        public double getNanosPerOperation() { return nanosPerOperation; }
+
+        public double getBytesPerOperation() { return bytesPerOperation; }
+
+        public long getCollections() { return collections; }
+
+        public long getCollectionMillis() { return collectionMillis; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-40s %14.3f %10.3f %14.1f %14.1f %8d %8d",
+                    name, throughput, error, nanosPerOperation, bytesPerOperation, collections, collectionMillis);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package elf.bench;
+
+import elf.datatype.*;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Serialization of a single value of every elf data type.
+ */
+public final class DataTypeBenchmarks {
+    private DataTypeBenchmarks() {
+    }
+
+    public static List<Benchmark> all() {
+        return List.of(
+                toBytes(new Elf64Byte((short) 0x7f)),
+                toBytes(new Elf64Half(0x3e)),
+                toBytes(new Elf64Word(0xdeadbeefL)),
+                toBytes(new Elf64SWord(-42)),
+                toBytes(new Elf64SXWord(-42L)),
+                toBytes(new Elf64Address(new BigInteger("ffffffff81000000", 16))),
+                toBytes(new Elf64Offset(BigInteger.valueOf(0x1000))),
+                toBytes(new Elf64XWord(new BigInteger("8000000000000000", 16))),
+                toBytes(new Elf64LongAddress(0xffffffff81000000L)),
+                toBytes(new Elf64LongOffset(0x1000)),
+                toBytes(new Elf64LongXWord(Long.MIN_VALUE))
+        );
+    }
+
+    private static Benchmark toBytes(ElfDataType<?> value) {
+        return Benchmark.of("toBytes." + value.getClass().getSimpleName(), value::toBytes);
+    }
+
+    private static Benchmark toBytes(ElfLongDataType value) {
+        return Benchmark.of("toBytes." + value.getClass().getSimpleName(), value::toBytes);
+    }
+}
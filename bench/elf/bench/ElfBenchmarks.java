@@ -0,0 +1,60 @@
+package elf.bench;
+
+import elf.Elf;
+import elf.header.ElfHeader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Elf header serialization, and building and writing whole synthetic objects end to end.
+ */
+public final class ElfBenchmarks {
+    private static final long SEED = 7;
+
+    private ElfBenchmarks() {
+    }
+
+    public static List<Benchmark> all() {
+        ElfHeader header = new ElfHeader();
+        return List.of(
+                Benchmark.of("ElfHeader.toBytes", header::toBytes),
+                new BuildAndWrite(1_000),
+                new BuildAndWrite(100_000),
+                new BuildAndWrite(1_000_000)
+        );
+    }
+
+    /**
+     * Builds a synthetic object of N symbols, finalizes it and writes it to a temporary file.
+     */
+    public static class BuildAndWrite extends Benchmark {
+        private final int count;
+        private String[] names;
+        private Path file;
+
+        public BuildAndWrite(int count) {
+            super("Elf.buildAndWrite." + count);
+            this.count = count;
+        }
+
+        @Override
+        public void setUp() throws Exception {
+            names = SyntheticObjects.symbolNames(count, SEED);
+            file = Files.createTempFile("bench", ".elf");
+        }
+
+        @Override
+        public Object run() {
+            Elf elf = SyntheticObjects.build(names);
+            elf.writeToFile(file.toString());
+            return elf;
+        }
+
+        @Override
+        public void tearDown() throws Exception {
+            Files.deleteIfExists(file);
+        }
+    }
+}
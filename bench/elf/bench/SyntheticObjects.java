@@ -0,0 +1,78 @@
+package elf.bench;
+
+import elf.Elf;
+import elf.header.ElfHeader;
+import elf.section.string.StringTable;
+import elf.section.symbol.Symbol;
+import elf.section.symbol.SymbolTable;
+import elf.section.text.Function;
+import elf.section.text.Text;
+
+import java.util.Random;
+
+/**
+ * Generates synthetic object files of a given number of symbols, deterministic for a seed.
+ *
+ * Names look like mangled C++ ones: a namespace and class out of small pools and a numbered
+ * member, so that they share prefixes and suffixes the way real symbol names do; about one in
+ * ten names repeats an earlier one. The first {@link #FUNCTION_LIMIT} symbols are functions
+ * assembled into .text, each a few instructions long and calling the one before it; the rest are
+ * absolute data symbols, so building large objects measures the tables rather than the assembler.
+ */
+public final class SyntheticObjects {
+    public static final int FUNCTION_LIMIT = 256;
+    private static final int SHN_ABS = 0xfff1;
+    private static final int NAMESPACES = 16;
+    private static final int CLASSES = 512;
+
+    private SyntheticObjects() {
+    }
+
+    public static String[] symbolNames(int count, long seed) {
+        Random random = new Random(seed);
+        String[] names = new String[count];
+        for(int i = 0; i < count; i++){
+            if(i > 0 && random.nextInt(10) == 0){
+                names[i] = names[random.nextInt(i)];
+                continue;
+            }
+            String namespace = "ns" + random.nextInt(NAMESPACES);
+            String type = "Class" + random.nextInt(CLASSES);
+            String member = "member" + i;
+            names[i] = "_ZN" + namespace.length() + namespace + type.length() + type + member.length() + member + "Ev";
+        }
+        return names;
+    }
+
+    /**
+     * Builds an object with a symbol for each name, finalized and ready to be written.
+     */
+    public static Elf build(String[] names) {
+        ElfHeader header = new ElfHeader();
+        header.objectFileType.setValue(ElfHeader.FileType.ET_EXEC.getValue());
+        Elf elf = new Elf(header);
+        elf.setBaseAddress(0x400000);
+
+        Text text = elf.createText();
+        int functions = Math.min(names.length, FUNCTION_LIMIT);
+        for(int i = 0; i < functions; i++){
+            Function function = text.beginFunction("fn" + i + names[i]);
+            function.assembler().nop();
+            if(i > 0){
+                function.call("fn" + (i - 1) + names[i - 1]);
+            }
+            function.assembler().ret();
+            text.endFunction();
+        }
+
+        SymbolTable symbols = elf.getSymbolTable();
+        StringTable strings = elf.getStringTable();
+        int info = Symbol.makeInfo(Symbol.SymbolBindings.STB_GLOBAL, Symbol.SymbolType.STT_OBJECT);
+        for(int i = functions; i < names.length; i++){
+            symbols.addSymbol(names[i], strings.addStringOffset(names[i]), info, 0, SHN_ABS, 0x10000000L + 8L * i, 8);
+        }
+
+        elf.finalizeElfStructure();
+        return elf;
+    }
+}
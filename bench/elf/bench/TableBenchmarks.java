@@ -0,0 +1,129 @@
+package elf.bench;
+
+import elf.encoding.ElfEncoder;
+import elf.section.string.StringTable;
+import elf.section.symbol.Symbol;
+import elf.section.symbol.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Filling string and symbol tables from scratch with synthetic symbol names, and writing the
+ * symbol table out with each encoder.
+ */
+public final class TableBenchmarks {
+    private static final long SEED = 42;
+
+    private TableBenchmarks() {
+    }
+
+    public static List<Benchmark> all() {
+        return List.of(
+                new AddStrings(100_000),
+                new AddSymbols(100_000, true),
+                new AddSymbols(100_000, false),
+                new WriteSymbols(100_000, ElfEncoder.ELF64_LSB),
+                new WriteSymbols(100_000, ElfEncoder.ELF64_MSB),
+                new WriteSymbols(100_000, ElfEncoder.ELF32_LSB),
+                new WriteSymbols(100_000, ElfEncoder.ELF32_MSB)
+        );
+    }
+
+    /**
+     * Adds N names, some of them repeated, to a new string table.
+     */
+    public static class AddStrings extends Benchmark {
+        private final int count;
+        private String[] names;
+
+        public AddStrings(int count) {
+            super("StringTable.addString." + count);
+            this.count = count;
+        }
+
+        @Override
+        public void setUp() {
+            names = SyntheticObjects.symbolNames(count, SEED);
+        }
+
+        @Override
+        public Object run() {
+            StringTable table = new StringTable();
+            for(String name : names){
+                table.addString(name);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Adds N symbols to a new symbol table, with their names tracked or not.
+     */
+    public static class AddSymbols extends Benchmark {
+        private final int count;
+        private final boolean trackNames;
+        private String[] names;
+        private int[] nameOffsets;
+
+        public AddSymbols(int count, boolean trackNames) {
+            super("SymbolTable.addSymbol." + count + (trackNames ? ".named" : ".unnamed"));
+            this.count = count;
+            this.trackNames = trackNames;
+        }
+
+        @Override
+        public void setUp() {
+            names = SyntheticObjects.symbolNames(count, SEED);
+            StringTable strings = new StringTable();
+            nameOffsets = new int[count];
+            for(int i = 0; i < count; i++){
+                nameOffsets[i] = strings.addStringOffset(names[i]);
+            }
+        }
+
+        @Override
+        public Object run() {
+            SymbolTable table = new SymbolTable(16, trackNames);
+            int info = Symbol.makeInfo(Symbol.SymbolBindings.STB_GLOBAL, Symbol.SymbolType.STT_FUNC);
+            for(int i = 0; i < count; i++){
+                table.addSymbol(names[i], nameOffsets[i], info, 0, 1, 0x400000L + 16L * i, 16);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Writes a symbol table of N symbols into a heap buffer, with one encoder.
+     */
+    public static class WriteSymbols extends Benchmark {
+        private final int count;
+        private final ElfEncoder encoder;
+        private SymbolTable table;
+        private ByteBuffer buffer;
+
+        public WriteSymbols(int count, ElfEncoder encoder) {
+            super("SymbolTable.writeTo." + count + "." + encoder.getFileClass() + "." + encoder.getDataEncoding());
+            this.count = count;
+            this.encoder = encoder;
+        }
+
+        @Override
+        public void setUp() {
+            table = new SymbolTable(count, false);
+            table.setEncoder(encoder);
+            int info = Symbol.makeInfo(Symbol.SymbolBindings.STB_GLOBAL, Symbol.SymbolType.STT_FUNC);
+            for(int i = 0; i < count; i++){
+                table.addSymbol(i, info, 0, 1, 0x400000L + 16L * i, 16);
+            }
+            buffer = ByteBuffer.allocate((int) table.getSizeInBytes());
+        }
+
+        @Override
+        public Object run() {
+            buffer.clear();
+            table.writeTo(buffer);
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package elf.check;
+
+/**
+ * One correctness check. It builds or reads something, and compares the result with what it
+ * has to be, worked out the plainest way there is: by brute force, or by decoding the file the
+ * way a reader of the format would. A check fails by throwing.
+ */
+public abstract class Check {
+    private final String name;
+
+    protected Check(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Check of an operation without state of its own.
+     */
+    public static Check of(String name, Body body) {
+        return new Check(name) {
+            @Override
+            public void run() throws Exception {
+                body.run();
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Performs the check, throwing if it fails.
+     */
+    public abstract void run() throws Exception;
+
+    public static void require(boolean condition, String message) {
+        if(!condition){
+            throw new CheckFailure(message);
+        }
+    }
+
+    public static void requireEquals(long expected, long actual, String what) {
+        if(expected != actual){
+            throw new CheckFailure(what + ": expected " + expected + " (0x" + Long.toHexString(expected)
+                    + "), was " + actual + " (0x" + Long.toHexString(actual) + ")");
+        }
+    }
+
+    @FunctionalInterface
+    public interface Body {
+        void run() throws Exception;
+    }
+
+    /**
+     * Thrown by a check whose result differs from the expected one.
+     */
+    public static class CheckFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public CheckFailure(String message) {
+            super(message);
+        }
+    }
+}
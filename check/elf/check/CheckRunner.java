@@ -0,0 +1,71 @@
+package elf.check;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Runs correctness checks, one after another, and reports each as passed or failed. Exits with
+ * status 1 if any of them failed, so it can gate a build.
+ *
+ * Usage: CheckRunner [regex] [-l]
+ * where regex selects checks by name and -l only lists them.
+ */
+public class CheckRunner {
+
+    public static List<Check> allChecks() {
+        List<Check> checks = new ArrayList<>();
+        checks.addAll(IndexChecks.all());
+        checks.addAll(RelrChecks.all());
+        checks.addAll(GnuHashChecks.all());
+        checks.addAll(CompressionChecks.all());
+        checks.addAll(WriterChecks.all());
+        checks.addAll(SegmentChecks.all());
+        return checks;
+    }
+
+    public static void main(String[] args) {
+        Pattern filter = Pattern.compile(".*");
+        boolean list = false;
+        for(String arg : args){
+            if(arg.equals("-l")){
+                list = true;
+            } else {
+                filter = Pattern.compile(arg);
+            }
+        }
+
+        int passed = 0;
+        int failed = 0;
+        for(Check check : allChecks()){
+            if(!filter.matcher(check.getName()).find()){
+                continue;
+            }
+            if(list){
+                System.out.println(check.getName());
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                check.run();
+                passed++;
+                System.out.println(String.format(Locale.ROOT, "PASS %-50s %8.1f ms", check.getName(),
+                        (System.nanoTime() - start) / 1e6));
+            } catch (Check.CheckFailure failure) {
+                failed++;
+                System.out.println("FAIL " + check.getName() + ": " + failure.getMessage());
+            } catch (Exception | AssertionError | LinkageError ex) {
+                failed++;
+                System.out.println("FAIL " + check.getName() + ": " + ex);
+                ex.printStackTrace(System.out);
+            }
+        }
+        if(!list){
+            System.out.println(passed + " passed, " + failed + " failed");
+        }
+        if(failed > 0){
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package elf.check;
+
+import elf.Elf;
+import elf.header.ElfHeader;
+import elf.reader.ElfReader;
+import elf.reader.SectionHeaderView;
+import elf.reader.SymbolTableView;
+import elf.reader.SymbolView;
+import elf.section.SectionCompressor;
+import elf.section.SectionHeaderEntry.SectionFlag;
+import elf.section.SectionHeaderEntry.SectionType;
+import elf.section.symbol.Symbol;
+import elf.section.symbol.SymbolAddressIndex;
+import elf.section.symbol.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Inflater;
+
+import static elf.check.Check.require;
+import static elf.check.Check.requireEquals;
+
+/**
+ * Compressed sections of the written file, inflated the way a reader of the format does, against
+ * the contents they were compressed from.
+ */
+public final class CompressionChecks {
+    private static final int CHDR_SIZE = 24;
+
+    private CompressionChecks() {
+    }
+
+    public static List<Check> all() {
+        return List.of(
+                Check.of("SectionCompressor.roundTrip.oneChunk", () -> checkRoundTrip(100_000)),
+                Check.of("SectionCompressor.roundTrip.chunkBoundary", () -> checkRoundTrip(2 * SectionCompressor.CHUNK_SIZE)),
+                Check.of("SectionCompressor.roundTrip.manyChunks", () -> checkRoundTrip(5 * SectionCompressor.CHUNK_SIZE / 2 + 17)),
+                Check.of("SectionCompressor.incompressible", CompressionChecks::checkIncompressible),
+                Check.of("ElfReader.compressed.contents", CompressionChecks::checkReaderContents),
+                Check.of("ElfReader.compressed.symbolTable", CompressionChecks::checkReaderSymbolTable)
+        );
+    }
+
+    // Text of words from a small vocabulary: compressible, but not into nothing
+    static byte[] compressible(int size, long seed) {
+        Random random = new Random(seed);
+        String[] words = new String[64];
+        for(int i = 0; i < words.length; i++){
+            words[i] = Long.toString(random.nextLong() & 0xFFFFFFFFL, 36) + ' ';
+        }
+        byte[] contents = new byte[size];
+        for(int position = 0; position < size; ){
+            for(byte b : words[random.nextInt(words.length)].getBytes()){
+                if(position < size){
+                    contents[position++] = b;
+                }
+            }
+        }
+        return contents;
+    }
+
+    private static void checkRoundTrip(int size) throws Exception {
+        byte[] contents = compressible(size, size);
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.DataSection section = new SampleFiles.DataSection(".comment.big", contents, 16);
+        elf.addSection(section, SectionType.SHT_PROGBITS);
+        elf.setCompressionThreshold(section, 4096);
+        elf.finalizeElfStructure();
+        require(section.isCompressed(), "section was not compressed");
+
+        ByteBuffer image = SampleFiles.image(elf);
+        SectionHeaderView header = ElfReader.of(image).findSection(".comment.big");
+        require((header.getFlags() & SectionFlag.SHF_COMPRESSED.getMask()) != 0, "SHF_COMPRESSED not set");
+        require(header.getSize() < size, "compressed size " + header.getSize() + " not below " + size);
+        ByteBuffer stored = raw(image, header);
+
+        requireEquals(SectionCompressor.ELFCOMPRESS_ZLIB, stored.getInt(0), "ch_type");
+        requireEquals(size, stored.getLong(8), "ch_size");
+        requireEquals(16, stored.getLong(16), "ch_addralign");
+
+        byte[] deflated = new byte[stored.limit() - CHDR_SIZE];
+        stored.get(CHDR_SIZE, deflated);
+        Inflater inflater = new Inflater();
+        byte[] inflated = new byte[size + 1];
+        int length;
+        try {
+            inflater.setInput(deflated);
+            length = inflater.inflate(inflated);
+            require(inflater.finished(), "zlib stream does not end after " + length + " bytes");
+            requireEquals(0, inflater.getRemaining(), "bytes after the end of zlib stream");
+        } finally {
+            inflater.end();
+        }
+        requireEquals(size, length, "inflated size");
+        int mismatch = Arrays.mismatch(contents, Arrays.copyOf(inflated, size));
+        requireEquals(-1, mismatch, "first inflated byte differing from contents");
+    }
+
+    private static void checkIncompressible() {
+        byte[] contents = new byte[300_000];
+        new Random(3).nextBytes(contents);
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.DataSection section = new SampleFiles.DataSection(".random", contents, 1);
+        elf.addSection(section, SectionType.SHT_PROGBITS);
+        elf.setCompressionThreshold(section, 0);
+        elf.finalizeElfStructure();
+        require(!section.isCompressed(), "section of random bytes was compressed");
+
+        ByteBuffer image = SampleFiles.image(elf);
+        SectionHeaderView header = ElfReader.of(image).findSection(".random");
+        requireEquals(0, header.getFlags() & SectionFlag.SHF_COMPRESSED.getMask(), "SHF_COMPRESSED");
+        require(raw(image, header).equals(ByteBuffer.wrap(contents)), "contents stored differ");
+    }
+
+    private static void checkReaderContents() {
+        int size = 3 * SectionCompressor.CHUNK_SIZE / 2;
+        byte[] contents = compressible(size, 1);
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.DataSection section = new SampleFiles.DataSection(".comment.big", contents, 16);
+        elf.addSection(section, SectionType.SHT_PROGBITS);
+        elf.setCompressionThreshold(section, 0);
+        elf.finalizeElfStructure();
+
+        ByteBuffer image = SampleFiles.image(elf);
+        ElfReader reader = ElfReader.of(image);
+        SectionHeaderView header = reader.findSection(".comment.big");
+        require(reader.contentsOf(header).equals(ByteBuffer.wrap(contents)), "contents read back differ");
+
+        ByteBuffer stored = raw(image, header);
+        stored.putInt(0, 2);
+        requireRejected(reader, header, "unknown compression type");
+        stored.putInt(0, SectionCompressor.ELFCOMPRESS_ZLIB);
+        stored.putLong(8, size + 1);
+        requireRejected(reader, header, "size above the inflated one");
+        stored.putLong(8, size - 1);
+        requireRejected(reader, header, "size below the inflated one");
+        stored.putLong(8, size);
+        stored.put(CHDR_SIZE + 100, (byte) ~stored.get(CHDR_SIZE + 100));
+        requireRejected(reader, header, "broken stream");
+    }
+
+    private static void requireRejected(ElfReader reader, SectionHeaderView header, String what) {
+        try {
+            reader.contentsOf(header);
+        } catch (IllegalArgumentException expected) {
+            return;
+        }
+        throw new Check.CheckFailure("contents of a section with " + what + " were read");
+    }
+
+    // Index over a compressed symbol table read back, against a scan of the table it was written from
+    private static void checkReaderSymbolTable() {
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.staticExecutable(elf);
+        Random random = new Random(9);
+        SymbolTable symbols = elf.getSymbolTable();
+        int info = Symbol.makeInfo(Symbol.SymbolBindings.STB_GLOBAL, Symbol.SymbolType.STT_OBJECT);
+        for(int i = 0; i < 20_000; i++){
+            String name = "object" + i;
+            symbols.addSymbol(name, elf.getStringTable().addStringOffset(name), info, 0, 0xfff1,
+                    0x10000000L + random.nextInt(1 << 20), random.nextInt(128));
+        }
+        elf.setCompressionThreshold(symbols, 0);
+        elf.finalizeElfStructure();
+        require(symbols.isCompressed(), "symbol table was not compressed");
+
+        SymbolTableView view = ElfReader.of(SampleFiles.image(elf)).getSymbolTable();
+        requireEquals(symbols.getSymbolCount(), view.getSymbolCount(), "symbols read back");
+        SymbolView symbol = view.getSymbol(0);
+        for(int i = 1; i < view.getSymbolCount(); i++){
+            symbol.moveTo(i);
+            require(symbol.getName().equals(symbols.getName(i)), "name of symbol " + i + " read back");
+            requireEquals(symbols.getValue(i), symbol.getValue(), "value of symbol " + i + " read back");
+            requireEquals(symbols.getSize(i), symbol.getSize(), "size of symbol " + i + " read back");
+        }
+        SymbolAddressIndex index = SymbolAddressIndex.of(view);
+        for(long address = 0x10000000L - 16; address < 0x10000000L + (1 << 20) + 144; address += 13){
+            requireEquals(IndexChecks.bruteForce(symbols, address), index.find(address),
+                    "find(0x" + Long.toHexString(address) + ") over compressed table read back");
+        }
+    }
+
+    // Bytes as stored, sliced by offset and size from the image rather than through the reader
+    private static ByteBuffer raw(ByteBuffer image, SectionHeaderView header) {
+        return image.slice(Math.toIntExact(header.getOffset()), Math.toIntExact(header.getSize()))
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,205 @@
+package elf.check;
+
+import elf.Elf;
+import elf.header.ElfHeader;
+import elf.reader.ElfReader;
+import elf.reader.SymbolTableView;
+import elf.reader.SymbolView;
+import elf.section.symbol.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static elf.check.Check.require;
+import static elf.check.Check.requireEquals;
+
+/**
+ * Lookups in the written .gnu.hash, done the way the dynamic loader does them, of every exported
+ * symbol and of names that are not exported, and the values exports are found with.
+ */
+public final class GnuHashChecks {
+
+    private GnuHashChecks() {
+    }
+
+    public static List<Check> all() {
+        return List.of(
+                Check.of("GnuHashTable.lookup.few", () -> checkLookups(3, -1)),
+                Check.of("GnuHashTable.lookup.many", () -> checkLookups(2_000, -1)),
+                Check.of("GnuHashTable.lookup.bloomShift", () -> checkLookups(200, 11)),
+                Check.of("GnuHashTable.lookup.bloomShiftAfterBuild", GnuHashChecks::checkBloomShiftAfterBuild),
+                Check.of("GnuHashTable.lookup.renameAfterBuild", GnuHashChecks::checkRenameAfterBuild),
+                Check.of("Elf.dynamicSymbols.values", GnuHashChecks::checkExportValues)
+        );
+    }
+
+    private static void checkLookups(int functions, int bloomShift) {
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.sharedObject(elf, functions, functions);
+        if(bloomShift >= 0){
+            elf.getGnuHashTable().setBloomShift(bloomShift);
+        }
+        elf.finalizeElfStructure();
+        Lookup lookup = lookup(elf);
+        if(bloomShift >= 0){
+            requireEquals(bloomShift, lookup.bloomShift, "bloom shift written");
+        }
+        requireExports(lookup, functions);
+    }
+
+    // Shift changed once the table is built, which builds it again on the next finalization
+    private static void checkBloomShiftAfterBuild() {
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.sharedObject(elf, 200, 1);
+        elf.finalizeElfStructure();
+        elf.getGnuHashTable().setBloomShift(11);
+        require(!elf.getGnuHashTable().isBuilt(), "table built for the old shift taken as built");
+        elf.finalizeElfStructure();
+        Lookup lookup = lookup(elf);
+        requireEquals(11, lookup.bloomShift, "bloom shift written");
+        requireExports(lookup, 200);
+    }
+
+    // Export renamed, keeping the number of symbols, once the table is built
+    private static void checkRenameAfterBuild() {
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.sharedObject(elf, 200, 2);
+        elf.finalizeElfStructure();
+        SymbolTable symbols = elf.getDynamicSymbolTable();
+        int renamed = symbols.indexOf(SampleFiles.functionName(7));
+        symbols.setNameOffset(renamed, elf.getDynamicStringTable().addStringOffset("renamed"));
+        require(!elf.getGnuHashTable().isBuilt(), "table built before the rename taken as built");
+        elf.finalizeElfStructure();
+
+        Lookup lookup = lookup(elf);
+        lookup.requireFound("renamed");
+        lookup.requireNotFound(SampleFiles.functionName(7));
+        lookup.requireFound(SampleFiles.functionName(8));
+    }
+
+    // Values stay relative to their sections in the table, so laying the file out again keeps them
+    private static void checkExportValues() {
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.sharedObject(elf, 50, 3);
+        elf.finalizeElfStructure();
+        elf.finalizeElfStructure();
+        ElfReader reader = ElfReader.of(SampleFiles.image(elf));
+        SymbolTableView symbols = reader.getSymbolTable(reader.findSection(".dynsym"));
+        SymbolView symbol = symbols.getSymbol(0);
+        int exports = 0;
+        for(int i = 1; i < symbols.getSymbolCount(); i++){
+            symbol.moveTo(i);
+            if(symbol.getSectionIndex() == 0 || symbol.getBinding() == 0){
+                continue;
+            }
+            exports++;
+            requireEquals(SampleFiles.exportAddress(reader, symbol.getName()), symbol.getValue(),
+                    "value of " + symbol.getName());
+        }
+        requireEquals(50 + SampleFiles.DATA_WORDS + 1, exports, "exports");
+        requireEquals(reader.findSection(".data").getAddress() + 8 * 3,
+                elf.getDynamicSymbolTable().getAddress(elf.getDynamicSymbolTable().indexOf(SampleFiles.dataName(3))),
+                "address of " + SampleFiles.dataName(3) + " in memory");
+    }
+
+    private static Lookup lookup(Elf elf) {
+        ElfReader reader = ElfReader.of(SampleFiles.image(elf));
+        return new Lookup(reader.contentsOf(reader.findSection(".gnu.hash")),
+                reader.getSymbolTable(reader.findSection(".dynsym")));
+    }
+
+    private static void requireExports(Lookup lookup, int functions) {
+        for(int i = 0; i < functions; i++){
+            lookup.requireFound(SampleFiles.functionName(i));
+        }
+        for(int i = 0; i < SampleFiles.DATA_WORDS; i++){
+            lookup.requireFound(SampleFiles.dataName(i));
+        }
+        lookup.requireFound("zeros");
+        lookup.requireNotFound("local");
+        lookup.requireNotFound("imported");
+        lookup.requireNotFound("");
+        lookup.requireNotFound(SampleFiles.functionName(functions));
+        lookup.requireNotFound(SampleFiles.dataName(-1));
+        for(int i = 0; i < 1_000; i++){
+            lookup.requireNotFound("absent" + i);
+        }
+    }
+
+    /**
+     * Symbol lookup over a written table.
+     */
+    private static final class Lookup {
+        final int bucketCount;
+        final int symbolOffset;
+        final int bloomSize;
+        final int bloomShift;
+        final ByteBuffer table;
+        final SymbolTableView symbols;
+        final SymbolView symbol;
+
+        Lookup(ByteBuffer table, SymbolTableView symbols) {
+            this.table = table;
+            this.symbols = symbols;
+            this.symbol = symbols.getSymbol(0);
+            bucketCount = table.getInt(0);
+            symbolOffset = table.getInt(4);
+            bloomSize = table.getInt(8);
+            bloomShift = table.getInt(12);
+            require(bucketCount > 0 && Integer.bitCount(bloomSize) == 1, "table header " + bucketCount + " buckets, "
+                    + bloomSize + " bloom words");
+            requireEquals(16L + bloomSize * 8L + bucketCount * 4L + (symbols.getSymbolCount() - symbolOffset) * 4L,
+                    table.limit(), "size of .gnu.hash");
+        }
+
+        static int hash(String name) {
+            int h = 5381;
+            for(byte b : name.getBytes(StandardCharsets.UTF_8)){
+                h = h * 33 + (b & 0xFF);
+            }
+            return h;
+        }
+
+        /**
+         * @return index of the symbol, or -1 if the table has no symbol of the name
+         */
+        int find(String name) {
+            int h = hash(name);
+            long word = table.getLong(16 + 8 * (Integer.divideUnsigned(h, 64) & (bloomSize - 1)));
+            long mask = (1L << (h & 63)) | (1L << ((h >>> bloomShift) & 63));
+            if((word & mask) != mask){
+                return -1;
+            }
+            int buckets = 16 + 8 * bloomSize;
+            int chains = buckets + 4 * bucketCount;
+            int index = table.getInt(buckets + 4 * Integer.remainderUnsigned(h, bucketCount));
+            if(index == 0){
+                return -1;
+            }
+            require(index >= symbolOffset, "bucket points at unhashed symbol " + index);
+            for(;; index++){
+                int chain = table.getInt(chains + 4 * (index - symbolOffset));
+                if((chain | 1) == (h | 1) && symbol.moveTo(index).getName().equals(name)){
+                    return index;
+                }
+                if((chain & 1) != 0){
+                    return -1;
+                }
+            }
+        }
+
+        void requireFound(String name) {
+            int index = find(name);
+            require(index >= 0, name + " not found");
+            symbol.moveTo(index);
+            require(symbol.getSectionIndex() != 0 && symbol.getBinding() != 0, name + " found as symbol "
+                    + index + ", which is not an export");
+        }
+
+        void requireNotFound(String name) {
+            int index = find(name);
+            require(index < 0, name + " found as symbol " + index);
+        }
+    }
+}
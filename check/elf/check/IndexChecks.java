@@ -0,0 +1,126 @@
+package elf.check;
+
+import elf.Elf;
+import elf.header.ElfHeader;
+import elf.reader.ElfReader;
+import elf.reader.SymbolTableView;
+import elf.reader.SymbolView;
+import elf.section.symbol.Symbol;
+import elf.section.symbol.SymbolAddressIndex;
+import elf.section.symbol.SymbolTable;
+
+import java.util.List;
+import java.util.Random;
+
+import static elf.check.Check.require;
+import static elf.check.Check.requireEquals;
+
+/**
+ * {@link SymbolAddressIndex} against a scan over every symbol, for tables built in memory and
+ * read from a file.
+ */
+public final class IndexChecks {
+    private static final int STT_OBJECT = 1;
+    private static final int STT_FUNC = 2;
+    private static final int STT_SECTION = 3;
+    private static final int STT_FILE = 4;
+    private static final long SEED = 17;
+
+    private IndexChecks() {
+    }
+
+    public static List<Check> all() {
+        return List.of(
+                Check.of("SymbolAddressIndex.bruteForce.overlapping", () -> checkRandom(2_000, 1 << 14, 0)),
+                Check.of("SymbolAddressIndex.bruteForce.sparse", () -> checkRandom(5_000, 1L << 40, 0)),
+                Check.of("SymbolAddressIndex.bruteForce.highAddresses", () -> checkRandom(2_000, 1 << 16, -(1L << 20))),
+                Check.of("SymbolAddressIndex.bruteForce.empty", () -> checkRandom(0, 1 << 10, 0)),
+                Check.of("SymbolAddressIndex.bruteForce.onDisk", IndexChecks::checkOnDisk)
+        );
+    }
+
+    // Symbols are spread over span bytes from base; a negative base puts them at the top of the
+    // address space, above every address with the sign bit clear.
+    private static void checkRandom(int count, long span, long base) {
+        Random random = new Random(SEED + count);
+        SymbolTable table = new SymbolTable(count + 1, false);
+        int[] types = {STT_OBJECT, STT_FUNC, STT_SECTION, STT_FILE};
+        for(int i = 0; i < count; i++){
+            int binding = i < count / 10 ? 0 : 1;
+            int type = random.nextInt(10) == 0 ? types[2 + random.nextInt(2)] : types[random.nextInt(2)];
+            int section = random.nextInt(20) == 0 ? 0 : 1 + random.nextInt(3);
+            long size = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(random.nextBoolean() ? 16 : 1024);
+            long value = base + (long) (random.nextDouble() * span);
+            table.addSymbol(0, (binding << 4) | type, 0, section, value, size);
+        }
+        SymbolAddressIndex index = SymbolAddressIndex.of(table);
+
+        long[] addresses = new long[4 * count + 64];
+        for(int i = 0; i < addresses.length; i++){
+            int symbol = random.nextInt(table.getSymbolCount());
+            switch (random.nextInt(4)){
+                case 0:  addresses[i] = base + (long) (random.nextDouble() * (span + 2048)) - 1024; break;
+                case 1:  addresses[i] = table.getValue(symbol);                                      break;
+                case 2:  addresses[i] = table.getValue(symbol) + table.getSize(symbol);              break;
+                default: addresses[i] = table.getValue(symbol) + table.getSize(symbol) - 1;
+            }
+        }
+        addresses[0] = 0;
+        addresses[1] = -1;
+
+        int[] found = index.findAll(addresses);
+        for(int i = 0; i < addresses.length; i++){
+            int expected = bruteForce(table, addresses[i]);
+            requireEquals(expected, index.find(addresses[i]), "find(0x" + Long.toHexString(addresses[i]) + ")");
+            requireEquals(expected, found[i], "findAll, address 0x" + Long.toHexString(addresses[i]));
+        }
+    }
+
+    // Innermost symbol containing the address: the latest starting one, the one added last among equals
+    static int bruteForce(SymbolTable table, long address) {
+        int found = -1;
+        for(int i = 0; i < table.getSymbolCount(); i++){
+            int type = table.getInfo(i) & 0xF;
+            long start = table.getValue(i);
+            long size = table.getSize(i);
+            if(table.getSectionIndex(i) == 0 || size == 0 || type == STT_SECTION || type == STT_FILE){
+                continue;
+            }
+            if(Long.compareUnsigned(address - start, size) < 0
+                    && (found < 0 || Long.compareUnsigned(start, table.getValue(found)) >= 0)){
+                found = i;
+            }
+        }
+        return found;
+    }
+
+    private static void checkOnDisk() {
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.staticExecutable(elf);
+        Random random = new Random(SEED);
+        SymbolTable symbols = elf.getSymbolTable();
+        int info = Symbol.makeInfo(Symbol.SymbolBindings.STB_GLOBAL, Symbol.SymbolType.STT_OBJECT);
+        for(int i = 0; i < 10_000; i++){
+            String name = "object" + i;
+            symbols.addSymbol(name, elf.getStringTable().addStringOffset(name), info, 0, 0xfff1,
+                    0x10000000L + random.nextInt(1 << 18), random.nextInt(64));
+        }
+        elf.finalizeElfStructure();
+
+        SymbolTableView view = ElfReader.of(SampleFiles.image(elf)).getSymbolTable();
+        requireEquals(symbols.getSymbolCount(), view.getSymbolCount(), "symbols read back");
+        SymbolAddressIndex index = SymbolAddressIndex.of(view);
+        SymbolAddressIndex inMemory = elf.getSymbolAddressIndex();
+        SymbolView symbol = view.getSymbol(0);
+        for(int i = 0; i < view.getSymbolCount(); i++){
+            symbol.moveTo(i);
+            require(symbol.getName().equals(i == 0 ? "" : symbols.getName(i)), "name of symbol " + i + " read back");
+            requireEquals(symbols.getValue(i), symbol.getValue(), "value of symbol " + i + " read back");
+        }
+        for(long address = 0x10000000L - 16; address < 0x10000000L + (1 << 18) + 80; address += 7){
+            int expected = bruteForce(symbols, address);
+            requireEquals(expected, index.find(address), "find(0x" + Long.toHexString(address) + ") read back");
+            requireEquals(expected, inMemory.find(address), "find(0x" + Long.toHexString(address) + ") in memory");
+        }
+    }
+}
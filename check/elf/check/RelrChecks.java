@@ -0,0 +1,146 @@
+package elf.check;
+
+import elf.Elf;
+import elf.header.ElfHeader;
+import elf.reader.ElfReader;
+import elf.section.SectionHeaderEntry.SectionType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static elf.check.Check.require;
+import static elf.check.Check.requireEquals;
+
+/**
+ * Packed relative relocations, decoded from the written file the way the loader applies them,
+ * against the relocations that were added.
+ */
+public final class RelrChecks {
+    private static final int R_X86_64_RELATIVE = 8;
+    private static final int WORD = 8;
+
+    private RelrChecks() {
+    }
+
+    public static List<Check> all() {
+        return List.of(
+                Check.of("RelrTable.decode.random", () -> checkDecode(new Random(5), 2_000, 1 << 12)),
+                Check.of("RelrTable.decode.dense", () -> checkDecode(new Random(6), 4_000, 4_000)),
+                Check.of("RelrTable.decode.bitmapEdges", RelrChecks::checkBitmapEdges)
+        );
+    }
+
+    private static void checkDecode(Random random, int count, int words) {
+        long[] offsets = new long[count];
+        for(int i = 0; i < count; i++){
+            offsets[i] = (long) random.nextInt(words) * WORD + (random.nextInt(50) == 0 ? 1 + random.nextInt(7) : 0);
+        }
+        check(offsets, words);
+    }
+
+    // Runs that end right at, and right past, the 63 words one bitmap covers
+    private static void checkBitmapEdges() {
+        long[] offsets = new long[64 + 65 + 2];
+        int next = 0;
+        for(int i = 0; i < 64; i++){
+            offsets[next++] = (long) i * WORD;
+        }
+        for(int i = 0; i < 65; i++){
+            offsets[next++] = (long) (200 + i) * WORD;
+        }
+        offsets[next++] = 200L * WORD + 63 * WORD * 2;
+        offsets[next] = 200L * WORD + 63 * WORD * 2 + WORD;
+        check(offsets, 1024);
+    }
+
+    // Offsets go to two sections, the even ones to the first and the odd ones to the second.
+    private static void check(long[] offsets, int words) {
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.DataSection[] data = {
+                new SampleFiles.DataSection(".data", new byte[words * WORD], WORD),
+                new SampleFiles.DataSection(".data.rel", new byte[words * WORD], WORD)
+        };
+        for(SampleFiles.DataSection section : data){
+            SampleFiles.addAllocated(elf, section, SectionType.SHT_PROGBITS, true);
+        }
+        long[] addends = new long[offsets.length];
+        for(int i = 0; i < offsets.length; i++){
+            SampleFiles.DataSection section = data[i & 1];
+            addends[i] = 0x1000 + i;
+            if(offsets[i] % WORD == 0){
+                ByteBuffer.wrap(section.contents).order(ByteOrder.LITTLE_ENDIAN).putLong((int) offsets[i], addends[i]);
+            }
+        }
+        for(int i = 0; i < offsets.length; i++){
+            elf.addRelativeRelocation(data[i & 1], offsets[i], addends[i]);
+        }
+        elf.finalizeElfStructure();
+
+        TreeSet<Long> packed = new TreeSet<>();
+        List<String> unpacked = new ArrayList<>();
+        for(int i = 0; i < offsets.length; i++){
+            long address = data[i & 1].getHeaderEntry().getVirtualMemoryAddress().value() + offsets[i];
+            if(offsets[i] % WORD == 0){
+                packed.add(address);
+            } else {
+                unpacked.add(relocation(address, addends[i]));
+            }
+        }
+
+        ElfReader reader = ElfReader.of(SampleFiles.image(elf));
+        TreeSet<Long> decoded = decode(reader.contentsOf(reader.findSection(".relr.dyn")));
+        require(decoded.equals(packed), "packed relocations decode to " + decoded.size() + " addresses, "
+                + packed.size() + " were added, first differences " + difference(packed, decoded));
+
+        ByteBuffer entries = reader.contentsOf(reader.findSection(".rela.dyn"));
+        List<String> written = new ArrayList<>();
+        for(int position = 0; position < entries.limit(); position += 24){
+            long address = entries.getLong(position);
+            requireEquals(R_X86_64_RELATIVE, (int) entries.getLong(position + 8), "type of relocation at 0x" + Long.toHexString(address));
+            written.add(relocation(address, entries.getLong(position + 16)));
+        }
+        Collections.sort(unpacked);
+        Collections.sort(written);
+        require(written.equals(unpacked), "relocations left unpacked are " + written + ", expected " + unpacked);
+    }
+
+    private static String relocation(long address, long addend) {
+        return String.format("%016x+%x", address, addend);
+    }
+
+    // An even word is an address, relocated itself; an odd one is a bitmap of the 63 words after
+    // the last address, or after the words the previous bitmap covered.
+    private static TreeSet<Long> decode(ByteBuffer relr) {
+        TreeSet<Long> addresses = new TreeSet<>();
+        long where = 0;
+        for(int position = 0; position < relr.limit(); position += WORD){
+            long word = relr.getLong(position);
+            if((word & 1) == 0){
+                addresses.add(word);
+                where = word + WORD;
+                continue;
+            }
+            for(int bit = 0; bit < 63; bit++){
+                if((word >>> (bit + 1) & 1) != 0){
+                    addresses.add(where + (long) bit * WORD);
+                }
+            }
+            where += 63 * WORD;
+        }
+        return addresses;
+    }
+
+    private static String difference(TreeSet<Long> expected, TreeSet<Long> actual) {
+        TreeSet<Long> missing = new TreeSet<>(expected);
+        missing.removeAll(actual);
+        TreeSet<Long> extra = new TreeSet<>(actual);
+        extra.removeAll(expected);
+        return "missing " + missing.headSet(missing.isEmpty() ? 0L : missing.first() + 64) + ", extra "
+                + extra.headSet(extra.isEmpty() ? 0L : extra.first() + 64);
+    }
+}
@@ -0,0 +1,196 @@
+package elf.check;
+
+import elf.Elf;
+import elf.header.ElfHeader;
+import elf.reader.ElfReader;
+import elf.section.Section;
+import elf.section.SectionHeaderEntry;
+import elf.section.SectionHeaderEntry.SectionFlag;
+import elf.section.SectionHeaderEntry.SectionType;
+import elf.section.symbol.Symbol;
+import elf.section.text.Function;
+import elf.section.text.Text;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Small files of every kind the generator makes, deterministic for a seed, which checks build,
+ * write and read back.
+ */
+final class SampleFiles {
+    static final int DATA_WORDS = 512;
+    static final int BSS_SIZE = 3 * 4096 + 100;
+
+    private SampleFiles() {
+    }
+
+    /**
+     * Section of fixed contents, as code or data of a generated file is.
+     */
+    static class DataSection extends Section {
+        final byte[] contents;
+        private final long alignment;
+
+        DataSection(String name, byte[] contents, long alignment) {
+            super(name);
+            this.contents = contents;
+            this.alignment = alignment;
+        }
+
+        @Override
+        public long getDefaultAlignment() {
+            return alignment;
+        }
+
+        @Override
+        public long getSizeInBytes() {
+            return contents.length;
+        }
+
+        @Override
+        public void writeTo(ByteBuffer buffer) {
+            buffer.put(contents);
+        }
+    }
+
+    /**
+     * Zero filled section, taking no room in the file.
+     */
+    static class ZeroSection extends Section {
+        private final long size;
+
+        ZeroSection(String name, long size) {
+            super(name);
+            this.size = size;
+        }
+
+        @Override
+        public long getDefaultAlignment() {
+            return 32;
+        }
+
+        @Override
+        public long getSizeInBytes() {
+            return size;
+        }
+
+        @Override
+        public void writeTo(ByteBuffer buffer) {
+        }
+    }
+
+    static SectionHeaderEntry addAllocated(Elf elf, Section section, SectionType type, boolean writable) {
+        SectionHeaderEntry entry = elf.addSection(section, type);
+        entry.setSectionAttributes(SectionFlag.SHF_ALLOC);
+        if(writable){
+            entry.addSectionAttribute(SectionFlag.SHF_WRITE);
+        }
+        return entry;
+    }
+
+    /**
+     * Builds a shared object into an empty elf: exported functions calling each other in .text,
+     * words of .data relocated relative to the load base, mostly packed and a few unaligned ones
+     * not, and .bss. Dynamic symbols start with a local one and an undefined import, which the
+     * hash table leaves out, followed by an export for every function and data word.
+     *
+     * @return the .data section
+     */
+    static DataSection sharedObject(Elf elf, int functions, long seed) {
+        Random random = new Random(seed);
+        elf.getHeader().objectFileType.setValue(ElfHeader.FileType.ET_DYN.getValue());
+
+        Text text = elf.createText();
+        for(int i = 0; i < functions; i++){
+            Function function = text.beginFunction(functionName(i));
+            function.assembler().nop();
+            if(i > 0){
+                function.call(functionName(i - 1));
+            }
+            function.assembler().ret();
+            text.endFunction();
+        }
+
+        byte[] words = new byte[DATA_WORDS * Long.BYTES];
+        ByteBuffer values = ByteBuffer.wrap(words).order(ByteOrder.LITTLE_ENDIAN);
+        DataSection data = new DataSection(".data", words, 8);
+        addAllocated(elf, data, SectionType.SHT_PROGBITS, true);
+        ZeroSection bss = new ZeroSection(".bss", BSS_SIZE);
+        addAllocated(elf, bss, SectionType.SHT_NOBITS, true);
+
+        elf.addDynamicSymbol("local", Symbol.makeInfo(Symbol.SymbolBindings.STB_LOCAL, Symbol.SymbolType.STT_NOTYPE),
+                data.getSectionIndex(), 0, 0);
+        elf.addDynamicSymbol("imported", Symbol.makeInfo(Symbol.SymbolBindings.STB_GLOBAL, Symbol.SymbolType.STT_FUNC),
+                0, 0, 0);
+        int functionInfo = Symbol.makeInfo(Symbol.SymbolBindings.STB_GLOBAL, Symbol.SymbolType.STT_FUNC);
+        for(int i = 0; i < functions; i++){
+            elf.addDynamicSymbol(functionName(i), functionInfo, text.getSectionIndex(), 0, 0);
+        }
+        int objectInfo = Symbol.makeInfo(Symbol.SymbolBindings.STB_GLOBAL, Symbol.SymbolType.STT_OBJECT);
+        for(int i = 0; i < DATA_WORDS; i++){
+            elf.addDynamicSymbol(dataName(i), objectInfo, data.getSectionIndex(), (long) i * Long.BYTES, Long.BYTES);
+        }
+        elf.addDynamicSymbol("zeros", objectInfo, bss.getSectionIndex(), 0, BSS_SIZE);
+
+        for(int i = 0; i < DATA_WORDS; i++){
+            if(random.nextInt(3) != 0){
+                long addend = random.nextInt(1 << 20);
+                values.putLong(i * Long.BYTES, addend);
+                elf.addRelativeRelocation(data, (long) i * Long.BYTES, addend);
+            }
+        }
+        for(int i = 0; i < 4; i++){
+            elf.addRelativeRelocation(data, 8L * random.nextInt(DATA_WORDS - 1) + 1 + random.nextInt(7), i);
+        }
+        return data;
+    }
+
+    /**
+     * @return address an export of {@link #sharedObject} has in the file read: its offset in its
+     * section, on top of the address of the section
+     */
+    static long exportAddress(ElfReader reader, String name) {
+        if(name.startsWith("word")){
+            return reader.findSection(".data").getAddress() + Long.BYTES * Long.parseLong(name.substring(4));
+        }
+        return reader.findSection(name.equals("zeros") ? ".bss" : ".text").getAddress();
+    }
+
+    static String functionName(int i) {
+        return "function" + i;
+    }
+
+    static String dataName(int i) {
+        return "word" + i;
+    }
+
+    /**
+     * Builds a static executable into an empty elf: code starting at the entry point, and .bss.
+     * Entry point is set once the elf structure is finalized, see {@link #setEntryPoint(Elf)}.
+     */
+    static void staticExecutable(Elf elf) {
+        elf.getHeader().objectFileType.setValue(ElfHeader.FileType.ET_EXEC.getValue());
+        elf.setBaseAddress(0x400000);
+        Text text = elf.createText();
+        Function function = text.beginFunction("_start");
+        function.assembler().nop();
+        function.assembler().ret();
+        text.endFunction();
+        addAllocated(elf, new ZeroSection(".bss", 100_000), SectionType.SHT_NOBITS, true);
+    }
+
+    static void setEntryPoint(Elf elf) {
+        elf.getHeader().entryPointAddress.setValue(elf.getText().getHeaderEntry().getVirtualMemoryAddress().value());
+    }
+
+    /**
+     * @return image of the finalized elf, as it is written to a file
+     */
+    static ByteBuffer image(Elf elf) {
+        ByteBuffer image = ByteBuffer.allocate(Math.toIntExact(elf.getFileSize()));
+        elf.writeImage(image);
+        return image.clear();
+    }
+}
@@ -0,0 +1,177 @@
+package elf.check;
+
+import elf.Elf;
+import elf.header.ElfHeader;
+import elf.reader.ElfHeaderView;
+import elf.reader.ElfReader;
+import elf.reader.SectionHeaderView;
+import elf.section.SectionHeaderEntry.SectionFlag;
+import elf.section.SectionHeaderEntry.SectionType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static elf.check.Check.require;
+import static elf.check.Check.requireEquals;
+
+/**
+ * Program headers of written files, checked the way a loader relies on them: loadable segments
+ * that can be mapped, covering every allocated section with its permissions, and the dynamic
+ * segment and entry point where the file has them.
+ */
+public final class SegmentChecks {
+    private static final int PT_LOAD = 1;
+    private static final int PT_DYNAMIC = 2;
+    private static final int PF_X = 1;
+    private static final int PF_W = 2;
+    private static final int PF_R = 4;
+    private static final int PHDR_SIZE = 56;
+
+    private SegmentChecks() {
+    }
+
+    public static List<Check> all() {
+        return List.of(
+                Check.of("ElfLayout.segments.sharedObject", SegmentChecks::checkSharedObject),
+                Check.of("ElfLayout.segments.executable", SegmentChecks::checkExecutable)
+        );
+    }
+
+    private static void checkSharedObject() {
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.sharedObject(elf, 500, 7);
+        elf.finalizeElfStructure();
+        ByteBuffer image = SampleFiles.image(elf);
+        List<ProgramHeader> headers = check(image);
+
+        ElfReader reader = ElfReader.of(image);
+        SectionHeaderView dynamic = reader.findSection(".dynamic");
+        require(dynamic != null, ".dynamic missing");
+        List<ProgramHeader> dynamicSegments = new ArrayList<>();
+        for(ProgramHeader header : headers){
+            if(header.type == PT_DYNAMIC){
+                dynamicSegments.add(header);
+            }
+        }
+        requireEquals(1, dynamicSegments.size(), "number of PT_DYNAMIC segments");
+        ProgramHeader segment = dynamicSegments.get(0);
+        requireEquals(dynamic.getOffset(), segment.offset, "PT_DYNAMIC offset");
+        requireEquals(dynamic.getAddress(), segment.address, "PT_DYNAMIC address");
+        requireEquals(dynamic.getSize(), segment.fileSize, "PT_DYNAMIC size");
+    }
+
+    private static void checkExecutable() {
+        Elf elf = new Elf(new ElfHeader());
+        SampleFiles.staticExecutable(elf);
+        elf.finalizeElfStructure();
+        SampleFiles.setEntryPoint(elf);
+        ByteBuffer image = SampleFiles.image(elf);
+        List<ProgramHeader> headers = check(image);
+
+        long entry = ElfReader.of(image).getHeader().getEntryPointAddress();
+        boolean executable = false;
+        for(ProgramHeader header : headers){
+            if(header.type == PT_LOAD && (header.flags & PF_X) != 0
+                    && Long.compareUnsigned(entry - header.address, header.fileSize) < 0){
+                executable = true;
+            }
+        }
+        require(executable, "entry point 0x" + Long.toHexString(entry) + " is not in an executable segment");
+    }
+
+    // Checks common to every file, returning its program headers
+    private static List<ProgramHeader> check(ByteBuffer image) {
+        ElfReader reader = ElfReader.of(image);
+        ElfHeaderView header = reader.getHeader();
+        requireEquals(PHDR_SIZE, header.getProgramHeaderEntrySize(), "program header entry size");
+        ByteBuffer table = image.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        List<ProgramHeader> headers = new ArrayList<>();
+        for(int i = 0; i < header.getProgramHeaderCount(); i++){
+            headers.add(new ProgramHeader(table, Math.toIntExact(header.getProgramHeaderOffset() + (long) i * PHDR_SIZE)));
+        }
+
+        long previousAddress = -1;
+        for(ProgramHeader segment : headers){
+            if(segment.type != PT_LOAD){
+                continue;
+            }
+            String name = "PT_LOAD at 0x" + Long.toHexString(segment.address);
+            require(segment.alignment > 0 && Long.bitCount(segment.alignment) == 1, name + " alignment " + segment.alignment);
+            require(segment.alignment >= Elf.PAGE_SIZE, name + " aligned below a page");
+            requireEquals(segment.offset % segment.alignment, segment.address % segment.alignment,
+                    name + " address modulo alignment, against offset modulo alignment");
+            require(segment.fileSize <= segment.memorySize, name + " has more bytes in the file than in memory");
+            require(segment.fileSize == 0 || segment.offset + segment.fileSize <= image.capacity(),
+                    name + " goes past the end of the file");
+            require((segment.flags & PF_R) != 0, name + " is not readable");
+            require(segment.address > previousAddress, name + " is not above the previous loadable segment");
+            previousAddress = segment.address;
+        }
+        for(int i = 1; i < headers.size(); i++){
+            ProgramHeader first = headers.get(i - 1);
+            ProgramHeader second = headers.get(i);
+            if(first.type == PT_LOAD && second.type == PT_LOAD){
+                require(pageOf(first.address + first.memorySize - 1) < pageOf(second.address),
+                        "PT_LOAD at 0x" + Long.toHexString(first.address) + " shares a page with the next one");
+            }
+        }
+
+        SectionHeaderView section = reader.getSection(0);
+        for(int i = 1; i < reader.getSectionCount(); i++){
+            section.moveTo(i);
+            if((section.getFlags() & SectionFlag.SHF_ALLOC.getMask()) == 0 || section.getSize() == 0){
+                continue;
+            }
+            boolean nobits = section.getType() == SectionType.SHT_NOBITS.getValue();
+            ProgramHeader segment = null;
+            for(ProgramHeader candidate : headers){
+                if(candidate.type == PT_LOAD && candidate.address <= section.getAddress()
+                        && section.getAddress() + section.getSize() <= candidate.address + candidate.memorySize){
+                    segment = candidate;
+                }
+            }
+            String name = section.getName();
+            require(segment != null, name + " is in no loadable segment");
+            if(!nobits){
+                requireEquals(segment.offset + (section.getAddress() - segment.address), section.getOffset(),
+                        "offset of " + name + " against its place in the segment");
+                require(section.getAddress() + section.getSize() <= segment.address + segment.fileSize,
+                        name + " has contents past the file part of its segment");
+            }
+            require(((section.getFlags() & SectionFlag.SHF_WRITE.getMask()) != 0) == ((segment.flags & PF_W) != 0),
+                    name + " writable, segment flags " + segment.flags);
+            require(((section.getFlags() & SectionFlag.SHF_EXECINSTR.getMask()) != 0) == ((segment.flags & PF_X) != 0),
+                    name + " executable, segment flags " + segment.flags);
+        }
+        return headers;
+    }
+
+    private static long pageOf(long address) {
+        return address / Elf.PAGE_SIZE;
+    }
+
+    /**
+     * ELF64 program header entry.
+     */
+    private static final class ProgramHeader {
+        final int type;
+        final int flags;
+        final long offset;
+        final long address;
+        final long fileSize;
+        final long memorySize;
+        final long alignment;
+
+        ProgramHeader(ByteBuffer table, int position) {
+            type = table.getInt(position);
+            flags = table.getInt(position + 4);
+            offset = table.getLong(position + 8);
+            address = table.getLong(position + 16);
+            fileSize = table.getLong(position + 32);
+            memorySize = table.getLong(position + 40);
+            alignment = table.getLong(position + 48);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package elf.check;
+
+import elf.Elf;
+import elf.ElfPool;
+import elf.header.ElfHeader;
+import elf.io.IncrementalElfWriter;
+import elf.layout.ElfLayout;
+import elf.metrics.ElfMetrics;
+import elf.metrics.Phase;
+import elf.io.StreamingElfWriter;
+import elf.reader.ElfReader;
+import elf.reader.SymbolTableView;
+import elf.reader.SymbolView;
+import elf.section.Section;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static elf.check.Check.require;
+import static elf.check.Check.requireEquals;
+
+/**
+ * Files written every way there is, and by reused builders, against the image of the same file
+ * built by a new {@link Elf} and written at once.
+ */
+public final class WriterChecks {
+    private static final int FUNCTIONS = 300;
+
+    private WriterChecks() {
+    }
+
+    public static List<Check> all() {
+        return List.of(
+                Check.of("Elf.writeToFile.stream", () -> checkOutputMode(Elf.OutputMode.STREAM)),
+                Check.of("Elf.writeToFile.memoryMapped", () -> checkOutputMode(Elf.OutputMode.MEMORY_MAPPED)),
+                Check.of("Elf.writeToFile.parallel", () -> checkOutputMode(Elf.OutputMode.PARALLEL)),
+                Check.of("StreamingElfWriter.identical", WriterChecks::checkStreaming),
+                Check.of("StreamingElfWriter.tablesFirst", WriterChecks::checkStreamingTablesFirst),
+                Check.of("IncrementalElfWriter.identical", WriterChecks::checkIncremental),
+                Check.of("Elf.writeToFile.failedWriteMetrics", WriterChecks::checkFailedWriteMetrics),
+                Check.of("Elf.reset.identical", WriterChecks::checkReset),
+                Check.of("ElfPool.identical", WriterChecks::checkPool)
+        );
+    }
+
+    private static byte[] expected(long seed, Consumer<SampleFiles.DataSection> change) {
+        Elf elf = new Elf(new ElfHeader());
+        change.accept(SampleFiles.sharedObject(elf, FUNCTIONS, seed));
+        elf.finalizeElfStructure();
+        return SampleFiles.image(elf).array();
+    }
+
+    private static byte[] expected(long seed) {
+        return expected(seed, data -> { });
+    }
+
+    private static void requireIdentical(byte[] expected, byte[] actual, String what) {
+        requireEquals(expected.length, actual.length, "size of " + what);
+        int mismatch = Arrays.mismatch(expected, actual);
+        requireEquals(-1, mismatch, "first byte of " + what + " differing from a new builder's image");
+    }
+
+    private static void checkOutputMode(Elf.OutputMode mode) throws IOException {
+        withDirectory(directory -> {
+            Elf elf = new Elf(new ElfHeader());
+            SampleFiles.sharedObject(elf, FUNCTIONS, 1);
+            elf.finalizeElfStructure();
+            Path path = directory.resolve("out.so");
+            elf.writeToFile(path.toString(), mode);
+            requireIdentical(expected(1), Files.readAllBytes(path), mode + " output");
+        });
+    }
+
+    private static void checkStreaming() throws IOException {
+        withDirectory(directory -> {
+            Elf elf = new Elf(new ElfHeader());
+            SampleFiles.sharedObject(elf, FUNCTIONS, 2);
+            Path path = directory.resolve("out.so");
+            try (StreamingElfWriter writer = StreamingElfWriter.open(elf, path)) {
+                writer.finish();
+            }
+            requireIdentical(expected(2), Files.readAllBytes(path), "streamed output");
+            requireEquals(Files.size(path), elf.getFileSize(), "file size of streamed elf");
+            requireEquals(1, elf.getSymbolAddressIndex().find(elf.getText().getHeaderEntry().getVirtualMemoryAddress().value()),
+                    "symbol at the start of text, streamed elf");
+        });
+    }
+
+    // Tables holding addresses are closed before the sections they refer to are placed: the
+    // symbol table first, and the read only sections, up to the relocations, in placement order
+    private static void checkStreamingTablesFirst() throws IOException {
+        withDirectory(directory -> {
+            Elf elf = new Elf(new ElfHeader());
+            SampleFiles.DataSection data = SampleFiles.sharedObject(elf, FUNCTIONS, 4);
+            elf.finalizeTables();
+            Path path = directory.resolve("out.so");
+            try (StreamingElfWriter writer = StreamingElfWriter.open(elf, path)) {
+                writer.closeSection(elf.getSymbolTable());
+                for(Section section : ElfLayout.placementOrder(elf)){
+                    if(section != elf.getSymbolTable()){
+                        writer.closeSection(section);
+                    }
+                    if(section == elf.getRelativeRelocations()){
+                        break;
+                    }
+                }
+            }
+
+            ElfReader reader = ElfReader.open(path);
+            SymbolTableView symbols = reader.getSymbolTable();
+            SymbolView symbol = symbols.getSymbol(0);
+            long text = reader.findSection(".text").getAddress();
+            require(text != 0, ".text has no address");
+            for(int i = 1; i < symbols.getSymbolCount(); i++){
+                symbol.moveTo(i);
+                requireEquals(elf.getSymbolTable().getValue(i), symbol.getValue(), "value of " + symbol.getName());
+                require(symbol.getValue() >= text, symbol.getName() + " below .text");
+            }
+
+            SymbolView export = reader.getSymbolTable(reader.findSection(".dynsym")).findSymbol(SampleFiles.dataName(9));
+            requireEquals(SampleFiles.exportAddress(reader, export.getName()), export.getValue(), "value of " + export.getName());
+
+            ByteBuffer relr = reader.contentsOf(reader.findSection(".relr.dyn"));
+            long first = relr.getLong(0);
+            long dataAddress = reader.findSection(".data").getAddress();
+            require(first >= dataAddress && first < dataAddress + data.contents.length,
+                    "first packed relocation 0x" + Long.toHexString(first) + " outside of .data");
+            ByteBuffer rela = reader.contentsOf(reader.findSection(".rela.dyn"));
+            for(int position = 0; position < rela.limit(); position += 24){
+                long address = rela.getLong(position);
+                require(address >= dataAddress && address < dataAddress + data.contents.length,
+                        "relocation at 0x" + Long.toHexString(address) + " outside of .data");
+            }
+        });
+    }
+
+    // Second write changes one word of .data, which is rewritten in place
+    private static void checkIncremental() throws IOException {
+        withDirectory(directory -> {
+            Path path = directory.resolve("out.so");
+            IncrementalElfWriter writer = new IncrementalElfWriter();
+            Elf first = new Elf(new ElfHeader());
+            SampleFiles.sharedObject(first, FUNCTIONS, 3);
+            first.writeIncremental(path.toString(), writer);
+            requireIdentical(expected(3), Files.readAllBytes(path), "first incremental output");
+
+            Consumer<SampleFiles.DataSection> change = data -> data.contents[5] ^= 0x5A;
+            Elf second = new Elf(new ElfHeader());
+            change.accept(SampleFiles.sharedObject(second, FUNCTIONS, 3));
+            second.writeIncremental(path.toString(), writer);
+            require(writer.isLastWriteIncremental(), "second write was not incremental");
+            require(writer.getBytesWritten() < Files.size(path), "second write rewrote the whole file");
+            requireIdentical(expected(3, change), Files.readAllBytes(path), "second incremental output");
+        });
+    }
+
+    // Writes into a directory that is not there fail, and count no bytes
+    private static void checkFailedWriteMetrics() throws IOException {
+        withDirectory(directory -> {
+            Elf elf = new Elf(new ElfHeader());
+            elf.getMetrics().setEnabled(true);
+            SampleFiles.sharedObject(elf, FUNCTIONS, 5);
+            elf.finalizeElfStructure();
+            String missing = directory.resolve("missing").resolve("out.so").toString();
+            for(Elf.OutputMode mode : Elf.OutputMode.values()){
+                elf.writeToFile(missing, mode);
+            }
+            elf.writeIncremental(missing);
+            ElfMetrics.Snapshot snapshot = elf.getMetricsSnapshot();
+            requireEquals(Elf.OutputMode.values().length + 1, snapshot.getCount(Phase.FILE_WRITE), "file writes counted");
+            requireEquals(0, snapshot.getBytes(Phase.FILE_WRITE), "bytes of failed file writes");
+
+            elf.writeToFile(directory.resolve("out.so").toString());
+            requireEquals(elf.getFileSize(), elf.getMetricsSnapshot().getBytes(Phase.FILE_WRITE), "bytes of file writes");
+        });
+    }
+
+    // Files of different sizes built one after another by the same builder
+    private static void checkReset() {
+        Elf elf = new Elf(new ElfHeader());
+        elf.getMetrics().setEnabled(true);
+        for(long seed : new long[]{10, 11, 12}){
+            SampleFiles.sharedObject(elf, seed == 11 ? FUNCTIONS / 3 : FUNCTIONS, seed);
+            elf.finalizeElfStructure();
+            byte[] image = SampleFiles.image(elf).array();
+            requireEquals(1, elf.getMetricsSnapshot().getCount(Phase.LAYOUT), "layouts counted, seed " + seed);
+            elf.getHeader().reset();
+            elf.reset();
+            requireEquals(0, elf.getMetricsSnapshot().getCount(Phase.LAYOUT), "layouts counted after reset");
+
+            Elf fresh = new Elf(new ElfHeader());
+            SampleFiles.sharedObject(fresh, seed == 11 ? FUNCTIONS / 3 : FUNCTIONS, seed);
+            fresh.finalizeElfStructure();
+            requireIdentical(SampleFiles.image(fresh).array(), image, "image of reset builder, seed " + seed);
+        }
+
+        SampleFiles.staticExecutable(elf);
+        elf.finalizeElfStructure();
+        SampleFiles.setEntryPoint(elf);
+        byte[] image = SampleFiles.image(elf).array();
+        Elf fresh = new Elf(new ElfHeader());
+        SampleFiles.staticExecutable(fresh);
+        fresh.finalizeElfStructure();
+        SampleFiles.setEntryPoint(fresh);
+        requireIdentical(SampleFiles.image(fresh).array(), image, "executable built by reset builder");
+    }
+
+    private static void checkPool() {
+        for(long seed = 20; seed < 24; seed++){
+            Elf elf = ElfPool.acquire();
+            try {
+                SampleFiles.sharedObject(elf, FUNCTIONS, seed);
+                elf.finalizeElfStructure();
+                requireIdentical(expected(seed), SampleFiles.image(elf).array(), "image of pooled builder, seed " + seed);
+            } finally {
+                ElfPool.release(elf);
+            }
+        }
+    }
+
+    private interface DirectoryBody {
+        void run(Path directory) throws IOException;
+    }
+
+    private static void withDirectory(DirectoryBody body) throws IOException {
+        Path directory = Files.createTempDirectory("elf-check");
+        try {
+            body.run(directory);
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for(Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator){
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+}
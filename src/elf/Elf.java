@@ -1,35 +1,73 @@
 package elf;
 
+import elf.cache.ElfCache;
 import elf.datatype.*;
+import elf.encoding.ElfEncoder;
 import elf.header.ElfHeader;
+import elf.io.IncrementalElfWriter;
+import elf.io.MappedElfWriter;
+import elf.io.OutputFiles;
+import elf.io.ParallelElfWriter;
+import elf.layout.ElfLayout;
+import elf.metrics.ElfMetrics;
+import elf.metrics.Phase;
+import elf.metrics.PhaseEvent;
+import elf.metrics.SectionCreatedEvent;
 import elf.programinfo.ProgramHeaderTable;
 import elf.section.Section;
 import elf.section.SectionHeaderEntry;
 import elf.section.SectionHeaderTable;
+import elf.section.dynamic.DynamicSection;
+import elf.section.dynamic.DynamicTag;
+import elf.section.hash.GnuHashTable;
+import elf.section.relocation.RelocationTable;
+import elf.section.relocation.RelrTable;
 import elf.section.string.StringTable;
-import elf.section.symbol.Symbol;
+import elf.section.symbol.SymbolAddressIndex;
 import elf.section.symbol.SymbolTable;
+import elf.section.text.Text;
 import elf.segment.Segment;
+import elf.util.DumpWriter;
 
-import java.io.BufferedOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.ToLongFunction;
 
 // TODO Static constants could be defined in order to perform different code generation process
 public class Elf {
+    public static final long PAGE_SIZE = 0x1000;
+
     private final ElfHeader header;
+    private ElfEncoder encoder;                                 // Of the class and data encoding in the header
     private final ProgramHeaderTable programHeaderTable;
-    private final ArrayList<Segment> segments;                  // For executable elf file we use segments
+    private final ArrayList<Segment> segments;                  // Of files that get loaded, built by layout
     private final ArrayList<Section> sections;
     // ...
     private final StringTable stringTable;
     private final SymbolTable symbolTable;
     private final SectionHeaderTable sectionHeaderTable;
+    private Text text;
+    private Text spareText;                                     // Kept by reset() for the next createText()
+    private StringTable dynamicStringTable;
+    private SymbolTable dynamicSymbolTable;
+    private GnuHashTable gnuHashTable;
+    private DynamicSection dynamicSection;
+    private RelocationTable dynamicRelocations;
+    private RelrTable relativeRelocations;
+    private SymbolAddressIndex symbolAddressIndex;
+    private IncrementalElfWriter incrementalWriter;             // Kept by reset(), its state is per file
 
-    private Elf64Address programCounter;
+    private Elf64LongAddress programCounter;
+    private boolean mergeStringTails;
+    private long fileSize;
+    private long baseAddress;
+    private final ElfMetrics metrics = new ElfMetrics();
 
 
     public Elf(ElfHeader header){
@@ -39,57 +77,554 @@ public class Elf {
 
         sections = new ArrayList<Section>();
         sectionHeaderTable = new SectionHeaderTable();
+        encoder = ElfEncoder.of(header);
+        sectionHeaderTable.setEncoder(encoder);
+        programHeaderTable.setEncoder(encoder);
 
         // Make predefined sections
         stringTable = new StringTable();
         symbolTable = new SymbolTable();
+        addPredefinedSections();
+
+        programCounter = new Elf64LongAddress(   // Program counter should start from the end of header
+                header.elfHeaderSize.value());
+    }
+
+    private void addPredefinedSections(){
+        SectionHeaderEntry entry = addSection(symbolTable, SectionHeaderEntry.SectionType.SHT_SYMTAB);
+        entry.setEntriesSize(encoder.getSymbolSize());
+        addSection(stringTable, SectionHeaderEntry.SectionType.SHT_STRTAB);
+        symbolTable.setLink(stringTable);
+
+        // Update information about section table.
+        header.sectionStringTableIndex.setValue(stringTable.getSectionIndex());
+    }
+
+    /**
+     * Brings the file back to the state it had when it was created: only the symbol and string
+     * tables, both empty, and default settings. Tables, section header table and text section keep
+     * the storage they grew to, so building many files one after another with the same Elf
+     * allocates little beyond what the files themselves add.
+     *
+     * Header keeps its fields, apart from those layout fills in; {@link ElfHeader#reset()} restores
+     * the defaults. Encoder is chosen anew from the header. Sections added to the file, other than
+     * text, are dropped. Incremental writer is kept, so the file built next is written in place of
+     * the previous one where its sections match, see {@link #writeIncremental(String)}. Metrics
+     * start over, and stay enabled if they were.
+     */
+    public void reset(){
+        encoder = ElfEncoder.of(header);
+        sectionHeaderTable.setEncoder(encoder);
+        programHeaderTable.setEncoder(encoder);
+        sections.clear();
+        segments.clear();
+        programHeaderTable.reset();
+        sectionHeaderTable.reset();
+        stringTable.reset();
+        symbolTable.reset();
+        symbolTable.resetCompression();
+        addPredefinedSections();
 
-        // TODO Make helper function to create section and also add it to section table, update symbols, strings table, etc.
-        // Add symbol table section entry
-        Elf64Word offset = stringTable.addString(symbolTable.getSectionName());
+        if(text != null){
+            text.reset();
+            spareText = text;
+            text = null;
+        }
+        dynamicStringTable = null;
+        dynamicSymbolTable = null;
+        gnuHashTable = null;
+        dynamicSection = null;
+        dynamicRelocations = null;
+        relativeRelocations = null;
+        symbolAddressIndex = null;
+        metrics.reset();
+
+        programCounter.setValue(header.elfHeaderSize.value());
+        mergeStringTails = false;
+        fileSize = 0;
+        baseAddress = 0;
+    }
+
+    /**
+     * Adds section to the file: its name goes to the string table, and a new entry, linked
+     * with the section, to the section header table.
+     */
+    public SectionHeaderEntry addSection(Section section, SectionHeaderEntry.SectionType type){
+        PhaseEvent event = metrics.begin(Phase.SECTION_CREATION);
+        Elf64Word offset = stringTable.addString(section.getSectionName());
         SectionHeaderEntry entry = new SectionHeaderEntry();
+        section.setEncoder(encoder);
         entry.setSectionName(offset);
-        entry.setSectionType(SectionHeaderEntry.SectionType.SHT_SYMTAB);
-        entry.linkSectionName(symbolTable.getSectionName());
-        entry.setEntriesSize(String.valueOf(Symbol.SIZE_IN_BYTES));
-        sectionHeaderTable.addSectionEntry(symbolTable.getSectionName(), entry); // TODO: This could be postponed for later
-
-        // Add string table section entry
-        offset = stringTable.addString(stringTable.getSectionName());
-        entry = new SectionHeaderEntry();
-        entry.setSectionName(offset);
-        entry.setSectionType(SectionHeaderEntry.SectionType.SHT_STRTAB);
-        entry.linkSectionName(stringTable.getSectionName());
-        sectionHeaderTable.addSectionEntry(stringTable.getSectionName(), entry);
+        entry.setSectionType(type);
+        entry.linkSectionName(section.getSectionName());
+        entry.setAddressAlignment(section.getDefaultAlignment());
+        int index = sectionHeaderTable.addSectionEntry(section.getSectionName(), entry);
 
-        // Update information about section table.
-        header.sectionStringTableIndex = new Elf64Half(sectionHeaderTable.getEntryCount()-1);
+        section.setHeaderEntry(entry);
+        section.setSectionIndex(index);
+        sections.add(section);
+
+        metrics.end(event, 0, 1);
+        SectionCreatedEvent.commit(section.getSectionName(), type.getValue(), index);
+        return entry;
+    }
+
+    /**
+     * Creates the .text section, assembled through asmtk, and adds it to the file together with
+     * its .rela.text relocation section.
+     */
+    public Text createText(){
+        if(text != null){
+            throw new IllegalStateException("Text section is already created");
+        }
+        // Text of a file before reset is taken again, with its code buffer
+        text = spareText != null ? spareText : new Text(symbolTable, stringTable);
+        spareText = null;
+        SectionHeaderEntry entry = addSection(text, SectionHeaderEntry.SectionType.SHT_PROGBITS);
+        entry.setSectionAttributes(SectionHeaderEntry.SectionFlag.SHF_ALLOC);
+        entry.addSectionAttribute(SectionHeaderEntry.SectionFlag.SHF_EXECINSTR);
+
+        addRelocationTable(text.getRelocations(), text);
+        return text;
+    }
+
+    /**
+     * Adds relocation section, linked with the symbol table and the section its entries apply to.
+     */
+    public SectionHeaderEntry addRelocationTable(RelocationTable relocations, Section target){
+        SectionHeaderEntry entry = addSection(relocations, SectionHeaderEntry.SectionType.SHT_RELA);
+        entry.setEntriesSize(encoder.getRelaSize());
+        entry.setSectionAttributes(SectionHeaderEntry.SectionFlag.SHF_INFO_LINK);
+        relocations.setLink(symbolTable);
+        relocations.setInfoLink(target);
+        return entry;
+    }
+
+    /**
+     * Creates .gnu.hash, .dynsym and .dynstr sections, which export symbols of a shared object.
+     */
+    public SymbolTable createDynamicSymbols(){
+        if(dynamicSymbolTable != null){
+            throw new IllegalStateException("Dynamic symbol table is already created");
+        }
+        // Bloom filter of the hash table, and packed relocations, are written in 64-bit words only
+        if(encoder.getFileClass() != ElfHeader.FileClass.ELF_CLASS_64){
+            throw new UnsupportedOperationException("Dynamic symbols are supported in ELF64 files only");
+        }
+        dynamicStringTable = new StringTable(".dynstr", 256);
+        dynamicSymbolTable = new SymbolTable(".dynsym", 16, true);
+        gnuHashTable = new GnuHashTable(dynamicSymbolTable, dynamicStringTable);
+
+        SectionHeaderEntry entry = addSection(gnuHashTable, SectionHeaderEntry.SectionType.SHT_GNU_HASH);
+        entry.setSectionAttributes(SectionHeaderEntry.SectionFlag.SHF_ALLOC);
+        entry = addSection(dynamicSymbolTable, SectionHeaderEntry.SectionType.SHT_DYNSYM);
+        entry.setSectionAttributes(SectionHeaderEntry.SectionFlag.SHF_ALLOC);
+        entry.setEntriesSize(encoder.getSymbolSize());
+        entry = addSection(dynamicStringTable, SectionHeaderEntry.SectionType.SHT_STRTAB);
+        entry.setSectionAttributes(SectionHeaderEntry.SectionFlag.SHF_ALLOC);
+        dynamicSymbolTable.setLink(dynamicStringTable);
+        dynamicSymbolTable.setSectionRelative(index -> sectionHeaderTable.getEntry(index).getVirtualMemoryAddress().value());
+        return dynamicSymbolTable;
+    }
+
+    /**
+     * Adds symbol to the dynamic symbol table. Index it gets may change once the table is ordered
+     * for the hash table, see {@link GnuHashTable#getNewIndex(int)}.
+     *
+     * @param value offset of the symbol inside of the section of given index, to which the address
+     *              of the section is added when the table is written, see
+     *              {@link SymbolTable#setSectionRelative}; written as it is for an undefined symbol
+     *              or a reserved index, such as SHN_ABS
+     */
+    public int addDynamicSymbol(String name, int info, int sectionIndex, long value, long size){
+        if(dynamicSymbolTable == null){
+            createDynamicSymbols();
+        }
+        return dynamicSymbolTable.addSymbol(name, dynamicStringTable.addStringOffset(name), info, 0,
+                sectionIndex, value, size);
+    }
+
+    /**
+     * Creates the .dynamic section, pointing the loader at the dynamic symbol and string tables
+     * and at the hash table. Dynamic symbols are created as well, if they are not yet.
+     */
+    public DynamicSection createDynamicSection(){
+        if(dynamicSection != null){
+            throw new IllegalStateException("Dynamic section is already created");
+        }
+        if(dynamicSymbolTable == null){
+            createDynamicSymbols();
+        }
+        dynamicSection = new DynamicSection();
+        SectionHeaderEntry entry = addSection(dynamicSection, SectionHeaderEntry.SectionType.SHT_DYNAMIC);
+        entry.setSectionAttributes(SectionHeaderEntry.SectionFlag.SHF_ALLOC);
+        entry.addSectionAttribute(SectionHeaderEntry.SectionFlag.SHF_WRITE);
+        entry.setEntriesSize(encoder.getDynamicEntrySize());
+        dynamicSection.setLink(dynamicStringTable);
+
+        dynamicSection.addAddressOf(DynamicTag.DT_GNU_HASH, gnuHashTable);
+        dynamicSection.addAddressOf(DynamicTag.DT_STRTAB, dynamicStringTable);
+        dynamicSection.addAddressOf(DynamicTag.DT_SYMTAB, dynamicSymbolTable);
+        dynamicSection.addSizeOf(DynamicTag.DT_STRSZ, dynamicStringTable);
+        dynamicSection.addEntry(DynamicTag.DT_SYMENT, encoder.getSymbolSize());
+        return dynamicSection;
+    }
+
+    /**
+     * Creates .rela.dyn and .relr.dyn, holding relative relocations of a position independent
+     * image, and points the dynamic section at them.
+     */
+    public RelrTable createRelativeRelocations(){
+        if(relativeRelocations != null){
+            throw new IllegalStateException("Relative relocations are already created");
+        }
+        if(dynamicSection == null){
+            createDynamicSection();
+        }
+        dynamicRelocations = new RelocationTable(".rela.dyn");
+        SectionHeaderEntry entry = addSection(dynamicRelocations, SectionHeaderEntry.SectionType.SHT_RELA);
+        entry.setEntriesSize(encoder.getRelaSize());
+        entry.setSectionAttributes(SectionHeaderEntry.SectionFlag.SHF_ALLOC);
+        dynamicRelocations.setLink(dynamicSymbolTable);
+
+        relativeRelocations = new RelrTable(".relr.dyn", dynamicRelocations);
+        entry = addSection(relativeRelocations, SectionHeaderEntry.SectionType.SHT_RELR);
+        entry.setEntriesSize(RelrTable.ENTRY_SIZE_IN_BYTES);
+        entry.setSectionAttributes(SectionHeaderEntry.SectionFlag.SHF_ALLOC);
+
+        dynamicSection.addAddressOf(DynamicTag.DT_RELA, dynamicRelocations);
+        dynamicSection.addSizeOf(DynamicTag.DT_RELASZ, dynamicRelocations);
+        dynamicSection.addEntry(DynamicTag.DT_RELAENT, encoder.getRelaSize());
+        dynamicSection.addAddressOf(DynamicTag.DT_RELR, relativeRelocations);
+        dynamicSection.addSizeOf(DynamicTag.DT_RELRSZ, relativeRelocations);
+        dynamicSection.addEntry(DynamicTag.DT_RELRENT, RelrTable.ENTRY_SIZE_IN_BYTES);
+        return relativeRelocations;
+    }
+
+    /**
+     * Adds relocation adding the load base to the word at given offset inside of the section.
+     * Packed into .relr.dyn when possible, in which case the addend has to be stored at the
+     * offset already; falls back to an R_X86_64_RELATIVE entry in .rela.dyn otherwise.
+     */
+    public void addRelativeRelocation(Section section, long offset, long addend){
+        if(relativeRelocations == null){
+            createRelativeRelocations();
+        }
+        relativeRelocations.addRelative(section, offset, addend);
+    }
+
+    public DynamicSection getDynamicSection() { return dynamicSection; }
+
+    public RelocationTable getDynamicRelocations() { return dynamicRelocations; }
+
+    public RelrTable getRelativeRelocations() { return relativeRelocations; }
+
+    public SymbolTable getDynamicSymbolTable() { return dynamicSymbolTable; }
+
+    public StringTable getDynamicStringTable() { return dynamicStringTable; }
+
+    public GnuHashTable getGnuHashTable() { return gnuHashTable; }
+
+    public Text getText() { return text; }
+
+    /**
+     * Address at which the next instruction is emitted. Follows the text section, if there is one.
+     */
+    public Elf64LongAddress getProgramCounter() {
+        if(text != null){
+            programCounter.setValue(text.getHeaderEntry().getVirtualMemoryAddress().value() + text.getCurrentOffset());
+        }
+        return programCounter;
+    }
+
+    public ElfHeader getHeader() { return header; }
+
+    /**
+     * @return encoder every structure of the file is written with
+     */
+    public ElfEncoder getEncoder() { return encoder; }
+
+    /**
+     * Sets file class and data encoding of the file, and selects the encoder for them. Sizes of
+     * entries depend on the class, so it has to be done while the file holds only its symbol and
+     * string tables, before any other section is added.
+     */
+    public void setEncoding(ElfHeader.FileClass fileClass, ElfHeader.DataEncoding dataEncoding){
+        if(sections.size() > 2){
+            throw new IllegalStateException("Encoding has to be set before sections are added");
+        }
+        header.setEncoding(fileClass, dataEncoding);
+        encoder = ElfEncoder.of(header);
+        sectionHeaderTable.setEncoder(encoder);
+        programHeaderTable.setEncoder(encoder);
+        for(Section section : sections){
+            section.setEncoder(encoder);
+        }
+        symbolTable.getHeaderEntry().setEntriesSize(encoder.getSymbolSize());
+        programCounter.setValue(header.elfHeaderSize.value());
+    }
+
+    public List<Section> getSections() { return sections; }
+
+    public SectionHeaderTable getSectionHeaderTable() { return sectionHeaderTable; }
+
+    public ProgramHeaderTable getProgramHeaderTable() { return programHeaderTable; }
+
+    /**
+     * Segments of the file as of the last layout, in program header table order. Relocatable files have none.
+     */
+    public List<Segment> getSegments() { return segments; }
+
+    public StringTable getStringTable() { return stringTable; }
+
+    public SymbolTable getSymbolTable() { return symbolTable; }
+
+    public long getBaseAddress() { return baseAddress; }
 
+    /**
+     * @return size of the whole file, known once the structure is finalized
+     */
+    public long getFileSize() { return fileSize; }
 
-        programCounter = new Elf64Address(   // Program counter should start from the end of header
-                BigInteger.valueOf(header.elfHeaderSize.value()));
+    /**
+     * Virtual address at which the first byte of the file gets mapped. Has to be page aligned.
+     */
+    public void setBaseAddress(long baseAddress) {
+        this.baseAddress = baseAddress;
+    }
+
+    /**
+     * When set, string table is tail merged on finalization, so a name that is the suffix of
+     * another one takes no extra space.
+     */
+    public void setMergeStringTails(boolean mergeStringTails){
+        this.mergeStringTails = mergeStringTails;
+    }
+
+    public boolean isMergingStringTails() { return mergeStringTails; }
+
+    /**
+     * Compresses section on finalization if it has at least threshold bytes, see
+     * {@link Section#setCompressionThreshold(long)}. String table holds section names as well,
+     * which readers need uncompressed, so it can not be compressed.
+     *
+     * @param threshold size in bytes from which section gets compressed, or -1 to never compress it
+     */
+    public void setCompressionThreshold(Section section, long threshold){
+        if(section == stringTable){
+            throw new IllegalArgumentException("Section name string table can not be compressed");
+        }
+        SectionHeaderEntry entry = section.getHeaderEntry();
+        if(entry.hasSectionAttribute(SectionHeaderEntry.SectionFlag.SHF_ALLOC)
+                || entry.isOfType(SectionHeaderEntry.SectionType.SHT_NOBITS)){
+            throw new IllegalArgumentException("Only sections with contents in the file, not allocated in memory, can be compressed: "
+                    + section.getSectionName());
+        }
+        section.setCompressionThreshold(threshold);
     }
 
     public void finalizeElfStructure(){     // TODO if we need to change this name...
-        header.numOfSectionHeaderEntries = new Elf64Half(sectionHeaderTable.getEntryCount());
+        finalizeTables();
+        layoutElfStructure(new ElfLayout(baseAddress)::layout);
+    }
+
+    /**
+     * Lays out the file, which has its tables finalized already, see {@link #finalizeTables()}.
+     *
+     * @param layout fills in offsets and addresses, and returns size of the whole file
+     */
+    public void layoutElfStructure(ToLongFunction<Elf> layout){
+        PhaseEvent event = metrics.begin(Phase.LAYOUT);
+        fileSize = layout.applyAsLong(this);
+        metrics.end(event, fileSize, sections.size());
+        symbolAddressIndex = null;
+    }
+
+    /**
+     * Index of symbols by address, over the symbol table as it was at the last finalization.
+     * Built on first use after it.
+     */
+    public SymbolAddressIndex getSymbolAddressIndex(){
+        if(fileSize == 0){
+            throw new IllegalStateException("Elf structure has to be finalized before symbols are indexed by address");
+        }
+        if(symbolAddressIndex == null){
+            symbolAddressIndex = SymbolAddressIndex.of(symbolTable);
+        }
+        return symbolAddressIndex;
+    }
+
+    /**
+     * Brings string and symbol tables to their final form, without laying out the file.
+     */
+    public void finalizeTables(){
+        PhaseEvent event = metrics.begin(Phase.TABLE_FINALIZATION);
+        if(gnuHashTable != null){
+            gnuHashTable.build();
+        }
+        if(mergeStringTails && stringTable.mergeTails()){
+            symbolTable.remapNameOffsets(stringTable);
+            for(SectionHeaderEntry entry : sectionHeaderTable.getEntries()){
+                Elf64Word name = entry.getSectionName();
+                name.setValue((long) stringTable.remapOffset(name.value().intValue()));
+            }
+        }
+        metrics.end(event, stringTable.getSizeInBytes(), symbolTable.getSymbolCount());
+    }
+
+    /**
+     * Writes the whole file image into the buffer, every part at its position within the file.
+     * Buffer has to hold at least {@link #getFileSize()} bytes starting from index 0.
+     */
+    public void writeImage(ByteBuffer buffer){
+        if(fileSize == 0){
+            throw new IllegalStateException("Elf structure has to be finalized before it is written");
+        }
+
+        PhaseEvent event = metrics.begin(Phase.SERIALIZATION);
+        buffer.position(0);
+        header.writeTo(buffer);
+
+        buffer.position((int) header.programHeaderOffset.value());
+        programHeaderTable.writeTo(buffer);
+
+        for(Section section : sections){
+            buffer.position((int) section.getHeaderEntry().getOffsetInFile().value());
+            section.writeStoredTo(buffer);
+        }
+
+        buffer.position((int) header.sectionHeaderOffset.value());
+        sectionHeaderTable.writeTo(buffer);
+        metrics.end(event, fileSize, sections.size());
     }
 
     public void writeToFile(String fileName){
-        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(fileName))) {
-            outputStream.write(header.toBytes());
+        writeToFile(fileName, OutputMode.STREAM);
+    }
+
+    public void writeToFile(String fileName, OutputMode mode){
+        PhaseEvent event = metrics.begin(Phase.FILE_WRITE);
+        long written = 0;
+        try {
+            switch (mode){
+                case STREAM:
+                    try (OutputStream outputStream = Channels.newOutputStream(OutputFiles.create(Paths.get(fileName)))) {
+                        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(fileSize));
+                        writeImage(buffer);
+                        outputStream.write(buffer.array());
+                    }
+                    break;
+                case MEMORY_MAPPED:
+                    MappedElfWriter.write(this, Paths.get(fileName));
+                    break;
+                case PARALLEL:
+                    ParallelElfWriter.write(this, Paths.get(fileName));
+                    break;
+            }
+            written = fileSize;
         } catch (IOException ex) {
             ex.printStackTrace();
         }
+        metrics.end(event, fileName, written, sections.size());
+    }
+
+    /**
+     * Writes the file through the cache: an image built from the same inputs before is taken from
+     * the cache, otherwise the file is written and cached. Structure is finalized either way.
+     */
+    public void writeToFile(String fileName, ElfCache cache){
+        PhaseEvent event = metrics.begin(Phase.FILE_WRITE);
+        long written = 0;
+        try {
+            cache.write(this, Paths.get(fileName));
+            written = fileSize;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        metrics.end(event, fileName, written, sections.size());
+    }
+
+    /**
+     * Writes the file so that the next call with the same file name rewrites only the sections,
+     * and section header entries, that changed in between. Falls back to writing the whole file
+     * whenever a section outgrew its place.
+     */
+    public void writeIncremental(String fileName){
+        if(incrementalWriter == null){
+            incrementalWriter = new IncrementalElfWriter();
+        }
+        writeIncremental(fileName, incrementalWriter);
+    }
+
+    /**
+     * Writes the file incrementally with given writer, which may have written the file from
+     * another elf before: sections matching the ones written then keep their places.
+     */
+    public void writeIncremental(String fileName, IncrementalElfWriter writer){
+        PhaseEvent event = metrics.begin(Phase.FILE_WRITE);
+        long written = 0;
+        try {
+            writer.write(this, Paths.get(fileName));
+            written = writer.getBytesWritten();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        metrics.end(event, fileName, written, sections.size());
+    }
+
+    public IncrementalElfWriter getIncrementalWriter() { return incrementalWriter; }
+
+    /**
+     * Timing of the generation phases of this file. Disabled until {@link ElfMetrics#setEnabled(boolean)}.
+     */
+    public ElfMetrics getMetrics() { return metrics; }
+
+    /**
+     * @return phase metrics so far, together with the current size of sections and tables
+     */
+    public ElfMetrics.Snapshot getMetricsSnapshot() {
+        return metrics.snapshot(sections.size(), symbolTable.getSymbolCount(), stringTable.getSizeInBytes(), fileSize);
+    }
+
+    public enum OutputMode {
+        /** Whole image is built on heap, then written through an output stream */
+        STREAM,
+        /** File is sized up front, mapped, and every part is written in place */
+        MEMORY_MAPPED,
+        /** Parts are serialized in parallel on the common fork join pool and written with one gathering write */
+        PARALLEL
+    }
+
+    /**
+     * Writes a listing of elf header, program header table if there is one, section header table,
+     * symbol table and string table.
+     */
+    public void dump(Appendable out) throws IOException {
+        dump(out, index -> true, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes a listing like {@link #dump(Appendable)}, with only a page of the symbols accepted
+     * by the filter; see {@link SymbolTable#dump(Appendable, IntPredicate, int, int)}.
+     */
+    public void dump(Appendable out, IntPredicate symbolFilter, int skip, int limit) throws IOException {
+        header.dump(out);
+        out.append('\n');
+        if(!programHeaderTable.getEntries().isEmpty()){
+            programHeaderTable.dump(out);
+            out.append('\n');
+        }
+        sectionHeaderTable.dump(out);
+        out.append('\n');
+        symbolTable.dump(out, symbolFilter, skip, limit);
+        out.append('\n');
+        stringTable.dump(out);
+        out.append('\n');
     }
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(header).append('\n');
-        sb.append(sectionHeaderTable).append('\n');
-        sb.append(symbolTable).append('\n');
-        sb.append(stringTable).append('\n');
-        return sb.toString();
+        return DumpWriter.toString(this::dump);
     }
 
     // TODO list:
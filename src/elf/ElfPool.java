@@ -0,0 +1,43 @@
+package elf;
+
+import elf.header.ElfHeader;
+
+import java.util.ArrayDeque;
+
+/**
+ * Per thread pool of {@link Elf} builders. A released builder is {@link Elf#reset() reset} and
+ * handed out again by the next acquire on the same thread, together with the storage its tables
+ * grew to, so a thread building files one after another stops allocating for them once the
+ * tables are large enough.
+ *
+ * Each thread keeps at most {@link #MAX_PER_THREAD} builders; more are left to the garbage
+ * collector. Builders must not be used after they are released.
+ */
+public final class ElfPool {
+    public static final int MAX_PER_THREAD = 4;
+
+    private static final ThreadLocal<ArrayDeque<Elf>> POOL = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private ElfPool() {
+    }
+
+    /**
+     * @return builder of this thread's pool with a default header, or a new one if the pool is empty
+     */
+    public static Elf acquire() {
+        Elf elf = POOL.get().pollLast();
+        return elf != null ? elf : new Elf(new ElfHeader());
+    }
+
+    /**
+     * Resets the builder and returns it to this thread's pool.
+     */
+    public static void release(Elf elf) {
+        ArrayDeque<Elf> pool = POOL.get();
+        if(pool.size() < MAX_PER_THREAD){
+            elf.getHeader().reset();
+            elf.reset();
+            pool.addLast(elf);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package elf.batch;
+
+import elf.Elf;
+import elf.header.ElfHeader;
+import elf.io.OutputFiles;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates many small elf files from one template. Every job gets a file made from the
+ * template, adds its own contents to it, and the file is then finalized and written in one write
+ * from a heap buffer, on a thread of the executor. Finished files are {@link Elf#reset() reset}
+ * and kept for the next jobs, whichever thread runs them, so their tables are reused from job to
+ * job on virtual threads as well. At most as many are kept as jobs may be in flight.
+ *
+ * Submitting blocks while the number of jobs in flight is at the limit, so producers can not run
+ * ahead of the writers and pile up built but unwritten files in memory.
+ *
+ * By default jobs run on virtual threads, one per job, where the runtime has them; otherwise on a
+ * pool of a thread per processor.
+ */
+public class BatchBuilder implements AutoCloseable {
+    private final ElfTemplate template;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Semaphore inFlight;
+    private final BlockingQueue<Elf> spares;    // Reset files for the next jobs
+
+    /**
+     * @param maxInFlight number of jobs submitted but not finished above which submitting blocks
+     */
+    public BatchBuilder(ElfTemplate template, int maxInFlight) {
+        this(template, maxInFlight, newDefaultExecutor(), true);
+    }
+
+    /**
+     * Runs jobs on given executor, which is left running on {@link #close()}.
+     */
+    public BatchBuilder(ElfTemplate template, int maxInFlight, ExecutorService executor) {
+        this(template, maxInFlight, executor, false);
+    }
+
+    private BatchBuilder(ElfTemplate template, int maxInFlight, ExecutorService executor, boolean ownsExecutor) {
+        if(maxInFlight < 1){
+            throw new IllegalArgumentException("At least one job has to be allowed in flight: " + maxInFlight);
+        }
+        this.template = template;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.spares = new ArrayBlockingQueue<>(maxInFlight);
+    }
+
+    /**
+     * @return executor starting a virtual thread per task if the runtime supports them, or a fixed
+     * pool of a thread per processor otherwise
+     */
+    public static ExecutorService newDefaultExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            // No virtual threads in this runtime
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    public ElfTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Starts a batch: a group of jobs that is waited for, and measured, together.
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    @Override
+    public void close() {
+        if(ownsExecutor){
+            executor.shutdown();
+        }
+    }
+
+    private Elf acquire() {
+        Elf elf = spares.poll();
+        return elf != null ? elf : new Elf(new ElfHeader());
+    }
+
+    private void release(Elf elf) {
+        elf.getHeader().reset();
+        elf.reset();
+        spares.offer(elf);
+    }
+
+    private static void write(Elf elf, Path target) throws IOException {
+        ByteBuffer image = ByteBuffer.allocate(Math.toIntExact(elf.getFileSize()));
+        elf.writeImage(image);
+        image.clear();
+        try (FileChannel channel = OutputFiles.create(target)) {
+            while(image.hasRemaining()){
+                channel.write(image);
+            }
+        }
+    }
+
+    public class Batch {
+        private final Phaser pending = new Phaser(1);
+        private final long start = System.nanoTime();
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+        private Batch() {
+        }
+
+        /**
+         * Queues the job of building the file written to target. Blocks while too many jobs are
+         * in flight.
+         */
+        public void submit(Path target, ElfJob job) throws InterruptedException {
+            inFlight.acquire();
+            pending.register();
+            try {
+                executor.execute(() -> run(target, job));
+            } catch (RejectedExecutionException ex) {
+                pending.arriveAndDeregister();
+                inFlight.release();
+                throw ex;
+            }
+        }
+
+        private void run(Path target, ElfJob job) {
+            Elf elf = acquire();
+            try {
+                template.applyTo(elf);
+                job.build(elf);
+                elf.finalizeElfStructure();
+                write(elf, target);
+                files.incrementAndGet();
+                bytes.addAndGet(elf.getFileSize());
+            } catch (Throwable ex) {
+                failures.incrementAndGet();
+                firstFailure.compareAndSet(null, ex);
+            } finally {
+                release(elf);
+                inFlight.release();
+                pending.arriveAndDeregister();
+            }
+        }
+
+        /**
+         * Waits for every job submitted so far. The batch can not be used afterwards.
+         */
+        public BatchResult await() throws InterruptedException {
+            pending.awaitAdvanceInterruptibly(pending.arriveAndDeregister());
+            return new BatchResult(files.get(), bytes.get(), failures.get(), firstFailure.get(), System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package elf.batch;
+
+import java.util.Locale;
+
+/**
+ * Outcome of one batch: how many files were written, and how fast.
+ */
+public final class BatchResult {
+    private final long files;
+    private final long bytes;
+    private final long failures;
+    private final Throwable firstFailure;
+    private final long nanos;
+
+    BatchResult(long files, long bytes, long failures, Throwable firstFailure, long nanos) {
+        this.files = files;
+        this.bytes = bytes;
+        this.failures = failures;
+        this.firstFailure = firstFailure;
+        this.nanos = nanos;
+    }
+
+    public long getFiles() { return files; }
+
+    public long getBytes() { return bytes; }
+
+    public long getFailures() { return failures; }
+
+    /**
+     * @return exception of the first job that failed, or null
+     */
+    public Throwable getFirstFailure() { return firstFailure; }
+
+    /**
+     * @return time from the start of the batch until all of its jobs were done
+     */
+    public long getNanos() { return nanos; }
+
+    public double getFilesPerSecond() {
+        return nanos == 0 ? 0 : files * 1e9 / nanos;
+    }
+
+    public double getBytesPerSecond() {
+        return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d files, %d bytes, %d failed in %.3f ms: %.1f files/s, %.1f MB/s",
+                files, bytes, failures, nanos / 1e6, getFilesPerSecond(), getBytesPerSecond() / (1 << 20));
+    }
+}
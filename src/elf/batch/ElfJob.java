@@ -0,0 +1,13 @@
+package elf.batch;
+
+import elf.Elf;
+
+/**
+ * Adds what is unique to one elf file - its code, symbols, extra sections - to a file made from
+ * the template of the batch. The file is finalized and written after the job returns, and then
+ * reused for another job, so the job must not keep it.
+ */
+@FunctionalInterface
+public interface ElfJob {
+    void build(Elf elf) throws Exception;
+}
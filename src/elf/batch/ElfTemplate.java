@@ -0,0 +1,144 @@
+package elf.batch;
+
+import elf.Elf;
+import elf.header.ElfHeader;
+import elf.section.SectionHeaderEntry;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable starting point of many elf files: a pre-serialized elf header, the sections every
+ * file shares, and the settings of the files. Making a file from a template copies nothing but the
+ * 64 bytes of the header; contents of the shared sections are written straight from the template.
+ * A used file can be turned into a new one with {@link #applyTo(Elf)}, keeping its grown tables.
+ *
+ * Templates are safe to share between threads.
+ */
+public final class ElfTemplate {
+    private final byte[] header;
+    private final long baseAddress;
+    private final boolean mergeStringTails;
+    private final List<SectionTemplate> sections;
+
+    private ElfTemplate(Builder builder) {
+        ByteBuffer buffer = ByteBuffer.allocate(builder.header.elfHeaderSize.value());
+        builder.header.writeTo(buffer);
+        this.header = buffer.array();
+        this.baseAddress = builder.baseAddress;
+        this.mergeStringTails = builder.mergeStringTails;
+        this.sections = List.copyOf(builder.sections);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return new elf file with the header and the shared sections of the template
+     */
+    public Elf newElf() {
+        Elf elf = new Elf(ElfHeader.readFrom(ByteBuffer.wrap(header)));
+        addTo(elf);
+        return elf;
+    }
+
+    /**
+     * Turns a used elf file into one made from the template, keeping the storage of its tables.
+     *
+     * @see Elf#reset()
+     */
+    public void applyTo(Elf elf) {
+        elf.getHeader().read(ByteBuffer.wrap(header));
+        elf.reset();
+        addTo(elf);
+    }
+
+    private void addTo(Elf elf) {
+        elf.setBaseAddress(baseAddress);
+        elf.setMergeStringTails(mergeStringTails);
+        for(SectionTemplate section : sections){
+            SectionHeaderEntry entry = elf.addSection(new TemplateSection(section.name, section.contents, section.alignment),
+                    section.type);
+            for(SectionHeaderEntry.SectionFlag flag : section.flags){
+                entry.addSectionAttribute(flag);
+            }
+            entry.setEntriesSize(section.entrySize);
+        }
+    }
+
+    /**
+     * @return serialized elf header, as it is before layout fills in offsets and counts
+     */
+    public byte[] getHeaderBytes() {
+        return header.clone();
+    }
+
+    public int getSectionCount() {
+        return sections.size();
+    }
+
+    private static final class SectionTemplate {
+        private final String name;
+        private final SectionHeaderEntry.SectionType type;
+        private final SectionHeaderEntry.SectionFlag[] flags;
+        private final long alignment;
+        private final long entrySize;
+        private final byte[] contents;
+
+        private SectionTemplate(String name, SectionHeaderEntry.SectionType type, SectionHeaderEntry.SectionFlag[] flags,
+                                long alignment, long entrySize, byte[] contents) {
+            this.name = name;
+            this.type = type;
+            this.flags = flags;
+            this.alignment = alignment;
+            this.entrySize = entrySize;
+            this.contents = contents;
+        }
+    }
+
+    public static final class Builder {
+        private ElfHeader header = new ElfHeader();
+        private long baseAddress;
+        private boolean mergeStringTails;
+        private final ArrayList<SectionTemplate> sections = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Header to start every file with; it is serialized when the template is built, so later
+         * changes to it do not affect the template.
+         */
+        public Builder header(ElfHeader header) {
+            this.header = header;
+            return this;
+        }
+
+        public Builder baseAddress(long baseAddress) {
+            this.baseAddress = baseAddress;
+            return this;
+        }
+
+        public Builder mergeStringTails(boolean mergeStringTails) {
+            this.mergeStringTails = mergeStringTails;
+            return this;
+        }
+
+        /**
+         * Adds a section every file gets, with the same contents. Contents are copied.
+         */
+        public Builder section(String name, SectionHeaderEntry.SectionType type, long alignment, long entrySize,
+                               byte[] contents, SectionHeaderEntry.SectionFlag... flags) {
+            sections.add(new SectionTemplate(name, type, flags.clone(), alignment, entrySize,
+                    Arrays.copyOf(contents, contents.length)));
+            return this;
+        }
+
+        public ElfTemplate build() {
+            return new ElfTemplate(this);
+        }
+    }
+}
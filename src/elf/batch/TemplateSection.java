@@ -0,0 +1,35 @@
+package elf.batch;
+
+import elf.section.Section;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Section whose contents were serialized once, when the template was made, and are shared by every
+ * elf file made from the template. Contents are never modified, so they are not copied either.
+ */
+public class TemplateSection extends Section {
+    private final byte[] contents;
+    private final long alignment;
+
+    TemplateSection(String name, byte[] contents, long alignment) {
+        super(name);
+        this.contents = contents;
+        this.alignment = alignment;
+    }
+
+    @Override
+    public long getDefaultAlignment() {
+        return alignment;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return contents.length;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(contents);
+    }
+}
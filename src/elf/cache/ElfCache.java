@@ -0,0 +1,275 @@
+package elf.cache;
+
+import elf.Elf;
+import elf.datatype.Elf64Byte;
+import elf.header.ElfHeader;
+import elf.io.MappedElfWriter;
+import elf.io.OutputFiles;
+import elf.section.Section;
+import elf.section.SectionHeaderEntry;
+import elf.section.SectionHeaderEntry.SectionFlag;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Content addressed cache of finished elf images, kept in a local directory.
+ *
+ * Key of an image is a hash over everything the image is built from: the identifying fields of
+ * elf header, and for every section its name, type, flags, alignment, entry size, links and
+ * contents. Contents built on finalization, such as the ones of the hash table, are left out, as
+ * they follow from the sections they are built from. When an elf file with the same key is asked
+ * for again, the cached image is linked or copied to the target instead of writing the file.
+ *
+ * Directory is bounded in size; least recently used images are evicted first. Recency survives
+ * restarts through the modification time of cached files.
+ *
+ * Hard linked targets share their bytes with the cache, so they must not be modified in place.
+ * Writers of this library, the cache included, unlink an existing target before writing it, see
+ * {@link OutputFiles#create}, and incremental writes do not write in place of a linked target.
+ */
+public class ElfCache {
+    private static final String SUFFIX = ".elf";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final boolean hardLinks;
+
+    private final LinkedHashMap<String, Long> entries;  // Key to image size, least recently used first
+    private long totalBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes  total size of cached images above which the least recently used get evicted
+     * @param hardLinks when set, hits are served by hard linking the cached image to the target
+     *                  where the file system allows it, and by copying it otherwise
+     */
+    public ElfCache(Path directory, long maxBytes, boolean hardLinks) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.hardLinks = hardLinks;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        Files.createDirectories(directory);
+        loadEntries();
+    }
+
+    private void loadEntries() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+        }
+        List<Map.Entry<Path, BasicFileAttributes>> found = new ArrayList<>();
+        for(Path file : files){
+            found.add(Map.entry(file, Files.readAttributes(file, BasicFileAttributes.class)));
+        }
+        found.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+
+        for(Map.Entry<Path, BasicFileAttributes> entry : found){
+            String name = entry.getKey().getFileName().toString();
+            entries.put(name.substring(0, name.length() - SUFFIX.length()), entry.getValue().size());
+            totalBytes += entry.getValue().size();
+        }
+    }
+
+    /**
+     * Writes the elf file to the target, from the cache when an image with the same inputs is
+     * there, or by writing it, and caching the result, when it is not. Elf is finalized either
+     * way, so its layout and addresses can be used afterwards as if it was written.
+     *
+     * @return true on a cache hit
+     */
+    public boolean write(Elf elf, Path target) throws IOException {
+        String key = keyOf(elf);
+        elf.finalizeElfStructure();
+        if(serve(key, target)){
+            return true;
+        }
+
+        Path temporary = Files.createTempFile(directory, key, ".tmp");
+        try {
+            MappedElfWriter.write(elf, temporary);
+            long size = Files.size(temporary);
+            synchronized (this) {
+                misses++;
+                Files.move(temporary, imageOf(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Long previous = entries.put(key, size);
+                totalBytes += size - (previous == null ? 0 : previous);
+                copy(imageOf(key), target);
+                evict(key);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return false;
+    }
+
+    private synchronized boolean serve(String key, Path target) throws IOException {
+        if(entries.get(key) == null){
+            return false;
+        }
+        Path image = imageOf(key);
+        if(!Files.exists(image)){
+            // Removed behind the cache's back
+            totalBytes -= entries.remove(key);
+            return false;
+        }
+
+        hits++;
+        Files.setLastModifiedTime(image, FileTime.fromMillis(System.currentTimeMillis()));
+        Files.deleteIfExists(target);
+        if(hardLinks){
+            try {
+                Files.createLink(target, image);
+                return true;
+            } catch (IOException | UnsupportedOperationException ex) {
+                // Different file store, or no hard links there; fall back to copying
+            }
+        }
+        copy(image, target);
+        return true;
+    }
+
+    private static void copy(Path image, Path target) throws IOException {
+        try (FileChannel from = FileChannel.open(image, StandardOpenOption.READ);
+             FileChannel to = OutputFiles.create(target)) {
+            long size = from.size();
+            for(long position = 0; position < size; ){
+                position += from.transferTo(position, size - position, to);
+            }
+        }
+    }
+
+    // Evicts least recently used images, never the one just added.
+    private void evict(String keep) throws IOException {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while(totalBytes > maxBytes && iterator.hasNext()){
+            Map.Entry<String, Long> entry = iterator.next();
+            if(entry.getKey().equals(keep)){
+                continue;
+            }
+            Files.deleteIfExists(imageOf(entry.getKey()));
+            totalBytes -= entry.getValue();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private Path imageOf(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    /**
+     * Hashes the elf file as it is before finalization, without changing it.
+     *
+     * @return hex encoded hash of everything the image of the elf file is built from
+     */
+    public static String keyOf(Elf elf) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        // Identification, type, machine, version, entry point and flags; the rest is filled in by layout
+        ElfHeader header = elf.getHeader();
+        ByteBuffer fields = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+        for(Elf64Byte identifier : header.elfIdentifier){
+            fields.put(identifier.value().byteValue());
+        }
+        fields.putShort(header.objectFileType.value().shortValue());
+        fields.putShort(header.machineType.value().shortValue());
+        fields.putInt(header.objectFileVersion.value().intValue());
+        fields.putLong(header.entryPointAddress.value());
+        fields.putInt(header.processorSpecificFlag.value().intValue());
+        digest.update(fields.flip());
+
+        fields.clear();
+        fields.putLong(elf.getBaseAddress());
+        fields.put((byte) (elf.isMergingStringTails() ? 1 : 0));
+        fields.putInt(elf.getSections().size());
+        digest.update(fields.flip());
+
+        ByteBuffer scratch = ByteBuffer.allocate(0);
+        for(Section section : elf.getSections()){
+            SectionHeaderEntry entry = section.getHeaderEntry();
+            byte[] name = section.getSectionName().getBytes(StandardCharsets.UTF_8);
+            fields.clear();
+            fields.putInt(name.length);
+            digest.update(fields.flip());
+            digest.update(name);
+
+            fields.clear();
+            fields.putLong(entry.getSectionType().value());
+            fields.putLong(entry.getSectionAttributes().value() & ~SectionFlag.SHF_COMPRESSED.getMask());
+            fields.putLong(section.getContentsAlignment());
+            fields.putLong(entry.getEntriesSize().value());
+            fields.putInt(section.getLink() == null ? -1 : section.getLink().getSectionIndex());
+            fields.putInt(section.getInfoLink() == null ? -1 : section.getInfoLink().getSectionIndex());
+            fields.putLong(section.getSizeInBytes());
+            fields.putLong(section.getCompressionThreshold());
+            digest.update(fields.flip());
+
+            // Hash table is built from dynamic symbols on finalization, which reorders them
+            if(!entry.isOfType(SectionHeaderEntry.SectionType.SHT_NOBITS)
+                    && !entry.isOfType(SectionHeaderEntry.SectionType.SHT_GNU_HASH)){
+                int size = Math.toIntExact(section.getSizeInBytes());
+                if(scratch.capacity() < size){
+                    scratch = ByteBuffer.allocate(size);
+                }
+                scratch.clear().limit(size);
+                section.writeTo(scratch);
+                digest.update(scratch.flip());
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for(int i = 0; i < bytes.length; i++){
+            chars[2 * i] = HEX[(bytes[i] >>> 4) & 0xF];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    public synchronized long getHits() { return hits; }
+
+    public synchronized long getMisses() { return misses; }
+
+    public synchronized long getEvictions() { return evictions; }
+
+    public synchronized long getTotalBytes() { return totalBytes; }
+
+    public synchronized int getEntryCount() { return entries.size(); }
+
+    @Override
+    public synchronized String toString() {
+        return "ElfCache " + directory + ": " + entries.size() + " images, " + totalBytes + " bytes, "
+                + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+}
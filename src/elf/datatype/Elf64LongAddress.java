@@ -0,0 +1,10 @@
+package elf.datatype;
+
+/**
+ * Unsigned program address backed by a primitive long
+ */
+public class Elf64LongAddress extends ElfLongDataType {
+    public Elf64LongAddress(long data) { super(data); }
+
+    @Override public ElfDataType.Size getSize() { return ElfDataType.Size._8_BYTES; }
+}
@@ -0,0 +1,10 @@
+package elf.datatype;
+
+/**
+ * Unsigned file offset backed by a primitive long
+ */
+public class Elf64LongOffset extends ElfLongDataType {
+    public Elf64LongOffset(long data) { super(data); }
+
+    @Override public ElfDataType.Size getSize() { return ElfDataType.Size._8_BYTES; }
+}
@@ -0,0 +1,10 @@
+package elf.datatype;
+
+/**
+ * Unsigned long integer backed by a primitive long
+ */
+public class Elf64LongXWord extends ElfLongDataType {
+    public Elf64LongXWord(long data) { super(data); }
+
+    @Override public ElfDataType.Size getSize() { return ElfDataType.Size._8_BYTES; }
+}
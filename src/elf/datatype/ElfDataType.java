@@ -1,6 +1,10 @@
 package elf.datatype;
 
+import elf.encoding.ElfEncoder;
+import elf.util.DumpWriter;
+
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 public abstract class ElfDataType<T extends Number> {
     public enum Size{
@@ -30,23 +34,16 @@ public abstract class ElfDataType<T extends Number> {
 
     @Override
     public boolean equals(Object obj) {
-        BigInteger num1, num2;
         if(obj instanceof ElfDataType){
             Number n2 = ((ElfDataType<?>) obj).data;
 
-            if(n2 instanceof BigInteger){
-                num2 = (BigInteger) n2;
-            }
-            else{
-                num2 = new BigInteger(String.valueOf(n2.longValue()));
+            // Only BigInteger values can exceed a long, so compare primitives whenever possible.
+            if(!(data instanceof BigInteger) && !(n2 instanceof BigInteger)){
+                return data.longValue() == n2.longValue();
             }
 
-            if(data instanceof BigInteger){
-                num1 = (BigInteger) data;
-            }
-            else {
-                num1 = new BigInteger(String.valueOf(data.longValue()));
-            }
+            BigInteger num1 = data instanceof BigInteger ? (BigInteger) data : BigInteger.valueOf(data.longValue());
+            BigInteger num2 = n2 instanceof BigInteger ? (BigInteger) n2 : BigInteger.valueOf(n2.longValue());
 
             return num1.equals(num2);
         }
@@ -59,81 +56,45 @@ public abstract class ElfDataType<T extends Number> {
     }
 
     public byte[] toBytes(){
-        byte[] result;
-
-        if(data instanceof BigInteger) {
-            byte[] temp = ((BigInteger)data).toByteArray();
-            int numOfZerosToInsert = getSize().numOfBytes - temp.length;
-            result = new byte[getSize().numOfBytes];
-            for(int i = 0; i < numOfZerosToInsert; ++i) {
-                result[i] = 0;
-            }
-            for(int i = 0; i < temp.length; ++i) {
-                result[i + numOfZerosToInsert] = temp[i];
-            }
-        }
-        else {
-            result = new byte[getSize().numOfBytes];
-            long tempData = data.longValue();
-
-            for(int i = 0; i < result.length; i++){
-                result[i] = (byte)(0xFF & tempData);
-                tempData >>= 8;
-            }
-        }
-
-        return result;
+        return toBytes(ElfEncoder.ELF64_LSB);
     }
 
-    private String getHex(){
-        StringBuilder sb = new StringBuilder();
-
-        if(data instanceof BigInteger) { // If BigDecimal is used for storing data.
-            String hex = ((BigInteger)data).toString(16);
-            sb.append(hex);
-
-            int length = hex.length();
-            if(length % 2 != 0){  // If hex length is odd add zero in front
-                sb.insert(0, '0');
-                length++;
-            }
+    /**
+     * @return bytes of the value in the byte order of the encoder
+     */
+    public byte[] toBytes(ElfEncoder encoder){
+        ByteBuffer buffer = ByteBuffer.allocate(getSize().numOfBytes).order(encoder.getByteOrder());
+        writeTo(buffer);
+        return buffer.array();
+    }
 
-            int numOfZerosToInsert = getSize().numOfBytes - length/2;
-            boolean isOdd = numOfZerosToInsert % 2 == 0;
-            for(int i = 0; i < numOfZerosToInsert; i++){
-                sb.insert(0, "00");
-            }
+    /**
+     * Puts the value at the current position of the buffer, using the byte order of the buffer.
+     * Unsigned values that do not fit the signed Java primitive keep their bit pattern.
+     */
+    public void writeTo(ByteBuffer buffer){
+        long tempData = data.longValue();
+
+        switch (getSize()){
+            case _1_BYTE:  buffer.put((byte)tempData);      break;
+            case _2_BYTES: buffer.putShort((short)tempData); break;
+            case _4_BYTES: buffer.putInt((int)tempData);     break;
+            case _8_BYTES: buffer.putLong(tempData);         break;
         }
-        else {
-            long tempData = data.longValue();
-
-            for(int i = 0; i < getSize().numOfBytes; i++){
-                String hexSegment =  Long.toHexString(0xFF & tempData);
-                sb.insert(0, hexSegment);
-                if(hexSegment.length() < 2){
-                    sb.insert(0, '0');
-                }
-                tempData >>= 8;
-            }
-        }
-
-        hex = sb.toString();
-        return hex;
     }
 
+    /**
+     * @return bytes of the value in hex, most significant first, each followed by a space
+     */
     @Override
     public String toString() {
         if(hex == null){
-            getHex();
-        }
-
-        StringBuilder sb = new StringBuilder();
-
-        for(int i = 0; i < hex.length() ; i+=2 ) {
-            sb.append(hex.substring(i, i+2));
-            sb.append(' ');
+            int numOfBytes = getSize().numOfBytes;
+            char[] chars = new char[numOfBytes * 3];
+            // Values of BigInteger types fit into 64 bits, so the low 64 bits are all there is
+            DumpWriter.toHex(data.longValue(), numOfBytes, chars, 0);
+            hex = new String(chars);
         }
-
-        return sb.toString();
+        return hex;
     }
 }
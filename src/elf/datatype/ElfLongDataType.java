@@ -0,0 +1,105 @@
+package elf.datatype;
+
+import elf.encoding.ElfEncoder;
+import elf.util.DumpWriter;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Primitive counterpart of {@link ElfDataType} for the unsigned 64-bit ELF types.
+ * The value is kept in a plain long and always interpreted as unsigned, so
+ * arithmetic and comparison never allocate.
+ */
+public abstract class ElfLongDataType implements Comparable<ElfLongDataType> {
+    protected long data;
+
+    public abstract ElfDataType.Size getSize();
+
+    public boolean isUnsigned() { return true; }
+
+    public ElfLongDataType(long data){ this.data = data; }
+
+    public long value(){ return data; }
+
+    public void setValue(long data) {
+        this.data = data;
+    }
+
+    public void incrementBy(long size){
+        data += size;
+    }
+
+    /**
+     * Rounds the value up to the next multiple of alignment. Only 0 and positive
+     * integral powers of two are allowed, 0 and 1 mean no alignment constraint.
+     */
+    public void alignTo(long alignment){
+        data = align(data, alignment);
+    }
+
+    public static long align(long value, long alignment){
+        if(alignment == 0 || alignment == 1){
+            return value;
+        }
+        if((alignment & (alignment - 1)) != 0){
+            throw new IllegalArgumentException("Alignment must be a power of two: " + Long.toUnsignedString(alignment));
+        }
+        return (value + alignment - 1) & -alignment;
+    }
+
+    public boolean isAlignedTo(long alignment){
+        return align(data, alignment) == data;
+    }
+
+    @Override
+    public int compareTo(ElfLongDataType other) {
+        return Long.compareUnsigned(data, other.data);
+    }
+
+    public BigInteger toBigInteger(){
+        BigInteger result = BigInteger.valueOf(data & Long.MAX_VALUE);
+        return data < 0 ? result.setBit(Long.SIZE - 1) : result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(obj instanceof ElfLongDataType){
+            return data == ((ElfLongDataType) obj).data;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(data);
+    }
+
+    public byte[] toBytes(){
+        return toBytes(ElfEncoder.ELF64_LSB);
+    }
+
+    /**
+     * @return bytes of the value in the byte order of the encoder
+     */
+    public byte[] toBytes(ElfEncoder encoder){
+        ByteBuffer buffer = ByteBuffer.allocate(getSize().numOfBytes).order(encoder.getByteOrder());
+        writeTo(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Puts the value at the current position of the buffer, using the byte order of the buffer.
+     */
+    public void writeTo(ByteBuffer buffer){
+        buffer.putLong(data);
+    }
+
+    @Override
+    public String toString() {
+        int numOfBytes = getSize().numOfBytes;
+        char[] chars = new char[numOfBytes * 3];
+        DumpWriter.toHex(data, numOfBytes, chars, 0);
+        return new String(chars);
+    }
+}
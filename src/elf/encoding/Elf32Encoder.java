@@ -0,0 +1,103 @@
+package elf.encoding;
+
+import elf.header.ElfHeader.FileClass;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Structures of ELF32 files, in either byte order. Fields that are 8 bytes wide in ELF64 are
+ * truncated to their low 4 bytes.
+ */
+abstract class Elf32Encoder extends ElfEncoder {
+    @Override public FileClass getFileClass() { return FileClass.ELF_CLASS_32; }
+
+    @Override public int getAddressSize() { return 4; }
+
+    @Override public int getHeaderSize() { return 52; }
+
+    @Override public int getSectionHeaderEntrySize() { return 40; }
+
+    @Override public int getProgramHeaderEntrySize() { return 32; }
+
+    @Override public int getSymbolSize() { return 16; }
+
+    @Override public int getRelaSize() { return 12; }
+
+    @Override public int getCompressionHeaderSize() { return 12; }
+
+    @Override
+    public void putAddress(ByteBuffer buffer, int index, long value) {
+        putWord(buffer, index, (int) value);
+    }
+
+    @Override
+    public long getAddress(ByteBuffer buffer, int index) {
+        return getWord(buffer, index) & 0xFFFFFFFFL;
+    }
+
+    // Elf32_Sym puts value and size in front of info, unlike Elf64_Sym
+    @Override
+    public void putSymbol(ByteBuffer buffer, int nameOffset, byte info, byte other, short sectionIndex,
+                          long value, long size) {
+        int at = buffer.position();
+        putWord(buffer, at, nameOffset);
+        putWord(buffer, at + 4, (int) value);
+        putWord(buffer, at + 8, (int) size);
+        buffer.put(at + 12, info);
+        buffer.put(at + 13, other);
+        putHalf(buffer, at + 14, sectionIndex);
+        buffer.position(at + 16);
+    }
+
+    // ELF32_R_INFO keeps the symbol index in the upper 24 bits and the type in the low byte
+    @Override
+    public void putRela(ByteBuffer buffer, long offset, long info, long addend) {
+        int at = buffer.position();
+        putWord(buffer, at, (int) offset);
+        putWord(buffer, at + 4, (int) ((info >>> 32) << 8 | (info & 0xFF)));
+        putWord(buffer, at + 8, (int) addend);
+        buffer.position(at + 12);
+    }
+
+    @Override
+    public void putSectionHeader(ByteBuffer buffer, int name, int type, long flags, long address, long offset,
+                                 long size, int link, int info, long alignment, long entrySize) {
+        int at = buffer.position();
+        putWord(buffer, at, name);
+        putWord(buffer, at + 4, type);
+        putWord(buffer, at + 8, (int) flags);
+        putWord(buffer, at + 12, (int) address);
+        putWord(buffer, at + 16, (int) offset);
+        putWord(buffer, at + 20, (int) size);
+        putWord(buffer, at + 24, link);
+        putWord(buffer, at + 28, info);
+        putWord(buffer, at + 32, (int) alignment);
+        putWord(buffer, at + 36, (int) entrySize);
+        buffer.position(at + 40);
+    }
+
+    // Elf32_Phdr puts flags after the sizes, where Elf64_Phdr has them right after the type
+    @Override
+    public void putProgramHeader(ByteBuffer buffer, int type, int flags, long offset, long address,
+                                 long physicalAddress, long fileSize, long memorySize, long alignment) {
+        int at = buffer.position();
+        putWord(buffer, at, type);
+        putWord(buffer, at + 4, (int) offset);
+        putWord(buffer, at + 8, (int) address);
+        putWord(buffer, at + 12, (int) physicalAddress);
+        putWord(buffer, at + 16, (int) fileSize);
+        putWord(buffer, at + 20, (int) memorySize);
+        putWord(buffer, at + 24, flags);
+        putWord(buffer, at + 28, (int) alignment);
+        buffer.position(at + 32);
+    }
+
+    @Override
+    public void putCompressionHeader(ByteBuffer buffer, int type, long size, long alignment) {
+        int at = buffer.position();
+        putWord(buffer, at, type);
+        putWord(buffer, at + 4, (int) size);
+        putWord(buffer, at + 8, (int) alignment);
+        buffer.position(at + 12);
+    }
+}
@@ -0,0 +1,27 @@
+package elf.encoding;
+
+import elf.header.ElfHeader.DataEncoding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * ELF32, big-endian.
+ */
+final class Elf32MsbEncoder extends Elf32Encoder {
+    @Override public DataEncoding getDataEncoding() { return DataEncoding.ELF_DATA2MSB; }
+
+    @Override public ByteOrder getByteOrder() { return ByteOrder.BIG_ENDIAN; }
+
+    @Override public void putHalf(ByteBuffer buffer, int index, int value) { BigEndian.putShort(buffer, index, (short) value); }
+
+    @Override public void putWord(ByteBuffer buffer, int index, int value) { BigEndian.putInt(buffer, index, value); }
+
+    @Override public void putXWord(ByteBuffer buffer, int index, long value) { BigEndian.putLong(buffer, index, value); }
+
+    @Override public int getHalf(ByteBuffer buffer, int index) { return BigEndian.getShort(buffer, index) & 0xFFFF; }
+
+    @Override public int getWord(ByteBuffer buffer, int index) { return BigEndian.getInt(buffer, index); }
+
+    @Override public long getXWord(ByteBuffer buffer, int index) { return BigEndian.getLong(buffer, index); }
+}
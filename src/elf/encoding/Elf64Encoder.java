@@ -0,0 +1,100 @@
+package elf.encoding;
+
+import elf.header.ElfHeader.FileClass;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Structures of ELF64 files, in either byte order.
+ */
+abstract class Elf64Encoder extends ElfEncoder {
+    @Override public FileClass getFileClass() { return FileClass.ELF_CLASS_64; }
+
+    @Override public int getAddressSize() { return 8; }
+
+    @Override public int getHeaderSize() { return 64; }
+
+    @Override public int getSectionHeaderEntrySize() { return 64; }
+
+    @Override public int getProgramHeaderEntrySize() { return 56; }
+
+    @Override public int getSymbolSize() { return 24; }
+
+    @Override public int getRelaSize() { return 24; }
+
+    @Override public int getCompressionHeaderSize() { return 24; }
+
+    @Override
+    public void putAddress(ByteBuffer buffer, int index, long value) {
+        putXWord(buffer, index, value);
+    }
+
+    @Override
+    public long getAddress(ByteBuffer buffer, int index) {
+        return getXWord(buffer, index);
+    }
+
+    @Override
+    public void putSymbol(ByteBuffer buffer, int nameOffset, byte info, byte other, short sectionIndex,
+                          long value, long size) {
+        int at = buffer.position();
+        putWord(buffer, at, nameOffset);
+        buffer.put(at + 4, info);
+        buffer.put(at + 5, other);
+        putHalf(buffer, at + 6, sectionIndex);
+        putXWord(buffer, at + 8, value);
+        putXWord(buffer, at + 16, size);
+        buffer.position(at + 24);
+    }
+
+    @Override
+    public void putRela(ByteBuffer buffer, long offset, long info, long addend) {
+        int at = buffer.position();
+        putXWord(buffer, at, offset);
+        putXWord(buffer, at + 8, info);
+        putXWord(buffer, at + 16, addend);
+        buffer.position(at + 24);
+    }
+
+    @Override
+    public void putSectionHeader(ByteBuffer buffer, int name, int type, long flags, long address, long offset,
+                                 long size, int link, int info, long alignment, long entrySize) {
+        int at = buffer.position();
+        putWord(buffer, at, name);
+        putWord(buffer, at + 4, type);
+        putXWord(buffer, at + 8, flags);
+        putXWord(buffer, at + 16, address);
+        putXWord(buffer, at + 24, offset);
+        putXWord(buffer, at + 32, size);
+        putWord(buffer, at + 40, link);
+        putWord(buffer, at + 44, info);
+        putXWord(buffer, at + 48, alignment);
+        putXWord(buffer, at + 56, entrySize);
+        buffer.position(at + 64);
+    }
+
+    @Override
+    public void putProgramHeader(ByteBuffer buffer, int type, int flags, long offset, long address,
+                                 long physicalAddress, long fileSize, long memorySize, long alignment) {
+        int at = buffer.position();
+        putWord(buffer, at, type);
+        putWord(buffer, at + 4, flags);
+        putXWord(buffer, at + 8, offset);
+        putXWord(buffer, at + 16, address);
+        putXWord(buffer, at + 24, physicalAddress);
+        putXWord(buffer, at + 32, fileSize);
+        putXWord(buffer, at + 40, memorySize);
+        putXWord(buffer, at + 48, alignment);
+        buffer.position(at + 56);
+    }
+
+    @Override
+    public void putCompressionHeader(ByteBuffer buffer, int type, long size, long alignment) {
+        int at = buffer.position();
+        putWord(buffer, at, type);
+        putWord(buffer, at + 4, 0);         // ch_reserved
+        putXWord(buffer, at + 8, size);
+        putXWord(buffer, at + 16, alignment);
+        buffer.position(at + 24);
+    }
+}
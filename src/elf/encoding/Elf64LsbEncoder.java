@@ -0,0 +1,27 @@
+package elf.encoding;
+
+import elf.header.ElfHeader.DataEncoding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * ELF64, little-endian.
+ */
+final class Elf64LsbEncoder extends Elf64Encoder {
+    @Override public DataEncoding getDataEncoding() { return DataEncoding.ELF_DATA2LSB; }
+
+    @Override public ByteOrder getByteOrder() { return ByteOrder.LITTLE_ENDIAN; }
+
+    @Override public void putHalf(ByteBuffer buffer, int index, int value) { LittleEndian.putShort(buffer, index, (short) value); }
+
+    @Override public void putWord(ByteBuffer buffer, int index, int value) { LittleEndian.putInt(buffer, index, value); }
+
+    @Override public void putXWord(ByteBuffer buffer, int index, long value) { LittleEndian.putLong(buffer, index, value); }
+
+    @Override public int getHalf(ByteBuffer buffer, int index) { return LittleEndian.getShort(buffer, index) & 0xFFFF; }
+
+    @Override public int getWord(ByteBuffer buffer, int index) { return LittleEndian.getInt(buffer, index); }
+
+    @Override public long getXWord(ByteBuffer buffer, int index) { return LittleEndian.getLong(buffer, index); }
+}
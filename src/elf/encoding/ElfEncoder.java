@@ -0,0 +1,214 @@
+package elf.encoding;
+
+import elf.header.ElfHeader;
+import elf.header.ElfHeader.DataEncoding;
+import elf.header.ElfHeader.FileClass;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes the structures of an elf file in its file class and data encoding: ELF32 or ELF64,
+ * little-endian or big-endian. There is one final implementation for each of the four
+ * combinations, chosen once for a file and used for everything written into it, so a call site
+ * only ever sees one of them and the JIT compiler can inline it. Fields are put through
+ * {@link java.lang.invoke.VarHandle} views of a fixed byte order, with no decision about the
+ * class or the encoding left for the time a field is written, and without touching the byte
+ * order of the buffer.
+ *
+ * Primitive puts and gets come in two forms: at an index of the buffer, and at its current
+ * position, which they move past the value. Structures are written at the current position, each
+ * with a single move of the position.
+ */
+public abstract class ElfEncoder {
+    public static final ElfEncoder ELF64_LSB = new Elf64LsbEncoder();
+    public static final ElfEncoder ELF64_MSB = new Elf64MsbEncoder();
+    public static final ElfEncoder ELF32_LSB = new Elf32LsbEncoder();
+    public static final ElfEncoder ELF32_MSB = new Elf32MsbEncoder();
+
+    ElfEncoder() {
+    }
+
+    public static ElfEncoder of(FileClass fileClass, DataEncoding dataEncoding) {
+        boolean msb;
+        switch (dataEncoding){
+            case ELF_DATA2LSB: msb = false; break;
+            case ELF_DATA2MSB: msb = true;  break;
+            default: throw new IllegalArgumentException("Unsupported data encoding: " + dataEncoding);
+        }
+        switch (fileClass){
+            case ELF_CLASS_64: return msb ? ELF64_MSB : ELF64_LSB;
+            case ELF_CLASS_32: return msb ? ELF32_MSB : ELF32_LSB;
+            default: throw new IllegalArgumentException("Unsupported file class: " + fileClass);
+        }
+    }
+
+    /**
+     * @return encoder for the file class and data encoding in the identification of the header
+     */
+    public static ElfEncoder of(ElfHeader header) {
+        return of(header.getFileClass(), header.getDataEncoding());
+    }
+
+    public abstract FileClass getFileClass();
+
+    public abstract DataEncoding getDataEncoding();
+
+    public abstract ByteOrder getByteOrder();
+
+    /**
+     * @return size of addresses, offsets and of the fields that have the size of an address
+     */
+    public abstract int getAddressSize();
+
+    public abstract int getHeaderSize();
+
+    public abstract int getSectionHeaderEntrySize();
+
+    public abstract int getProgramHeaderEntrySize();
+
+    public abstract int getSymbolSize();
+
+    public abstract int getRelaSize();
+
+    public int getDynamicEntrySize() {
+        return 2 * getAddressSize();
+    }
+
+    /** Size of Elf_Chdr, which starts the contents of a compressed section */
+    public abstract int getCompressionHeaderSize();
+
+    public abstract void putHalf(ByteBuffer buffer, int index, int value);
+
+    public abstract void putWord(ByteBuffer buffer, int index, int value);
+
+    /** Puts an 8 byte field, whatever the class of the file */
+    public abstract void putXWord(ByteBuffer buffer, int index, long value);
+
+    /** Puts an address, an offset, or a field with the size of an address in this class */
+    public abstract void putAddress(ByteBuffer buffer, int index, long value);
+
+    public abstract int getHalf(ByteBuffer buffer, int index);
+
+    public abstract int getWord(ByteBuffer buffer, int index);
+
+    public abstract long getXWord(ByteBuffer buffer, int index);
+
+    public abstract long getAddress(ByteBuffer buffer, int index);
+
+    public final void putHalf(ByteBuffer buffer, int value) {
+        int position = buffer.position();
+        putHalf(buffer, position, value);
+        buffer.position(position + 2);
+    }
+
+    public final void putWord(ByteBuffer buffer, int value) {
+        int position = buffer.position();
+        putWord(buffer, position, value);
+        buffer.position(position + 4);
+    }
+
+    public final void putXWord(ByteBuffer buffer, long value) {
+        int position = buffer.position();
+        putXWord(buffer, position, value);
+        buffer.position(position + 8);
+    }
+
+    public final void putAddress(ByteBuffer buffer, long value) {
+        int position = buffer.position();
+        putAddress(buffer, position, value);
+        buffer.position(position + getAddressSize());
+    }
+
+    public final int getHalf(ByteBuffer buffer) {
+        int position = buffer.position();
+        buffer.position(position + 2);
+        return getHalf(buffer, position);
+    }
+
+    public final int getWord(ByteBuffer buffer) {
+        int position = buffer.position();
+        buffer.position(position + 4);
+        return getWord(buffer, position);
+    }
+
+    public final long getXWord(ByteBuffer buffer) {
+        int position = buffer.position();
+        buffer.position(position + 8);
+        return getXWord(buffer, position);
+    }
+
+    public final long getAddress(ByteBuffer buffer) {
+        int position = buffer.position();
+        buffer.position(position + getAddressSize());
+        return getAddress(buffer, position);
+    }
+
+    public abstract void putSymbol(ByteBuffer buffer, int nameOffset, byte info, byte other, short sectionIndex,
+                                   long value, long size);
+
+    /**
+     * @param info symbol index and relocation type packed as in Elf64_Rela, which ELF32 repacks
+     *             into its narrower field
+     */
+    public abstract void putRela(ByteBuffer buffer, long offset, long info, long addend);
+
+    public abstract void putSectionHeader(ByteBuffer buffer, int name, int type, long flags, long address,
+                                          long offset, long size, int link, int info, long alignment, long entrySize);
+
+    public abstract void putProgramHeader(ByteBuffer buffer, int type, int flags, long offset, long address,
+                                          long physicalAddress, long fileSize, long memorySize, long alignment);
+
+    public abstract void putCompressionHeader(ByteBuffer buffer, int type, long size, long alignment);
+
+    /**
+     * Puts Elf_Dyn entry.
+     */
+    public void putDynamic(ByteBuffer buffer, long tag, long value) {
+        putAddress(buffer, tag);
+        putAddress(buffer, value);
+    }
+
+    /**
+     * Puts the part of elf header following the identification, which is written as it is.
+     */
+    public void putHeader(ByteBuffer buffer, ElfHeader header) {
+        putHalf(buffer, header.objectFileType.value());
+        putHalf(buffer, header.machineType.value());
+        putWord(buffer, header.objectFileVersion.value().intValue());
+        putAddress(buffer, header.entryPointAddress.value());
+        putAddress(buffer, header.programHeaderOffset.value());
+        putAddress(buffer, header.sectionHeaderOffset.value());
+        putWord(buffer, header.processorSpecificFlag.value().intValue());
+        putHalf(buffer, header.elfHeaderSize.value());
+        putHalf(buffer, header.programHeaderEntrySize.value());
+        putHalf(buffer, header.numOfProgramHeaderEntries.value());
+        putHalf(buffer, header.sectionHeaderEntrySize.value());
+        putHalf(buffer, header.numOfSectionHeaderEntries.value());
+        putHalf(buffer, header.sectionStringTableIndex.value());
+    }
+
+    /**
+     * Reads the part of elf header following the identification into the header.
+     */
+    public void getHeader(ByteBuffer buffer, ElfHeader header) {
+        header.objectFileType.setValue(getHalf(buffer));
+        header.machineType.setValue(getHalf(buffer));
+        header.objectFileVersion.setValue(getWord(buffer) & 0xFFFFFFFFL);
+        header.entryPointAddress.setValue(getAddress(buffer));
+        header.programHeaderOffset.setValue(getAddress(buffer));
+        header.sectionHeaderOffset.setValue(getAddress(buffer));
+        header.processorSpecificFlag.setValue(getWord(buffer) & 0xFFFFFFFFL);
+        header.elfHeaderSize.setValue(getHalf(buffer));
+        header.programHeaderEntrySize.setValue(getHalf(buffer));
+        header.numOfProgramHeaderEntries.setValue(getHalf(buffer));
+        header.sectionHeaderEntrySize.setValue(getHalf(buffer));
+        header.numOfSectionHeaderEntries.setValue(getHalf(buffer));
+        header.sectionStringTableIndex.setValue(getHalf(buffer));
+    }
+
+    @Override
+    public String toString() {
+        return getFileClass() + "/" + getDataEncoding();
+    }
+}
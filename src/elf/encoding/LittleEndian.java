@@ -0,0 +1,42 @@
+package elf.encoding;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Absolute puts and gets of little-endian values, whatever the order of the buffer.
+ */
+final class LittleEndian {
+    private static final VarHandle SHORT = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private LittleEndian() {
+    }
+
+    static void putShort(ByteBuffer buffer, int index, short value) {
+        SHORT.set(buffer, index, value);
+    }
+
+    static void putInt(ByteBuffer buffer, int index, int value) {
+        INT.set(buffer, index, value);
+    }
+
+    static void putLong(ByteBuffer buffer, int index, long value) {
+        LONG.set(buffer, index, value);
+    }
+
+    static short getShort(ByteBuffer buffer, int index) {
+        return (short) SHORT.get(buffer, index);
+    }
+
+    static int getInt(ByteBuffer buffer, int index) {
+        return (int) INT.get(buffer, index);
+    }
+
+    static long getLong(ByteBuffer buffer, int index) {
+        return (long) LONG.get(buffer, index);
+    }
+}
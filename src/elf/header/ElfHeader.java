@@ -1,14 +1,16 @@
 package elf.header;
 
 import elf.datatype.*;
+import elf.encoding.ElfEncoder;
 import elf.section.SectionHeaderEntry;
-import elf.util.Util.Const;
+import elf.util.DumpWriter;
 
-import java.math.BigInteger;
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Formatter;
 
 public class ElfHeader {
+    public static final int SIZE_IN_BYTES = 64;
+
     /**
      * Identify the file as an ELF object file, and provide information
      * about the data representation of the object file structures.
@@ -22,9 +24,9 @@ public class ElfHeader {
      * This member gives the virtual address to which the system first transfers control, thus
      * starting the process. If the file has no associated entry point, this member holds zero.
      */
-    public Elf64Address entryPointAddress;
-    public Elf64Offset programHeaderOffset;
-    public Elf64Offset sectionHeaderOffset;
+    public Elf64LongAddress entryPointAddress;
+    public Elf64LongOffset programHeaderOffset;
+    public Elf64LongOffset sectionHeaderOffset;
 
     /**
      * This member holds processor-specific flags associated with the file. Flag names take
@@ -48,46 +50,107 @@ public class ElfHeader {
         // TODO: After making of most simple elf file is done, start adding methods that will
         // TODO: allow us to customize process of making different elf file.
         elfIdentifier = new Elf64Byte[16];
+        for(int i = 0; i < 16; i++){
+            elfIdentifier[i] = new Elf64Byte((short)0);
+        }
+
+        objectFileType = new Elf64Half(0);
+        machineType = new Elf64Half(0);
+        objectFileVersion = new Elf64Word(0);
+
+        entryPointAddress = new Elf64LongAddress(0);
+        programHeaderOffset = new Elf64LongOffset(0);
+        sectionHeaderOffset = new Elf64LongOffset(0);
+
+        processorSpecificFlag = new Elf64Word(0);
+        elfHeaderSize = new Elf64Half(0);
+
+        programHeaderEntrySize = new Elf64Half(0);
+        numOfProgramHeaderEntries = new Elf64Half(0);
+
+        sectionHeaderEntrySize = new Elf64Half(0);
+        numOfSectionHeaderEntries = new Elf64Half(0);
+
+        sectionStringTableIndex = new Elf64Half(0);
+
+        reset();
+    }
 
-        elfIdentifier[0] = new Elf64Byte((short)127);  // \x7f
-        elfIdentifier[1] = new Elf64Byte((short)'E');
-        elfIdentifier[2] = new Elf64Byte((short)'L');
-        elfIdentifier[3] = new Elf64Byte((short)'F');
+    /**
+     * Sets every field back to its default, keeping the field objects.
+     */
+    public void reset() {
+        elfIdentifier[0].setValue((short)127);  // \x7f
+        elfIdentifier[1].setValue((short)'E');
+        elfIdentifier[2].setValue((short)'L');
+        elfIdentifier[3].setValue((short)'F');
 
-        elfIdentifier[4] = new Elf64Byte(FileClass.ELF_CLASS_64.value);
-        elfIdentifier[5] = new Elf64Byte(DataEncoding.ELF_DATA2LSB.value);
-        elfIdentifier[6] = new Elf64Byte(FileVersion.EV_CURRENT.value);
-        elfIdentifier[7] = new Elf64Byte(ApplicationBinaryInterface.ELF_OS_ABI_SYSV.value);
+        elfIdentifier[4].setValue(FileClass.ELF_CLASS_64.value);
+        elfIdentifier[5].setValue(DataEncoding.ELF_DATA2LSB.value);
+        elfIdentifier[6].setValue(FileVersion.EV_CURRENT.value);
+        elfIdentifier[7].setValue(ApplicationBinaryInterface.ELF_OS_ABI_SYSV.value);
 
         // ABI version
         // This field is used to distinguish among incompatible versions of an ABI
-        elfIdentifier[8] = new Elf64Byte((short)0);
+        elfIdentifier[8].setValue((short)0);
 
         // Start of padding bytes
         for(int i = 9; i < 16; i++){
-            elfIdentifier[i] = new Elf64Byte((short)0);
+            elfIdentifier[i].setValue((short)0);
         }
         // Size of elfIdentifier
         // elfIdentifier[15] = new Elf64Byte((short)16);
 
-        objectFileType = new Elf64Half(FileType.ET_DYN.value);
-        machineType = new Elf64Half(ProcessorArchitecture.EM_X86_64.value);
-        objectFileVersion = new Elf64Word(FileVersion.EV_CURRENT.value);
+        objectFileType.setValue(FileType.ET_DYN.value);
+        machineType.setValue(ProcessorArchitecture.EM_X86_64.value);
+        objectFileVersion.setValue((long) FileVersion.EV_CURRENT.value);
 
-        entryPointAddress = new Elf64Address(BigInteger.ZERO);  // TODO still to set
-        programHeaderOffset = new Elf64Offset(BigInteger.ZERO);
-        sectionHeaderOffset = new Elf64Offset(BigInteger.ZERO);
+        entryPointAddress.setValue(0);  // TODO still to set
+        programHeaderOffset.setValue(0);
+        sectionHeaderOffset.setValue(0);
 
-        processorSpecificFlag = new Elf64Word(0);
-        elfHeaderSize = new Elf64Half((short)0x0040);
+        processorSpecificFlag.setValue(0L);
+        elfHeaderSize.setValue(SIZE_IN_BYTES);
 
-        programHeaderEntrySize = new Elf64Half(0);        // TODO still to set
-        numOfProgramHeaderEntries = new Elf64Half(0);
+        programHeaderEntrySize.setValue(0);        // TODO still to set
+        numOfProgramHeaderEntries.setValue(0);
 
-        sectionHeaderEntrySize = new Elf64Half(SectionHeaderEntry.SIZE_IN_BYTES);
-        numOfSectionHeaderEntries = new Elf64Half(0);
+        sectionHeaderEntrySize.setValue((int) SectionHeaderEntry.SIZE_IN_BYTES);
+        numOfSectionHeaderEntries.setValue(0);
 
-        sectionStringTableIndex = new Elf64Half(0);
+        sectionStringTableIndex.setValue(0);
+    }
+
+    /**
+     * Sets file class and data encoding in the identification, together with the sizes of the
+     * header and of section header entries, which depend on the class.
+     */
+    public void setEncoding(FileClass fileClass, DataEncoding dataEncoding) {
+        ElfEncoder encoder = ElfEncoder.of(fileClass, dataEncoding);
+        elfIdentifier[4].setValue(fileClass.value);
+        elfIdentifier[5].setValue(dataEncoding.value);
+        elfHeaderSize.setValue(encoder.getHeaderSize());
+        sectionHeaderEntrySize.setValue(encoder.getSectionHeaderEntrySize());
+    }
+
+    public FileClass getFileClass() {
+        short value = elfIdentifier[4].value();
+        for(FileClass fileClass : FileClass.values()){
+            if(fileClass.value == value){
+                return fileClass;
+            }
+        }
+        return FileClass.ELF_CLASS_NONE;
+    }
+
+    public DataEncoding getDataEncoding() {
+        short value = elfIdentifier[5].value();
+        for(DataEncoding dataEncoding : DataEncoding.values()){
+            if(dataEncoding.value == value){
+                return dataEncoding;
+            }
+        }
+        return DataEncoding.ELF_DATA_NONE;
     }
 
     public enum FileClass{
@@ -97,6 +160,8 @@ public class ElfHeader {
 
         private final short value;
         FileClass(short value) { this.value = value; }
+
+        public short getValue() { return value; }
     }
 
     public enum DataEncoding{
@@ -106,6 +171,8 @@ public class ElfHeader {
 
         private final short value;
         DataEncoding(short value) { this.value = value; }
+
+        public short getValue() { return value; }
     }
 
     public enum ApplicationBinaryInterface{
@@ -128,6 +195,8 @@ public class ElfHeader {
 
         private final int value;
         FileType(int value) { this.value = value; }
+
+        public int getValue() { return value; }
     }
 
     public enum ProcessorArchitecture {
@@ -155,103 +224,119 @@ public class ElfHeader {
     }
 
     public byte[] toBytes(){
-        ByteBuffer buffer = ByteBuffer.allocate(64);
+        ByteBuffer buffer = ByteBuffer.allocate(elfHeaderSize.value());
+        writeTo(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the header at the current position of the buffer, in the file class and data
+     * encoding of its identification. Byte order of the buffer is left as it is.
+     */
+    public void writeTo(ByteBuffer buffer){
         for(int i = 0; i < 16; ++i){
-            buffer.put(elfIdentifier[i].toBytes());
+            buffer.put(elfIdentifier[i].value().byteValue());
         }
+        ElfEncoder.of(this).putHeader(buffer, this);
+    }
 
-        buffer.put(objectFileType.toBytes());
-        buffer.put(machineType.toBytes());
-        buffer.put(objectFileVersion.toBytes());
-        buffer.put(entryPointAddress.toBytes());
-        buffer.put(programHeaderOffset.toBytes());
-        buffer.put(sectionHeaderOffset.toBytes());
-
-        buffer.put(processorSpecificFlag.toBytes());
-        buffer.put(elfHeaderSize.toBytes());
-
-        buffer.put(programHeaderEntrySize.toBytes());
-        buffer.put(numOfProgramHeaderEntries.toBytes());
-        buffer.put(sectionHeaderEntrySize.toBytes());
-        buffer.put(numOfSectionHeaderEntries.toBytes());
-        buffer.put(sectionStringTableIndex.toBytes());
-
-        return buffer.array();
+    /**
+     * Reads a header in the layout {@link #writeTo(ByteBuffer)} writes, from the current position
+     * of the buffer, in the file class and data encoding its identification gives.
+     */
+    public static ElfHeader readFrom(ByteBuffer buffer){
+        ElfHeader header = new ElfHeader();
+        header.read(buffer);
+        return header;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        Formatter formatter = new Formatter(sb);
+    /**
+     * Overwrites every field with the header at the current position of the buffer, like
+     * {@link #readFrom(ByteBuffer)}.
+     */
+    public void read(ByteBuffer buffer){
+        for(int i = 0; i < 16; ++i){
+            elfIdentifier[i].setValue((short) (buffer.get() & 0xFF));
+        }
+        ElfEncoder.of(this).getHeader(buffer, this);
+    }
 
-        formatter.format("ELF header\n").format("============\n\n\n");
+    /**
+     * Writes a listing of the header fields, with their offsets and values.
+     */
+    public void dump(Appendable out) throws IOException {
+        DumpWriter writer = new DumpWriter(out);
+        writer.append("ELF header\n").append("============\n\n\n");
 
-        Elf64Address offset = new Elf64Address(BigInteger.valueOf(0));
+        long offset = 0;
 
-        formatter.format(Const.dbgFormat, "Name", "Offset", "NumValue", "Value");
+        writer.column("Name").column("Offset").column("NumValue").column("Value", DumpWriter.LAST_COLUMN_WIDTH).newLine();
 
-        formatter.format(Const.dbgFormat, "File identification", offset, "7f 45 4c 46", "ELF");
-        offset.incrementBy(ElfDataType.Size._4_BYTES.numOfBytes);
+        writer.field("File identification", offset, "7f 45 4c 46", "ELF");
+        offset += ElfDataType.Size._4_BYTES.numOfBytes;
 
-        formatter.format(Const.dbgFormat, "File class", offset, elfIdentifier[4], "");
-        offset.incrementBy(elfIdentifier[4].getSize().numOfBytes);
+        writer.field("File class", offset, elfIdentifier[4], "");
+        offset += elfIdentifier[4].getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Data encoding", offset, elfIdentifier[5], "");
-        offset.incrementBy(elfIdentifier[5].getSize().numOfBytes);
+        writer.field("Data encoding", offset, elfIdentifier[5], "");
+        offset += elfIdentifier[5].getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "File version", offset, elfIdentifier[6], "");
-        offset.incrementBy(elfIdentifier[6].getSize().numOfBytes);
+        writer.field("File version", offset, elfIdentifier[6], "");
+        offset += elfIdentifier[6].getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Application Binary Interface", offset, elfIdentifier[7], "");
-        offset.incrementBy(elfIdentifier[7].getSize().numOfBytes);
+        writer.field("Application Binary Interface", offset, elfIdentifier[7], "");
+        offset += elfIdentifier[7].getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "ABI version", offset, elfIdentifier[8], "");
-        offset.incrementBy(ElfDataType.Size._1_BYTE.numOfBytes * 7);
+        writer.field("ABI version", offset, elfIdentifier[8], "");
+        offset += ElfDataType.Size._1_BYTE.numOfBytes * 7;
 
-        formatter.format(Const.dbgFormat, "File identification size", offset, elfIdentifier[15], "");
-        offset.incrementBy(ElfDataType.Size._1_BYTE.numOfBytes);
+        writer.field("File identification size", offset, elfIdentifier[15], "");
+        offset += ElfDataType.Size._1_BYTE.numOfBytes;
 
-        formatter.format(Const.dbgFormat, "File type", offset, objectFileType, "");
-        offset.incrementBy(objectFileType.getSize().numOfBytes);
+        writer.field("File type", offset, objectFileType, "");
+        offset += objectFileType.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Machine type", offset, machineType, "");
-        offset.incrementBy(machineType.getSize().numOfBytes);
+        writer.field("Machine type", offset, machineType, "");
+        offset += machineType.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Object File version", offset, objectFileVersion, "");
-        offset.incrementBy(objectFileVersion.getSize().numOfBytes);
+        writer.field("Object File version", offset, objectFileVersion, "");
+        offset += objectFileVersion.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Entry point address", offset, entryPointAddress, "");
-        offset.incrementBy(entryPointAddress.getSize().numOfBytes);
+        writer.field("Entry point address", offset, entryPointAddress, "");
+        offset += entryPointAddress.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Program header offset", offset, programHeaderOffset, "");
-        offset.incrementBy(programHeaderOffset.getSize().numOfBytes);
+        writer.field("Program header offset", offset, programHeaderOffset, "");
+        offset += programHeaderOffset.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Section header offset", offset, sectionHeaderOffset, "");
-        offset.incrementBy(sectionHeaderOffset.getSize().numOfBytes);
+        writer.field("Section header offset", offset, sectionHeaderOffset, "");
+        offset += sectionHeaderOffset.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Process-specific flags", offset, processorSpecificFlag, "");
-        offset.incrementBy(processorSpecificFlag.getSize().numOfBytes);
+        writer.field("Process-specific flags", offset, processorSpecificFlag, "");
+        offset += processorSpecificFlag.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Elf header size", offset, elfHeaderSize, "");
-        offset.incrementBy(elfHeaderSize.getSize().numOfBytes);
+        writer.field("Elf header size", offset, elfHeaderSize, "");
+        offset += elfHeaderSize.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Program header entry size", offset, programHeaderEntrySize, "");
-        offset.incrementBy(programHeaderEntrySize.getSize().numOfBytes);
+        writer.field("Program header entry size", offset, programHeaderEntrySize, "");
+        offset += programHeaderEntrySize.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Num of program header entries", offset, numOfProgramHeaderEntries, "");
-        offset.incrementBy(numOfProgramHeaderEntries.getSize().numOfBytes);
+        writer.field("Num of program header entries", offset, numOfProgramHeaderEntries, "");
+        offset += numOfProgramHeaderEntries.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Section header entry size", offset, sectionHeaderEntrySize, "");
-        offset.incrementBy(sectionHeaderEntrySize.getSize().numOfBytes);
+        writer.field("Section header entry size", offset, sectionHeaderEntrySize, "");
+        offset += sectionHeaderEntrySize.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "Num of section header entries", offset, numOfSectionHeaderEntries, "");
-        offset.incrementBy(numOfSectionHeaderEntries.getSize().numOfBytes);
+        writer.field("Num of section header entries", offset, numOfSectionHeaderEntries, "");
+        offset += numOfSectionHeaderEntries.getSize().numOfBytes;
 
-        formatter.format(Const.dbgFormat, "String table index", offset, sectionStringTableIndex, "");
-        offset.incrementBy(sectionStringTableIndex.getSize().numOfBytes);
+        writer.field("String table index", offset, sectionStringTableIndex, "");
+        offset += sectionStringTableIndex.getSize().numOfBytes;
 
-        sb.append('\n');
+        writer.newLine();
+    }
 
-        return sb.toString();
+    @Override
+    public String toString() {
+        return DumpWriter.toString(this::dump);
     }
 }
@@ -0,0 +1,367 @@
+package elf.io;
+
+import elf.Elf;
+import elf.layout.ElfLayout;
+import elf.section.Section;
+import elf.section.SectionHeaderEntry;
+import elf.section.SectionHeaderEntry.SectionFlag;
+import elf.section.SectionHeaderTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Writes the same elf file over and over, rewriting only what changed since the previous write.
+ *
+ * Writer remembers, for every file it wrote, where every section went and hashes of its contents,
+ * one per chunk. Sections are told apart by their index, name and type, not by identity, so the
+ * file may be written from an elf built anew each time. On the next write, if the file is still
+ * there, sections match the ones written before in flags and alignment, and every one of them
+ * still fits the space it had, sections are kept at their old offsets; only chunks whose contents
+ * hash differently, and section header entries whose bytes differ, are written in place. Otherwise
+ * the file is laid out and written anew, as it is when a section could not keep its offset, having
+ * changed the permissions it is mapped with, or when another file was put in place of the one
+ * written, such as a hard link to a cached image. Tables are finalized once either way.
+ *
+ * Contents are still serialized to be hashed, but bytes written to the file are proportional to
+ * the change, rounded up to chunks. Files with sections that may be compressed are always written anew.
+ */
+public class IncrementalElfWriter {
+    private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(4096);
+    private static final int CHUNK_SIZE = 64 << 10;
+
+    private final MessageDigest digest;
+    private final HashMap<Path, FileState> states = new HashMap<>();
+
+    private ByteBuffer scratch;
+    private long bytesWritten;
+    private boolean lastWriteIncremental;
+
+    // State of the previous write of one file
+    private static final class FileState {
+        long fileSize;
+        Object fileKey;             // Identity of the file written, which a file put in its place does not share
+        int programHeaderCount;
+        long sectionHeaderOffset;
+        String[] names;
+        long[] types;
+        long[] flags;
+        long[] alignments;
+        long[] offsets;
+        int[] fileOrder;            // Indexes of the sections in the order of their offsets
+        long[] capacities;          // Bytes available to each section before the next part of the file
+        long[] sizes;
+        byte[][][] hashes;          // Hash of every chunk of every section
+        byte[] headerImage;         // Elf header and program header table
+        byte[] sectionHeaderImage;
+    }
+
+    public IncrementalElfWriter() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        this.scratch = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Finalizes the elf file and writes it, in place where possible.
+     */
+    public void write(Elf elf, Path path) throws IOException {
+        bytesWritten = 0;
+        Path key = path.toAbsolutePath().normalize();
+        // Dropped while writing, so a failed write leaves nothing to rely on
+        FileState previous = states.remove(key);
+
+        elf.finalizeTables();
+        lastWriteIncremental = previous != null && canWriteInPlace(elf, path, previous) && layoutInPlace(elf, previous);
+        if(lastWriteIncremental){
+            writeInPlace(elf, path, previous);
+            states.put(key, previous);
+        } else {
+            elf.layoutElfStructure(new ElfLayout(elf.getBaseAddress())::layout);
+            states.put(key, writeFull(elf, path));
+        }
+    }
+
+    /**
+     * Forgets the previous write of the file, so the next one writes it anew.
+     */
+    public void forget(Path path) {
+        states.remove(path.toAbsolutePath().normalize());
+    }
+
+    /**
+     * @return number of bytes the last write sent to the file
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return true if the last write kept the previous layout and rewrote only the changes
+     */
+    public boolean isLastWriteIncremental() {
+        return lastWriteIncremental;
+    }
+
+    private static boolean canWriteInPlace(Elf elf, Path path, FileState state) throws IOException {
+        if(!Files.exists(path)){
+            return false;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        List<Section> sections = elf.getSections();
+        int programHeaderCount = ElfLayout.programHeaderCount(elf, true);
+        if(attributes.size() != state.fileSize || !Objects.equals(attributes.fileKey(), state.fileKey)
+                || sections.size() != state.names.length
+                || programHeaderCount != state.programHeaderCount
+                || state.headerImage.length != elf.getHeader().elfHeaderSize.value()
+                        + (long) programHeaderCount * elf.getEncoder().getProgramHeaderEntrySize()){
+            return false;
+        }
+
+        for(int i = 0; i < sections.size(); i++){
+            Section section = sections.get(i);
+            SectionHeaderEntry entry = section.getHeaderEntry();
+            if(!section.getSectionName().equals(state.names[i]) || entry.getSectionType().value() != state.types[i]
+                    || flagsOf(entry) != state.flags[i] || alignmentOf(entry) != state.alignments[i]){
+                return false;
+            }
+            // Compressed size is known only once compressed, and compressed contents change as a whole
+            if(ElfLayout.mayCompress(section)){
+                return false;
+            }
+            if(!entry.isOfType(SectionHeaderEntry.SectionType.SHT_NOBITS)
+                    && (state.offsets[i] % state.alignments[i] != 0 || section.getSizeInBytes() > state.capacities[i])){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long flagsOf(SectionHeaderEntry entry) {
+        return entry.getSectionAttributes().value() & ~SectionFlag.SHF_COMPRESSED.getMask();
+    }
+
+    private static long alignmentOf(SectionHeaderEntry entry) {
+        return Math.max(entry.getAddressAlignment().value(), 1);
+    }
+
+    // Places sections at their old offsets. Returns false if some section would not stay there,
+    // as a section that got empty or stopped being empty may start a new page, or let the next one not.
+    private static boolean layoutInPlace(Elf elf, FileState state) {
+        List<Section> sections = elf.getSections();
+        elf.layoutElfStructure(laidOut -> {
+            ElfLayout layout = new ElfLayout(laidOut.getBaseAddress());
+            boolean relocatable = ElfLayout.isRelocatable(laidOut);
+            layout.layoutProgramHeaderTable(laidOut);
+            for(int i : state.fileOrder){
+                layout.placeSection(sections.get(i), state.offsets[i], relocatable);
+            }
+            layout.layoutSegments(laidOut);
+            layout.layoutSectionHeaderTable(laidOut, state.sectionHeaderOffset);
+            return state.fileSize;
+        });
+        for(int i = 0; i < sections.size(); i++){
+            if(sections.get(i).getHeaderEntry().getOffsetInFile().value() != state.offsets[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private FileState writeFull(Elf elf, Path path) throws IOException {
+        List<Section> sections = elf.getSections();
+        int count = sections.size();
+        FileState state = new FileState();
+        state.fileSize = elf.getFileSize();
+        state.programHeaderCount = elf.getProgramHeaderTable().getEntryCount();
+        state.sectionHeaderOffset = elf.getHeader().sectionHeaderOffset.value();
+        state.names = new String[count];
+        state.types = new long[count];
+        state.flags = new long[count];
+        state.alignments = new long[count];
+        state.offsets = new long[count];
+        state.fileOrder = new int[count];
+        state.capacities = new long[count];
+        state.sizes = new long[count];
+        state.hashes = new byte[count][][];
+
+        try (FileChannel channel = OutputFiles.create(path)) {
+            long end = 0;
+            for(int i = 0; i < count; i++){
+                Section section = sections.get(i);
+                SectionHeaderEntry entry = section.getHeaderEntry();
+                state.names[i] = section.getSectionName();
+                state.types[i] = entry.getSectionType().value();
+                state.flags[i] = flagsOf(entry);
+                state.alignments[i] = alignmentOf(entry);
+                state.offsets[i] = entry.getOffsetInFile().value();
+                state.sizes[i] = section.getStoredSizeInBytes();
+                if(!entry.isOfType(SectionHeaderEntry.SectionType.SHT_NOBITS)){
+                    ByteBuffer contents = serialize(section);
+                    state.hashes[i] = hashChunks(contents);
+                    end = Math.max(end, writeAt(channel, contents, state.offsets[i]));
+                }
+            }
+            computeFileOrder(state);
+            computeCapacities(state);
+
+            state.headerImage = serializeHeader(elf);
+            writeAt(channel, ByteBuffer.wrap(state.headerImage), 0);
+            state.sectionHeaderImage = serializeSectionHeaderTable(elf);
+            writeAt(channel, ByteBuffer.wrap(state.sectionHeaderImage), state.sectionHeaderOffset);
+
+            // Gaps are zero filled by the file system, unless the last part ends before the file does
+            padAt(channel, Math.max(end, state.sectionHeaderOffset + state.sectionHeaderImage.length),
+                    state.fileSize);
+        }
+        state.fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        return state;
+    }
+
+    // Sections are not placed in the order of the section header table when the file gets loaded.
+    private static void computeFileOrder(FileState state) {
+        Integer[] order = new Integer[state.offsets.length];
+        for(int i = 0; i < order.length; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(state.offsets[a], state.offsets[b]));
+        for(int i = 0; i < order.length; i++){
+            state.fileOrder[i] = order[i];
+        }
+    }
+
+    // Every section gets the room up to the next part laid out after it.
+    private static void computeCapacities(FileState state) {
+        long next = state.sectionHeaderOffset;
+        for(int k = state.fileOrder.length - 1; k >= 0; k--){
+            int i = state.fileOrder[k];
+            if(state.types[i] == SectionHeaderEntry.SectionType.SHT_NOBITS.getValue()){
+                state.capacities[i] = 0;
+                continue;
+            }
+            state.capacities[i] = next - state.offsets[i];
+            next = state.offsets[i];
+        }
+    }
+
+    private void writeInPlace(Elf elf, Path path, FileState state) throws IOException {
+        List<Section> sections = elf.getSections();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            for(int i = 0; i < sections.size(); i++){
+                Section section = sections.get(i);
+                long size = section.getStoredSizeInBytes();
+                if(!section.getHeaderEntry().isOfType(SectionHeaderEntry.SectionType.SHT_NOBITS)){
+                    state.hashes[i] = writeChangedChunks(channel, serialize(section), state.offsets[i], state.hashes[i]);
+                    // Bytes left over from a larger previous version
+                    padAt(channel, state.offsets[i] + size, state.offsets[i] + state.sizes[i]);
+                }
+                state.sizes[i] = size;
+            }
+
+            byte[] header = serializeHeader(elf);
+            writeChangedRows(channel, state.headerImage, header, 0, header.length);
+            state.headerImage = header;
+
+            byte[] sectionHeaders = serializeSectionHeaderTable(elf);
+            writeChangedRows(channel, state.sectionHeaderImage, sectionHeaders, state.sectionHeaderOffset,
+                    elf.getEncoder().getSectionHeaderEntrySize());
+            state.sectionHeaderImage = sectionHeaders;
+        }
+    }
+
+    // Hashes the contents chunk by chunk and writes chunks that differ from the previous version.
+    private byte[][] writeChangedChunks(FileChannel channel, ByteBuffer contents, long offset, byte[][] previous)
+            throws IOException {
+        byte[][] current = hashChunks(contents);
+        for(int chunk = 0; chunk < current.length; chunk++){
+            if(chunk >= previous.length || !Arrays.equals(current[chunk], previous[chunk])){
+                writeAt(channel, chunkOf(contents, chunk), offset + (long) chunk * CHUNK_SIZE);
+            }
+        }
+        return current;
+    }
+
+    // Compares the images row by row and writes only rows that differ.
+    private void writeChangedRows(FileChannel channel, byte[] previous, byte[] current, long offset, int rowSize)
+            throws IOException {
+        for(int from = 0; from < current.length; from += rowSize){
+            int to = Math.min(from + rowSize, current.length);
+            if(Arrays.mismatch(previous, from, to, current, from, to) != -1){
+                writeAt(channel, ByteBuffer.wrap(current, from, to - from), offset + from);
+            }
+        }
+    }
+
+    private ByteBuffer serialize(Section section) {
+        int size = Math.toIntExact(section.getStoredSizeInBytes());
+        if(scratch.capacity() < size){
+            scratch = ByteBuffer.allocate(size);
+        }
+        scratch.clear().limit(size);
+        section.writeStoredTo(scratch);
+        scratch.flip();
+        return scratch;
+    }
+
+    private static byte[] serializeHeader(Elf elf) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (elf.getHeader().elfHeaderSize.value()
+                + elf.getProgramHeaderTable().getSizeInBytes()));
+        elf.getHeader().writeTo(buffer);
+        elf.getProgramHeaderTable().writeTo(buffer);
+        return buffer.array();
+    }
+
+    private static byte[] serializeSectionHeaderTable(Elf elf) {
+        SectionHeaderTable table = elf.getSectionHeaderTable();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(table.getSizeInBytes()));
+        table.writeTo(buffer);
+        return buffer.array();
+    }
+
+    private byte[][] hashChunks(ByteBuffer contents) {
+        byte[][] chunkHashes = new byte[(contents.remaining() + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        for(int chunk = 0; chunk < chunkHashes.length; chunk++){
+            digest.update(chunkOf(contents, chunk));
+            chunkHashes[chunk] = digest.digest();
+        }
+        return chunkHashes;
+    }
+
+    private static ByteBuffer chunkOf(ByteBuffer contents, int chunk) {
+        ByteBuffer view = contents.duplicate();
+        int from = contents.position() + chunk * CHUNK_SIZE;
+        view.limit(Math.min(from + CHUNK_SIZE, contents.limit())).position(from);
+        return view;
+    }
+
+    private long writeAt(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while(buffer.hasRemaining()){
+            int written = channel.write(buffer, offset);
+            offset += written;
+            bytesWritten += written;
+        }
+        return offset;
+    }
+
+    private void padAt(FileChannel channel, long from, long to) throws IOException {
+        while(from < to){
+            ByteBuffer zeros = ZEROS.duplicate();
+            zeros.limit((int) Math.min(zeros.capacity(), to - from));
+            from = writeAt(channel, zeros, from);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package elf.io;
+
+import elf.Elf;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes finalized elf file through a memory mapping of the target file. File is sized up
+ * front from the layout, so every part of the image is written in place, without copying
+ * through stream buffers. Flushing the mapped pages is left to the operating system.
+ */
+public final class MappedElfWriter {
+
+    private MappedElfWriter() { }
+
+    public static void write(Elf elf, Path path) throws IOException {
+        long fileSize = elf.getFileSize();
+        if(fileSize > Integer.MAX_VALUE){
+            throw new IOException("File of " + fileSize + " bytes can not be mapped at once");
+        }
+
+        try (FileChannel channel = OutputFiles.create(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            elf.writeImage(buffer);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package elf.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Opens the files elf images are written to.
+ */
+public final class OutputFiles {
+
+    private OutputFiles() { }
+
+    /**
+     * Opens a new, empty file in place of the one at path, for writing. An existing file is
+     * unlinked rather than truncated, as it may be a hard link to an image kept by
+     * {@link elf.cache.ElfCache}, whose bytes must not change.
+     *
+     * @param options options to open the file with besides creating it and writing to it
+     */
+    public static FileChannel create(Path path, OpenOption... options) throws IOException {
+        Files.deleteIfExists(path);
+        OpenOption[] all = Arrays.copyOf(options, options.length + 2);
+        all[options.length] = StandardOpenOption.CREATE;
+        all[options.length + 1] = StandardOpenOption.WRITE;
+        return FileChannel.open(path, all);
+    }
+}
@@ -0,0 +1,194 @@
+package elf.io;
+
+import elf.Elf;
+import elf.header.ElfHeader;
+import elf.section.Section;
+import elf.section.SectionHeaderEntry;
+import elf.section.SectionHeaderTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Writes finalized elf file by serializing its parts in parallel. Once layout is known every part
+ * - elf header with program header table, each section, and slices of section header table - is
+ * independent, so each one is written into its own buffer by a fork join pool. Buffers, together
+ * with zero padding between them, then go to the file in one gathering write.
+ *
+ * Small parts share larger direct slabs, so that thousands of tiny sections do not each cost
+ * a direct allocation.
+ */
+public final class ParallelElfWriter {
+    private static final int SLAB_SIZE = 8 << 20;
+    private static final int SECTION_ENTRIES_PER_PART = 4096;
+    private static final int PARTS_PER_TASK = 16;
+    private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(64 << 10).asReadOnlyBuffer();
+
+    private final Elf elf;
+    private final List<Part> parts = new ArrayList<>();
+
+    private ByteBuffer slab = ByteBuffer.allocateDirect(0);
+
+    private ParallelElfWriter(Elf elf) {
+        this.elf = elf;
+    }
+
+    public static void write(Elf elf, Path path) throws IOException {
+        write(elf, path, ForkJoinPool.commonPool());
+    }
+
+    public static void write(Elf elf, Path path, ForkJoinPool pool) throws IOException {
+        if(elf.getFileSize() == 0){
+            throw new IllegalStateException("Elf structure has to be finalized before it is written");
+        }
+
+        ParallelElfWriter writer = new ParallelElfWriter(elf);
+        writer.collectParts();
+        pool.invoke(new SerializeTask(writer.parts, 0, writer.parts.size()));
+
+        try (FileChannel channel = OutputFiles.create(path)) {
+            writeGathering(channel, writer.gather());
+        }
+    }
+
+    // Parts are collected in file order. Sections are sorted into it, as layout does not place them
+    // in table order. Empty sections take no part: one may share its offset with the section
+    // placed after it.
+    private void collectParts() {
+        ElfHeader header = elf.getHeader();
+        long headerSize = header.elfHeaderSize.value();
+        add(0, headerSize, buffer -> header.writeTo(buffer));
+
+        long programHeaderSize = elf.getProgramHeaderTable().getSizeInBytes();
+        if(programHeaderSize > 0){
+            add(header.programHeaderOffset.value(), programHeaderSize,
+                    buffer -> elf.getProgramHeaderTable().writeTo(buffer));
+        }
+
+        List<Section> sections = new ArrayList<>(elf.getSections());
+        sections.sort(Comparator.comparingLong(section -> section.getHeaderEntry().getOffsetInFile().value()));
+        for(Section section : sections){
+            SectionHeaderEntry entry = section.getHeaderEntry();
+            if(entry.isOfType(SectionHeaderEntry.SectionType.SHT_NOBITS) || entry.getSectionSize().value() == 0){
+                continue;
+            }
+            add(entry.getOffsetInFile().value(), entry.getSectionSize().value(), section::writeStoredTo);
+        }
+
+        SectionHeaderTable table = elf.getSectionHeaderTable();
+        long tableOffset = header.sectionHeaderOffset.value();
+        int entrySize = table.getEncoder().getSectionHeaderEntrySize();
+        for(int from = 0; from < table.getEntryCount(); from += SECTION_ENTRIES_PER_PART){
+            int first = from;
+            int last = Math.min(from + SECTION_ENTRIES_PER_PART, table.getEntryCount());
+            add(tableOffset + (long) first * entrySize,
+                    (long) (last - first) * entrySize,
+                    buffer -> {
+                        for(int i = first; i < last; i++){
+                            table.getEntry(i).writeTo(buffer, table.getEncoder());
+                        }
+                    });
+        }
+    }
+
+    private void add(long offset, long size, Serializer serializer) {
+        if(!parts.isEmpty()){
+            Part previous = parts.get(parts.size() - 1);
+            if(offset < previous.offset + previous.buffer.capacity()){
+                throw new IllegalStateException("Parts of the file overlap or are out of order at offset " + offset);
+            }
+        }
+        parts.add(new Part(offset, allocate(Math.toIntExact(size)), serializer));
+    }
+
+    private ByteBuffer allocate(int size) {
+        if(size > SLAB_SIZE / 4){
+            return ByteBuffer.allocateDirect(size);
+        }
+        if(slab.remaining() < size){
+            slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+        }
+        slab.limit(slab.position() + size);
+        ByteBuffer buffer = slab.slice();
+        slab.position(slab.limit()).limit(slab.capacity());
+        return buffer;
+    }
+
+    private ByteBuffer[] gather() {
+        List<ByteBuffer> buffers = new ArrayList<>(parts.size() * 2);
+        long position = 0;
+        for(Part part : parts){
+            for(long gap = part.offset - position; gap > 0; ){
+                ByteBuffer zeros = ZEROS.duplicate();
+                zeros.limit((int) Math.min(gap, zeros.capacity()));
+                gap -= zeros.remaining();
+                buffers.add(zeros);
+            }
+            part.buffer.flip();
+            buffers.add(part.buffer);
+            position = part.offset + part.buffer.remaining();
+        }
+        return buffers.toArray(new ByteBuffer[0]);
+    }
+
+    private static void writeGathering(GatheringByteChannel channel, ByteBuffer[] buffers) throws IOException {
+        int first = 0;
+        while(first < buffers.length){
+            channel.write(buffers, first, buffers.length - first);
+            while(first < buffers.length && !buffers[first].hasRemaining()){
+                first++;
+            }
+        }
+    }
+
+    private interface Serializer {
+        void writeTo(ByteBuffer buffer);
+    }
+
+    private static final class Part {
+        final long offset;
+        final ByteBuffer buffer;
+        final Serializer serializer;
+
+        Part(long offset, ByteBuffer buffer, Serializer serializer) {
+            this.offset = offset;
+            this.buffer = buffer;
+            this.serializer = serializer;
+        }
+    }
+
+    private static final class SerializeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Part> parts;
+        private final int from;
+        private final int to;
+
+        SerializeTask(List<Part> parts, int from, int to) {
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= PARTS_PER_TASK){
+                for(int i = from; i < to; i++){
+                    Part part = parts.get(i);
+                    part.serializer.writeTo(part.buffer);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SerializeTask(parts, from, middle), new SerializeTask(parts, middle, to));
+        }
+    }
+}
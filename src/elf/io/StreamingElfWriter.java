@@ -0,0 +1,217 @@
+package elf.io;
+
+import elf.Elf;
+import elf.layout.ElfLayout;
+import elf.section.Section;
+import elf.section.SectionHeaderEntry.SectionFlag;
+import elf.section.SectionHeaderEntry.SectionType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes elf file while it is still being built. Contents of a section go to the channel as soon
+ * as the section is closed, and are released afterwards. Elf header and section header table are
+ * written by {@link #finish()}: the table at the end of the file, and the header back-patched at
+ * the start of it. Program header table is reserved right after the header, for the sections the
+ * file has when the writer is opened, so all of them have to be added by then. Allocated sections
+ * closed in another order than {@link ElfLayout#placementOrder(Elf)} may need more segments than
+ * were reserved, which fails the finish; sections left for the finish are closed in that order.
+ *
+ * A section holding addresses of other sections, such as a symbol or relocation table, that is
+ * closed before every allocated section is placed gets its place then, but is written by the
+ * finish, once those addresses are known. Such a section can not be compressed, as its compressed
+ * size is only known from its final contents.
+ *
+ * Memory needed for writing is bounded by the largest section, and the sections waiting for
+ * addresses, rather than the whole file. Finish sets the file size of the elf, as a layout does,
+ * so its symbols can be indexed by address afterwards, see {@link Elf#getSymbolAddressIndex()}.
+ */
+public class StreamingElfWriter implements Closeable {
+    private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(4096);
+
+    private final Elf elf;
+    private final SeekableByteChannel channel;
+    private final ElfLayout layout;
+    private final boolean relocatable;
+    private final Set<Section> written;
+    private final List<Section> waiting;     // Placed, written once every allocated section is placed
+
+    private ByteBuffer scratch;
+    private long position;          // End of the data written so far
+    private boolean finished;
+
+    public StreamingElfWriter(Elf elf, SeekableByteChannel channel) throws IOException {
+        this.elf = elf;
+        this.channel = channel;
+        this.layout = new ElfLayout(elf.getBaseAddress());
+        this.relocatable = ElfLayout.isRelocatable(elf);
+        this.written = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.waiting = new ArrayList<>();
+        this.scratch = ByteBuffer.allocate(0);
+
+        channel.truncate(0);
+        channel.position(0);
+        padTo(layout.layoutProgramHeaderTable(elf, false));
+    }
+
+    public static StreamingElfWriter open(Elf elf, Path path) throws IOException {
+        return new StreamingElfWriter(elf, OutputFiles.create(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * Writes contents of a section that will not change anymore and releases them. Section has to
+     * be added to the elf file already. Sections are placed in the order they are closed in; one
+     * referring to addresses of sections not placed yet is written by {@link #finish()}.
+     *
+     * @throws IllegalStateException if the section is written already, is the hash table and
+     *                               tables are not finalized yet, see {@link Elf#finalizeTables()},
+     *                               or refers to addresses not known yet and may be compressed
+     */
+    public void closeSection(Section section) throws IOException {
+        if(finished){
+            throw new IllegalStateException("Writer is already finished");
+        }
+        if(section == elf.getGnuHashTable() && !elf.getGnuHashTable().isBuilt()){
+            throw new IllegalStateException("Hash table can not be written before tables are finalized");
+        }
+        if(written.contains(section)){
+            throw new IllegalStateException("Section " + section.getSectionName() + " is already written");
+        }
+        boolean wait = section.refersToAddresses() && hasUnplacedAllocated(section);
+        if(wait && ElfLayout.mayCompress(section)){
+            throw new IllegalStateException("Section " + section.getSectionName()
+                    + " can not be compressed before every allocated section is written");
+        }
+        written.add(section);
+
+        long end = layout.placeSection(section, position, relocatable);
+        long start = section.getHeaderEntry().getOffsetInFile().value();
+        padTo(start);
+
+        if(wait){
+            waiting.add(section);
+        } else {
+            if(end > start){
+                writeContents(section, end - start);
+            }
+            section.releaseContents();
+        }
+        position = Math.max(position, end);
+    }
+
+    private boolean hasUnplacedAllocated(Section except) {
+        for(Section section : elf.getSections()){
+            if(section != except && !written.contains(section)
+                    && section.getHeaderEntry().hasSectionAttribute(SectionFlag.SHF_ALLOC)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes every section not closed yet, the section header table, and back-patches elf header.
+     */
+    public void finish() throws IOException {
+        if(finished){
+            return;
+        }
+        // Finalizing rewrites these tables, which is only possible while none of them is written.
+        if(!written.contains(elf.getStringTable()) && !written.contains(elf.getSymbolTable())
+                && !written.contains(elf.getDynamicSymbolTable())){
+            elf.finalizeTables();
+        }
+        for(Section section : ElfLayout.placementOrder(elf)){
+            if(!written.contains(section)){
+                closeSection(section);
+            }
+        }
+
+        for(Section section : waiting){
+            long size = section.getStoredSizeInBytes();
+            if(size > 0 && !section.getHeaderEntry().isOfType(SectionType.SHT_NOBITS)){
+                channel.position(section.getHeaderEntry().getOffsetInFile().value());
+                writeContents(section, size);
+            }
+            section.releaseContents();
+        }
+        waiting.clear();
+
+        long end = position;
+        elf.layoutElfStructure(file -> {
+            layout.layoutSegments(file);
+            return layout.layoutSectionHeaderTable(file, end);
+        });
+        padTo(elf.getHeader().sectionHeaderOffset.value());
+
+        int tableSize = elf.getSectionHeaderTable().getEntryCount() * elf.getHeader().sectionHeaderEntrySize.value();
+        ByteBuffer buffer = scratchOf(tableSize);
+        elf.getSectionHeaderTable().writeTo(buffer);
+        buffer.flip();
+        writeFully(buffer);
+
+        buffer = scratchOf((int) (elf.getHeader().elfHeaderSize.value() + elf.getProgramHeaderTable().getSizeInBytes()));
+        elf.getHeader().writeTo(buffer);
+        elf.getProgramHeaderTable().writeTo(buffer);
+        buffer.flip();
+        channel.position(0);
+        writeFully(buffer);
+
+        finished = true;
+    }
+
+    /**
+     * Finishes the file, if it was not finished already, and closes the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeContents(Section section, long size) throws IOException {
+        ByteBuffer buffer = scratchOf(Math.toIntExact(size));
+        section.writeStoredTo(buffer);
+        buffer.flip();
+        writeFully(buffer);
+    }
+
+    private ByteBuffer scratchOf(int size){
+        if(scratch.capacity() < size){
+            scratch = ByteBuffer.allocate(size);
+        }
+        scratch.clear().limit(size);
+        return scratch;
+    }
+
+    // Gap bytes are written explicitly, since channels leave them unspecified when skipped over.
+    private void padTo(long offset) throws IOException {
+        channel.position(position);
+        while(position < offset){
+            ByteBuffer zeros = ZEROS.duplicate();
+            zeros.limit((int) Math.min(zeros.capacity(), offset - position));
+            position += writeFully(zeros);
+        }
+    }
+
+    private int writeFully(ByteBuffer buffer) throws IOException {
+        int count = buffer.remaining();
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        return count;
+    }
+}
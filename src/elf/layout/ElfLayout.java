@@ -0,0 +1,508 @@
+package elf.layout;
+
+import elf.Elf;
+import elf.datatype.Elf64Half;
+import elf.datatype.ElfLongDataType;
+import elf.header.ElfHeader;
+import elf.programinfo.ProgramHeaderEntry;
+import elf.programinfo.ProgramHeaderEntry.SegmentFlag;
+import elf.programinfo.ProgramHeaderEntry.SegmentType;
+import elf.programinfo.ProgramHeaderTable;
+import elf.section.Section;
+import elf.section.SectionCompressor;
+import elf.section.SectionHeaderEntry;
+import elf.section.SectionHeaderEntry.SectionFlag;
+import elf.section.SectionHeaderEntry.SectionType;
+import elf.segment.Segment;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Assigns file offsets, virtual addresses and alignment to every part of the file.
+ *
+ * File is laid out in the order: elf header, program header table, sections in emission order,
+ * section header table. Sections are walked a few times at most; nothing is serialized, only
+ * sizes are asked for, so layout takes time proportional to the number of sections.
+ *
+ * Sections with a {@link Section#setCompressionThreshold compression threshold} are the exception:
+ * they are placed after all the others, once every address is final and so are their contents,
+ * and are serialized and compressed while placed. Their size then affects no address.
+ *
+ * In files that get loaded, sections allocated in memory are placed before the others, grouped by
+ * the permissions they need: read only, executable, read only after relocation, writable, each
+ * with zero filled sections last. Every group starts on a page of its own, so neighbouring groups
+ * never share a page, and groups of the same permissions share a PT_LOAD segment. A file then
+ * needs at most one mapping per set of permissions, the first of which also maps elf header and
+ * program header table. Order of the section header table is not affected.
+ */
+public class ElfLayout {
+    /** Alignment of program header table and section header table */
+    public static final long TABLE_ALIGNMENT = 8;
+
+    // Permissions of a mapped section, which decide the sections it can share pages with
+    private static final int MAPPING_WRITE = 1;
+    private static final int MAPPING_EXECUTE = 2;
+    private static final int MAPPING_RELRO = 4;
+    private static final int NOT_MAPPED = -1;
+
+    // Segment flags of every group of mapped sections, in the order groups are placed in
+    private static final int[] GROUP_FLAGS = {
+            SegmentFlag.PF_R.getMask(),
+            SegmentFlag.PF_R.getMask() | SegmentFlag.PF_X.getMask(),
+            SegmentFlag.PF_R.getMask() | SegmentFlag.PF_W.getMask(),
+            SegmentFlag.PF_R.getMask() | SegmentFlag.PF_W.getMask(),
+            SegmentFlag.PF_R.getMask() | SegmentFlag.PF_W.getMask() | SegmentFlag.PF_X.getMask()
+    };
+    // Every group takes two ranks, sections with contents and zero filled ones
+    private static final int RANK_NOT_MAPPED = 2 * GROUP_FLAGS.length;
+    private static final int RANK_COMPRESSED = RANK_NOT_MAPPED + 1;
+
+    private static final long STACK_ALIGNMENT = 16;
+
+    private final long baseAddress;
+    private int lastMapping = NOT_MAPPED;       // Permissions of the last mapped section placed
+    private long memoryEnd;                     // End address of the memory mapped so far
+
+    /**
+     * @param baseAddress virtual address at which the first byte of the file gets mapped.
+     *                    Relocatable files ignore it, as all of their addresses are zero.
+     */
+    public ElfLayout(long baseAddress) {
+        if((baseAddress & (Elf.PAGE_SIZE - 1)) != 0){
+            throw new IllegalArgumentException("Base address has to be page aligned: " + Long.toHexString(baseAddress));
+        }
+        this.baseAddress = baseAddress;
+    }
+
+    /**
+     * Lays out the file and fills in every offset, address, size, link and count
+     * inside of elf header and section header table.
+     *
+     * @return size of the whole file
+     */
+    public long layout(Elf elf) {
+        long offset = layoutProgramHeaderTable(elf);
+        boolean relocatable = isRelocatable(elf);
+
+        for(Section section : placementOrder(elf)){
+            offset = placeSection(section, offset, relocatable);
+        }
+        layoutSegments(elf);
+
+        return layoutSectionHeaderTable(elf, offset);
+    }
+
+    /**
+     * @return sections in the order they are placed in the file
+     */
+    public static List<Section> placementOrder(Elf elf) {
+        List<Section> sections = elf.getSections();
+        boolean relocatable = isRelocatable(elf);
+        int[] ranks = new int[sections.size()];
+        int present = 0;
+        for(int i = 0; i < ranks.length; i++){
+            ranks[i] = rankOf(sections.get(i), relocatable);
+            present |= 1 << ranks[i];
+        }
+
+        // A pass per rank present, which are few, keeps the order within a rank
+        ArrayList<Section> order = new ArrayList<>(sections.size());
+        for(int rank = 0; rank <= RANK_COMPRESSED; rank++){
+            if((present & (1 << rank)) == 0){
+                continue;
+            }
+            for(int i = 0; i < ranks.length; i++){
+                if(ranks[i] == rank){
+                    order.add(sections.get(i));
+                }
+            }
+        }
+        return order;
+    }
+
+    private static int rankOf(Section section, boolean relocatable) {
+        if(mayCompress(section)){
+            return RANK_COMPRESSED;
+        }
+        SectionHeaderEntry entry = section.getHeaderEntry();
+        if(relocatable || !entry.hasSectionAttribute(SectionFlag.SHF_ALLOC)){
+            return RANK_NOT_MAPPED;
+        }
+        return 2 * groupOf(mappingOf(section)) + (entry.isOfType(SectionType.SHT_NOBITS) ? 1 : 0);
+    }
+
+    private static int mappingOf(Section section) {
+        SectionHeaderEntry entry = section.getHeaderEntry();
+        int mapping = 0;
+        if(entry.hasSectionAttribute(SectionFlag.SHF_WRITE)){
+            mapping |= MAPPING_WRITE;
+        }
+        if(entry.hasSectionAttribute(SectionFlag.SHF_EXECINSTR)){
+            mapping |= MAPPING_EXECUTE;
+        }
+        if(isRelro(section)){
+            mapping |= MAPPING_RELRO;
+        }
+        return mapping;
+    }
+
+    // Index into GROUP_FLAGS
+    private static int groupOf(int mapping) {
+        switch (mapping){
+            case 0:                                 return 0;
+            case MAPPING_EXECUTE:                   return 1;
+            case MAPPING_WRITE | MAPPING_RELRO:     return 2;
+            case MAPPING_WRITE:                     return 3;
+            default:                                return 4;
+        }
+    }
+
+    /**
+     * @return true if section is written only while relocations are applied, so that it can be
+     * made read only afterwards: the dynamic section, the global offset table and .data.rel.ro
+     */
+    public static boolean isRelro(Section section) {
+        SectionHeaderEntry entry = section.getHeaderEntry();
+        if(!entry.hasSectionAttribute(SectionFlag.SHF_ALLOC) || !entry.hasSectionAttribute(SectionFlag.SHF_WRITE)
+                || entry.hasSectionAttribute(SectionFlag.SHF_EXECINSTR)){
+            return false;
+        }
+        String name = section.getSectionName();
+        return entry.isOfType(SectionType.SHT_DYNAMIC) || name.equals(".got") || name.startsWith(".data.rel.ro");
+    }
+
+    /**
+     * Number of program header entries the file needs: PT_PHDR, a PT_LOAD per group of sections
+     * sharing permissions, PT_DYNAMIC and PT_GNU_RELRO if it has sections for them, and
+     * PT_GNU_STACK. Relocatable files, and files with nothing to map, need none.
+     *
+     * @param sizesKnown if false, empty sections are counted as if they had contents, which they
+     *                   may get before they are placed
+     */
+    public static int programHeaderCount(Elf elf, boolean sizesKnown) {
+        if(isRelocatable(elf)){
+            return 0;
+        }
+        int present = 0;
+        boolean dynamic = false;
+        boolean relro = false;
+        for(Section section : elf.getSections()){
+            int rank = rankOf(section, false);
+            if(rank >= RANK_NOT_MAPPED || (sizesKnown && section.getSizeInBytes() == 0)){
+                continue;
+            }
+            present |= 1 << rank;
+            dynamic |= section.getHeaderEntry().isOfType(SectionType.SHT_DYNAMIC);
+            relro |= isRelro(section);
+        }
+        if(present == 0){
+            return 0;
+        }
+
+        // Zero filled memory ends a load segment for sections with contents, even of the same permissions
+        int loads = 0;
+        int flags = 0;
+        boolean zeroFilled = false;
+        for(int rank = 0; rank < RANK_NOT_MAPPED; rank++){
+            if((present & (1 << rank)) == 0){
+                continue;
+            }
+            boolean nobits = rank % 2 == 1;
+            if(GROUP_FLAGS[rank / 2] != flags || (zeroFilled && !nobits)){
+                loads++;
+                flags = GROUP_FLAGS[rank / 2];
+                zeroFilled = false;
+            }
+            zeroFilled |= nobits;
+        }
+        return 1 + loads + (dynamic ? 1 : 0) + (relro ? 1 : 0) + 1;
+    }
+
+    public static boolean isRelocatable(Elf elf) {
+        return elf.getHeader().objectFileType.value() == ElfHeader.FileType.ET_REL.getValue();
+    }
+
+    /**
+     * Reserves the program header table the file needs, see {@link #programHeaderCount(Elf, boolean)},
+     * and places it right after elf header.
+     *
+     * @return offset of the first byte after the table
+     */
+    public long layoutProgramHeaderTable(Elf elf) {
+        return layoutProgramHeaderTable(elf, true);
+    }
+
+    /**
+     * @param sizesKnown if false, table is reserved for sections that are empty as well, as they
+     *                   may still get contents
+     */
+    public long layoutProgramHeaderTable(Elf elf, boolean sizesKnown) {
+        ElfHeader header = elf.getHeader();
+        ProgramHeaderTable programHeaderTable = elf.getProgramHeaderTable();
+        programHeaderTable.reserve(programHeaderCount(elf, sizesKnown));
+
+        long offset = header.elfHeaderSize.value();
+
+        if(programHeaderTable.getEntryCount() > 0){
+            offset = ElfLongDataType.align(offset, TABLE_ALIGNMENT);
+            header.programHeaderOffset.setValue(offset);
+            header.programHeaderEntrySize = new Elf64Half(elf.getEncoder().getProgramHeaderEntrySize());
+            offset += programHeaderTable.getSizeInBytes();
+        }
+        else {
+            header.programHeaderOffset.setValue(0);
+            header.programHeaderEntrySize = new Elf64Half(0);
+        }
+        header.numOfProgramHeaderEntries = new Elf64Half(programHeaderTable.getEntryCount());
+
+        return offset;
+    }
+
+    /**
+     * Places section at the first offset not below given one that satisfies its alignment,
+     * and fills in its section header entry. A mapped section needing other permissions than the
+     * one placed before it starts a new page, as does a section with contents following zero filled memory.
+     *
+     * @return offset of the first byte after the section
+     */
+    public long placeSection(Section section, long offset, boolean relocatable) {
+        SectionHeaderEntry entry = section.getHeaderEntry();
+        if(section.isCompressed()){
+            entry.setAddressAlignment(section.getContentsAlignment());
+            entry.removeSectionAttribute(SectionFlag.SHF_COMPRESSED);
+            section.setCompressedContents(null, 0);
+        }
+        if(mayCompress(section) && section.getSizeInBytes() >= section.getCompressionThreshold()){
+            return placeCompressed(section, offset);
+        }
+
+        long alignment = entry.getAddressAlignment().value();
+        long size = section.getSizeInBytes();
+        boolean nobits = entry.isOfType(SectionType.SHT_NOBITS);
+        boolean mapped = !relocatable && entry.hasSectionAttribute(SectionFlag.SHF_ALLOC) && size > 0;
+
+        long start = ElfLongDataType.align(mapped ? startMapping(section, offset, nobits) : offset, alignment);
+
+        // Address and offset are congruent modulo alignment, as base address is page aligned.
+        // Zero filled sections take no room in the file, so they follow each other in memory only,
+        // and a mapped one stays where the file goes on, even when it starts a page in memory.
+        long address = 0;
+        if(!relocatable && entry.hasSectionAttribute(SectionFlag.SHF_ALLOC)){
+            address = baseAddress + start;
+            if(nobits){
+                address = ElfLongDataType.align(Math.max(address, memoryEnd), alignment);
+            }
+        }
+        if(mapped){
+            memoryEnd = Math.max(memoryEnd, address + size);
+        }
+        if(mapped && nobits){
+            start = ElfLongDataType.align(offset, alignment);
+        }
+        entry.setOffsetInFile(start);
+        entry.setSectionSize(size);
+        entry.setVirtualMemoryAddress(address);
+
+        linkSection(section);
+        section.onLayout();
+
+        return nobits ? start : start + size;
+    }
+
+    private long startMapping(Section section, long offset, boolean nobits) {
+        int mapping = mappingOf(section);
+        boolean afterZeroFilled = !nobits && baseAddress + offset < memoryEnd;
+        if(lastMapping != NOT_MAPPED && (mapping != lastMapping || afterZeroFilled)){
+            offset = ElfLongDataType.align(Math.max(offset, memoryEnd - baseAddress), Elf.PAGE_SIZE);
+        }
+        lastMapping = mapping;
+        return offset;
+    }
+
+    /**
+     * @return true if section has a compression threshold and can be compressed at all
+     */
+    public static boolean mayCompress(Section section) {
+        SectionHeaderEntry entry = section.getHeaderEntry();
+        return section.getCompressionThreshold() >= 0
+                && !entry.hasSectionAttribute(SectionFlag.SHF_ALLOC)
+                && !entry.isOfType(SectionType.SHT_NOBITS);
+    }
+
+    // Contents are final once the section is linked and told about its layout, so they are
+    // compressed then. Section stays uncompressed if compression would not make it smaller.
+    private long placeCompressed(Section section, long offset) {
+        SectionHeaderEntry entry = section.getHeaderEntry();
+        long alignment = entry.getAddressAlignment().value();
+        entry.setVirtualMemoryAddress(0);
+        linkSection(section);
+        section.onLayout();
+
+        ByteBuffer compressed = SectionCompressor.compress(section, alignment);
+        if(compressed != null){
+            section.setCompressedContents(compressed, alignment);
+            entry.addSectionAttribute(SectionFlag.SHF_COMPRESSED);
+            // Compression header is aligned as an address
+            alignment = section.getEncoder().getAddressSize();
+            entry.setAddressAlignment(alignment);
+        }
+        long size = section.getStoredSizeInBytes();
+
+        offset = ElfLongDataType.align(offset, alignment);
+        entry.setOffsetInFile(offset);
+        entry.setSectionSize(size);
+        return offset + size;
+    }
+
+    /**
+     * Builds segments of the file from the placed sections, and fills in the program header table
+     * reserved for them. Mapped sections are walked in the order of their addresses; those of the
+     * same permissions share a PT_LOAD, unless zero filled memory comes between them. First
+     * PT_LOAD starts at the beginning of the file, so it maps elf header and program header table
+     * as well. PT_GNU_RELRO reaches to the end of its last page, which no other section shares.
+     *
+     * @throws IllegalStateException if the file needs more program header entries than were reserved,
+     * which happens when sections are placed in another order than {@link #placementOrder(Elf)}
+     */
+    public void layoutSegments(Elf elf) {
+        List<Segment> segments = elf.getSegments();
+        ProgramHeaderTable table = elf.getProgramHeaderTable();
+        int reserved = table.getEntryCount();
+        table.reserve(reserved);
+        segments.clear();
+        if(reserved == 0){
+            return;
+        }
+
+        ArrayList<Section> mapped = new ArrayList<>();
+        for(Section section : elf.getSections()){
+            SectionHeaderEntry entry = section.getHeaderEntry();
+            if(entry.hasSectionAttribute(SectionFlag.SHF_ALLOC) && entry.getSectionSize().value() > 0){
+                mapped.add(section);
+            }
+        }
+        mapped.sort(Comparator.comparingLong(section -> section.getHeaderEntry().getVirtualMemoryAddress().value()));
+
+        long tableOffset = elf.getHeader().programHeaderOffset.value();
+        long tableSize = table.getSizeInBytes();
+        Segment programHeaders = new Segment(SegmentType.PT_PHDR, SegmentFlag.PF_R.getMask());
+        programHeaders.getHeaderEntry().setPlacement(tableOffset, baseAddress + tableOffset, tableSize, tableSize);
+        programHeaders.getHeaderEntry().setAlignment(elf.getEncoder().getAddressSize());
+        segments.add(programHeaders);
+
+        Segment load = null;
+        int loadFlags = 0;
+        long loadOffset = 0;
+        long loadAddress = baseAddress;
+        long fileEnd = tableOffset + tableSize;
+        long loadEnd = baseAddress + fileEnd;
+        Segment dynamic = null;
+        Segment relro = null;
+        boolean relroOpen = false;
+        for(Section section : mapped){
+            SectionHeaderEntry entry = section.getHeaderEntry();
+            int mapping = mappingOf(section);
+            int flags = GROUP_FLAGS[groupOf(mapping)];
+            boolean nobits = entry.isOfType(SectionType.SHT_NOBITS);
+            long offset = entry.getOffsetInFile().value();
+            long address = entry.getVirtualMemoryAddress().value();
+            long size = entry.getSectionSize().value();
+
+            boolean zeroFilled = loadEnd > loadAddress + (fileEnd - loadOffset);
+            if(load != null && (flags != loadFlags || (zeroFilled && !nobits))){
+                // Offset of a zero filled section is not congruent with its address, so it is taken from the address
+                load = null;
+                loadOffset = address - baseAddress;
+                loadAddress = address;
+                fileEnd = loadOffset;
+                loadEnd = address;
+            }
+            if(load == null){
+                load = new Segment(SegmentType.PT_LOAD, flags);
+                load.getHeaderEntry().setAlignment(Elf.PAGE_SIZE);
+                loadFlags = flags;
+                segments.add(load);
+            }
+            load.addSection(section);
+            if(!nobits){
+                fileEnd = offset + size;
+            }
+            loadEnd = Math.max(loadEnd, address + size);
+            load.getHeaderEntry().setPlacement(loadOffset, loadAddress, fileEnd - loadOffset, loadEnd - loadAddress);
+
+            if(dynamic == null && entry.isOfType(SectionType.SHT_DYNAMIC)){
+                dynamic = new Segment(SegmentType.PT_DYNAMIC, flags);
+                dynamic.addSection(section);
+                dynamic.getHeaderEntry().setPlacement(offset, address, size, size);
+                dynamic.getHeaderEntry().setAlignment(elf.getEncoder().getAddressSize());
+            }
+
+            // Only the first run of relro sections is protected
+            if((mapping & MAPPING_RELRO) == 0){
+                relroOpen = false;
+            }
+            else if(relro == null || relroOpen){
+                if(relro == null){
+                    relro = new Segment(SegmentType.PT_GNU_RELRO, SegmentFlag.PF_R.getMask());
+                    relro.getHeaderEntry().setPlacement(offset, address, 0, 0);
+                    relro.getHeaderEntry().setAlignment(1);
+                    relroOpen = true;
+                }
+                relro.addSection(section);
+                ProgramHeaderEntry relroEntry = relro.getHeaderEntry();
+                long relroOffset = relroEntry.getOffsetInFile().value();
+                long relroAddress = relroEntry.getVirtualAddress().value();
+                relroEntry.setPlacement(relroOffset, relroAddress, (nobits ? offset : offset + size) - relroOffset,
+                        ElfLongDataType.align(address + size, Elf.PAGE_SIZE) - relroAddress);
+            }
+        }
+        if(dynamic != null){
+            segments.add(dynamic);
+        }
+        if(relro != null){
+            segments.add(relro);
+        }
+        Segment stack = new Segment(SegmentType.PT_GNU_STACK, SegmentFlag.PF_R.getMask() | SegmentFlag.PF_W.getMask());
+        stack.getHeaderEntry().setAlignment(STACK_ALIGNMENT);
+        segments.add(stack);
+
+        if(segments.size() > reserved){
+            throw new IllegalStateException("File needs " + segments.size() + " program header entries, only "
+                    + reserved + " are reserved");
+        }
+        for(Segment segment : segments){
+            table.addEntry(segment.getHeaderEntry());
+        }
+    }
+
+    /**
+     * Resolves sh_link and sh_info of the section.
+     */
+    public static void linkSection(Section section) {
+        SectionHeaderEntry entry = section.getHeaderEntry();
+        Section link = section.getLink();
+        entry.setLinkToOtherSection(link == null ? 0L : link.getSectionIndex());
+        Section infoLink = section.getInfoLink();
+        entry.setSectionInfo(infoLink == null ? section.getHeaderInfo() : infoLink.getSectionIndex());
+    }
+
+    /**
+     * Places section header table at the first suitably aligned offset not below given one.
+     *
+     * @return size of the whole file
+     */
+    public long layoutSectionHeaderTable(Elf elf, long offset) {
+        ElfHeader header = elf.getHeader();
+
+        offset = ElfLongDataType.align(offset, TABLE_ALIGNMENT);
+        header.sectionHeaderOffset.setValue(offset);
+        header.sectionHeaderEntrySize = new Elf64Half(elf.getEncoder().getSectionHeaderEntrySize());
+        header.numOfSectionHeaderEntries = new Elf64Half(elf.getSectionHeaderTable().getEntryCount());
+        header.sectionStringTableIndex = new Elf64Half(elf.getStringTable().getSectionIndex());
+
+        return offset + elf.getSectionHeaderTable().getSizeInBytes();
+    }
+}
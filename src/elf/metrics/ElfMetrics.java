@@ -0,0 +1,152 @@
+package elf.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timing of the generation phases of one elf file: how many times each phase ran, how long it
+ * took in total, and the bytes and entries it handled. Phases also show up in a flight recording
+ * as {@link PhaseEvent}s, whether these metrics are enabled or not.
+ *
+ * Phases are instrumented as
+ * <pre>
+ *     PhaseEvent event = metrics.begin(Phase.LAYOUT);
+ *     ...
+ *     metrics.end(event, bytes, entries);
+ * </pre>
+ * With metrics disabled and no recording running, this is an empty event the JIT compiler can
+ * drop and one flag check. Metrics are disabled by default.
+ */
+public final class ElfMetrics {
+    private static final int PHASES = Phase.values().length;
+
+    private volatile boolean enabled;
+
+    private final AtomicLongArray counts = new AtomicLongArray(PHASES);
+    private final AtomicLongArray nanos = new AtomicLongArray(PHASES);
+    private final AtomicLongArray bytes = new AtomicLongArray(PHASES);
+    private final AtomicLongArray entries = new AtomicLongArray(PHASES);
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public PhaseEvent begin(Phase phase) {
+        PhaseEvent event = new PhaseEvent();
+        event.type = phase;
+        if(enabled){
+            event.startNanos = System.nanoTime();
+        }
+        event.begin();
+        return event;
+    }
+
+    public void end(PhaseEvent event, long bytes, long entries) {
+        end(event, null, bytes, entries);
+    }
+
+    /**
+     * @param target file written in the phase, or null
+     */
+    public void end(PhaseEvent event, String target, long bytes, long entries) {
+        event.end();
+        if(enabled && event.startNanos != 0){
+            int phase = event.type.ordinal();
+            counts.incrementAndGet(phase);
+            nanos.addAndGet(phase, System.nanoTime() - event.startNanos);
+            this.bytes.addAndGet(phase, bytes);
+            this.entries.addAndGet(phase, entries);
+        }
+        if(event.shouldCommit()){
+            event.phase = event.type.name();
+            event.target = target;
+            event.bytes = bytes;
+            event.entries = entries;
+            event.commit();
+        }
+    }
+
+    public void reset() {
+        for(int i = 0; i < PHASES; i++){
+            counts.set(i, 0);
+            nanos.set(i, 0);
+            bytes.set(i, 0);
+            entries.set(i, 0);
+        }
+    }
+
+    /**
+     * @param symbols          current number of symbols in the symbol table
+     * @param stringTableBytes current size of the string table
+     */
+    public Snapshot snapshot(long sections, long symbols, long stringTableBytes, long fileSize) {
+        long[][] values = new long[4][PHASES];
+        for(int i = 0; i < PHASES; i++){
+            values[0][i] = counts.get(i);
+            values[1][i] = nanos.get(i);
+            values[2][i] = bytes.get(i);
+            values[3][i] = entries.get(i);
+        }
+        return new Snapshot(values, sections, symbols, stringTableBytes, fileSize);
+    }
+
+    /**
+     * Metrics as they were at one moment, together with the size of the file at that moment.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long[] nanos;
+        private final long[] bytes;
+        private final long[] entries;
+        private final long sections;
+        private final long symbols;
+        private final long stringTableBytes;
+        private final long fileSize;
+
+        private Snapshot(long[][] values, long sections, long symbols, long stringTableBytes, long fileSize) {
+            this.counts = values[0];
+            this.nanos = values[1];
+            this.bytes = values[2];
+            this.entries = values[3];
+            this.sections = sections;
+            this.symbols = symbols;
+            this.stringTableBytes = stringTableBytes;
+            this.fileSize = fileSize;
+        }
+
+        public long getCount(Phase phase) { return counts[phase.ordinal()]; }
+
+        public long getNanos(Phase phase) { return nanos[phase.ordinal()]; }
+
+        public long getBytes(Phase phase) { return bytes[phase.ordinal()]; }
+
+        public long getEntries(Phase phase) { return entries[phase.ordinal()]; }
+
+        public long getSections() { return sections; }
+
+        public long getSymbols() { return symbols; }
+
+        public long getStringTableBytes() { return stringTableBytes; }
+
+        public long getFileSize() { return fileSize; }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "%-20s%10s%14s%16s%12s\n", "Phase", "Count", "Millis", "Bytes", "Entries"));
+            for(Phase phase : Phase.values()){
+                int i = phase.ordinal();
+                sb.append(String.format(Locale.ROOT, "%-20s%10d%14.3f%16d%12d\n",
+                        phase, counts[i], nanos[i] / 1e6, bytes[i], entries[i]));
+            }
+            sb.append("Sections: ").append(sections).append(", symbols: ").append(symbols)
+                    .append(", string table bytes: ").append(stringTableBytes)
+                    .append(", file size: ").append(fileSize).append('\n');
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package elf.metrics;
+
+/**
+ * Stages of generating an elf file that are timed.
+ */
+public enum Phase {
+    /** Adding a section, with its name and section header entry */
+    SECTION_CREATION,
+    /** Building hash tables and merging string tails, before layout */
+    TABLE_FINALIZATION,
+    /** Assigning offsets and addresses to every part of the file */
+    LAYOUT,
+    /** Writing the image of the file into a buffer */
+    SERIALIZATION,
+    /** Writing the file, serialization included; bytes are counted for writes that succeed only */
+    FILE_WRITE
+}
@@ -0,0 +1,37 @@
+package elf.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of one pass through a phase of generation; its duration is the time
+ * the phase took.
+ */
+@Name("elf.Phase")
+@Label("ELF Generation Phase")
+@Category("ELF")
+@StackTrace(false)
+public class PhaseEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Target")
+    @Description("File written, if any")
+    String target;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Entries")
+    @Description("Sections laid out, or symbols in the table, depending on the phase")
+    long entries;
+
+    // Start for the programmatic metrics, which do not depend on the recorder; not recorded
+    transient Phase type;
+    transient long startNanos;
+}
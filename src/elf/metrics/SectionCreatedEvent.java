@@ -0,0 +1,34 @@
+package elf.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a section added to an elf file.
+ */
+@Name("elf.SectionCreated")
+@Label("ELF Section Created")
+@Category("ELF")
+@StackTrace(false)
+public class SectionCreatedEvent extends jdk.jfr.Event {
+    @Label("Name")
+    String name;
+
+    @Label("Type")
+    long type;
+
+    @Label("Index")
+    int index;
+
+    public static void commit(String name, long type, int index) {
+        SectionCreatedEvent event = new SectionCreatedEvent();
+        if(event.shouldCommit()){
+            event.name = name;
+            event.type = type;
+            event.index = index;
+            event.commit();
+        }
+    }
+}
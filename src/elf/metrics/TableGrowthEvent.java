@@ -0,0 +1,46 @@
+package elf.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a string or symbol table reallocating its storage. Growth is geometric,
+ * so there are only a few of these per table, each copying everything the table holds.
+ */
+@Name("elf.TableGrowth")
+@Label("ELF Table Growth")
+@Category("ELF")
+@StackTrace(false)
+public class TableGrowthEvent extends jdk.jfr.Event {
+    @Label("Table")
+    String table;
+
+    @Label("Entries")
+    long entries;
+
+    @Label("Old Capacity")
+    @DataAmount
+    long oldCapacity;
+
+    @Label("New Capacity")
+    @DataAmount
+    long newCapacity;
+
+    /**
+     * @param oldCapacity storage in bytes before growing
+     * @param newCapacity storage in bytes after growing
+     */
+    public static void commit(String table, long entries, long oldCapacity, long newCapacity) {
+        TableGrowthEvent event = new TableGrowthEvent();
+        if(event.shouldCommit()){
+            event.table = table;
+            event.entries = entries;
+            event.oldCapacity = oldCapacity;
+            event.newCapacity = newCapacity;
+            event.commit();
+        }
+    }
+}
@@ -1,5 +1,177 @@
 package elf.programinfo;
 
+import elf.datatype.Elf64LongAddress;
+import elf.datatype.Elf64LongOffset;
+import elf.datatype.Elf64LongXWord;
+import elf.datatype.Elf64Word;
+import elf.encoding.ElfEncoder;
+import elf.util.DumpWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Describes a segment, or other information the system needs to prepare the program for
+ * execution: Elf_Phdr.
+ */
 public class ProgramHeaderEntry {
+    public static final int SIZE_IN_BYTES = 56;
+
+    private final Elf64Word segmentType;
+    private final Elf64Word segmentFlags;
+
+    /**
+     * Offset from the beginning of the file at which the first byte of the segment resides.
+     */
+    private final Elf64LongOffset offsetInFile;
+
+    /**
+     * Virtual address at which the first byte of the segment resides in memory.
+     */
+    private final Elf64LongAddress virtualAddress;
+
+    /**
+     * Reserved for the segment's physical address on systems where it is relevant. Set to the
+     * virtual address.
+     */
+    private final Elf64LongAddress physicalAddress;
+
+    /**
+     * Number of bytes in the file image of the segment; may be zero.
+     */
+    private final Elf64LongXWord fileSize;
+
+    /**
+     * Number of bytes in the memory image of the segment. Bytes past the file image are zero.
+     */
+    private final Elf64LongXWord memorySize;
+
+    /**
+     * Loadable segments have virtual address and offset congruent modulo this value, which is
+     * then a multiple of the page size. Values 0 and 1 mean no alignment is required.
+     */
+    private final Elf64LongXWord alignment;
+
+    public ProgramHeaderEntry(SegmentType type, int flags){
+        segmentType = new Elf64Word(type.value);
+        segmentFlags = new Elf64Word(flags);
+        offsetInFile = new Elf64LongOffset(0);
+        virtualAddress = new Elf64LongAddress(0);
+        physicalAddress = new Elf64LongAddress(0);
+        fileSize = new Elf64LongXWord(0);
+        memorySize = new Elf64LongXWord(0);
+        alignment = new Elf64LongXWord(0);
+    }
+
+    /**
+     * Sets where the segment is in the file and in memory. Physical address is set to the virtual one.
+     */
+    public void setPlacement(long offset, long address, long fileSize, long memorySize){
+        this.offsetInFile.setValue(offset);
+        this.virtualAddress.setValue(address);
+        this.physicalAddress.setValue(address);
+        this.fileSize.setValue(fileSize);
+        this.memorySize.setValue(memorySize);
+    }
+
+    public void setAlignment(long alignment) {
+        this.alignment.setValue(alignment);
+    }
+
+    public boolean isOfType(SegmentType type) {
+        return segmentType.value() == type.value;
+    }
+
+    public boolean hasFlag(SegmentFlag flag) {
+        return (segmentFlags.value() & flag.mask) != 0;
+    }
+
+    public Elf64Word getSegmentType() { return segmentType; }
+
+    public Elf64Word getSegmentFlags() { return segmentFlags; }
+
+    public Elf64LongOffset getOffsetInFile() { return offsetInFile; }
+
+    public Elf64LongAddress getVirtualAddress() { return virtualAddress; }
+
+    public Elf64LongAddress getPhysicalAddress() { return physicalAddress; }
+
+    public Elf64LongXWord getFileSize() { return fileSize; }
+
+    public Elf64LongXWord getMemorySize() { return memorySize; }
+
+    public Elf64LongXWord getAlignment() { return alignment; }
+
+    /**
+     * Writes the entry at the current position of the buffer, in the class and byte order of the encoder.
+     */
+    public void writeTo(ByteBuffer buffer, ElfEncoder encoder) {
+        encoder.putProgramHeader(buffer, segmentType.value().intValue(), segmentFlags.value().intValue(),
+                offsetInFile.value(), virtualAddress.value(), physicalAddress.value(), fileSize.value(),
+                memorySize.value(), alignment.value());
+    }
+
+    /**
+     * Writes a listing of the entry fields, with their values.
+     */
+    public void dump(Appendable out) throws IOException {
+        DumpWriter writer = new DumpWriter(out);
+        writer.field("Segment Type:", 0, segmentType, SegmentType.nameOf(segmentType.value()));
+        writer.field("Segment Flags:", 0, segmentFlags, SegmentFlag.describe(segmentFlags.value()));
+        writer.field("Offset In File:", 0, offsetInFile, "");
+        writer.field("Virtual Address:", 0, virtualAddress, "");
+        writer.field("Physical Address:", 0, physicalAddress, "");
+        writer.field("File Size:", 0, fileSize, "");
+        writer.field("Memory Size:", 0, memorySize, "");
+        writer.field("Alignment:", 0, alignment, "");
+    }
+
+    @Override
+    public String toString() {
+        return DumpWriter.toString(this::dump);
+    }
+
+    public enum SegmentType {
+        PT_NULL(0),                 /** Unused entry                                   */
+        PT_LOAD(1),                 /** Loadable segment                               */
+        PT_DYNAMIC(2),              /** Dynamic linking tables                         */
+        PT_INTERP(3),               /** Program interpreter path name                  */
+        PT_NOTE(4),                 /** Note sections                                  */
+        PT_SHLIB(5),                /** Reserved                                       */
+        PT_PHDR(6),                 /** Program header table                           */
+        PT_TLS(7),                  /** Thread local storage template                  */
+        PT_GNU_EH_FRAME(0x6474E550),/** Exception handling frame header                */
+        PT_GNU_STACK(0x6474E551),   /** Permissions of the stack                       */
+        PT_GNU_RELRO(0x6474E552);   /** Made read only once relocations are applied    */
+
+        private final long value;
+        SegmentType(long value) { this.value = value; }
+
+        public long getValue() { return value; }
+
+        public static String nameOf(long value) {
+            for(SegmentType type : values()){
+                if(type.value == value){
+                    return type.name();
+                }
+            }
+            return "";
+        }
+    }
+
+    public enum SegmentFlag {
+        PF_X(1),                    /** Execute */
+        PF_W(2),                    /** Write   */
+        PF_R(4);                    /** Read    */
+
+        private final int mask;
+        SegmentFlag(int mask) { this.mask = mask; }
+
+        public int getMask() { return mask; }
 
+        static String describe(long flags) {
+            return ((flags & PF_R.mask) != 0 ? "R" : "") + ((flags & PF_W.mask) != 0 ? "W" : "")
+                    + ((flags & PF_X.mask) != 0 ? "E" : "");
+        }
+    }
 }
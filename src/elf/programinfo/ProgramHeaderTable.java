@@ -1,5 +1,111 @@
 package elf.programinfo;
 
+import elf.encoding.ElfEncoder;
+import elf.util.DumpWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Program header table tells the system how to create the process image. It sits right after
+ * elf header, so its size has to be known before any section is placed: layout first reserves
+ * the number of entries the file needs, and fills them in once the segments are known. Reserved
+ * entries left unused are written as PT_NULL, which loaders skip.
+ */
 public class ProgramHeaderTable {
+    private static final ProgramHeaderEntry NULL_ENTRY = new ProgramHeaderEntry(ProgramHeaderEntry.SegmentType.PT_NULL, 0);
+
+    private final ArrayList<ProgramHeaderEntry> entries = new ArrayList<>();
+    private int reservedCount;
+    private ElfEncoder encoder = ElfEncoder.ELF64_LSB;
+
+    /**
+     * Drops the entries and makes room for given number of them.
+     */
+    public void reserve(int count){
+        entries.clear();
+        reservedCount = count;
+    }
+
+    /**
+     * Drops the entries and the room reserved for them.
+     */
+    public void reset(){
+        reserve(0);
+    }
+
+    /**
+     * Appends entry to the table.
+     *
+     * @throws IllegalStateException if every reserved entry is taken already
+     */
+    public void addEntry(ProgramHeaderEntry entry){
+        if(entries.size() == reservedCount){
+            throw new IllegalStateException("Program header table has room for " + reservedCount + " entries only");
+        }
+        entries.add(entry);
+    }
+
+    /**
+     * @return number of entries reserved, whether filled in or not
+     */
+    public int getEntryCount(){
+        return reservedCount;
+    }
+
+    public List<ProgramHeaderEntry> getEntries(){
+        return entries;
+    }
+
+    /**
+     * Encoder of the file, which entries are written with.
+     */
+    public ElfEncoder getEncoder(){
+        return encoder;
+    }
+
+    public void setEncoder(ElfEncoder encoder){
+        this.encoder = encoder;
+    }
+
+    public long getSizeInBytes(){
+        return (long) reservedCount * encoder.getProgramHeaderEntrySize();
+    }
+
+    /**
+     * Writes every reserved entry, in table order, at the current position of the buffer.
+     */
+    public void writeTo(ByteBuffer buffer){
+        for(ProgramHeaderEntry entry : entries){
+            entry.writeTo(buffer, encoder);
+        }
+        for(int i = entries.size(); i < reservedCount; i++){
+            NULL_ENTRY.writeTo(buffer, encoder);
+        }
+    }
+
+    /**
+     * Writes a listing of every entry of the table, nothing if it has none.
+     */
+    public void dump(Appendable out) throws IOException {
+        if(entries.isEmpty()){
+            return;
+        }
+        out.append("Program header table\n");
+        out.append("====================\n\n");
+        int order = 0;
+        for(ProgramHeaderEntry entry : entries){
+            out.append("Program header: ").append(Integer.toString(order++)).append('\n');
+            out.append("--------------------\n");
+            entry.dump(out);
+            out.append('\n');
+        }
+    }
 
+    @Override
+    public String toString() {
+        return DumpWriter.toString(this::dump);
+    }
 }
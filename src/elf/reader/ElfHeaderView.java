@@ -0,0 +1,42 @@
+package elf.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Elf header of a file being read. Every field is decoded from the file when asked for.
+ */
+public final class ElfHeaderView {
+    private final ByteBuffer buffer;
+
+    ElfHeaderView(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public int getIdentifierByte(int index) { return buffer.get(index) & 0xFF; }
+
+    public int getObjectFileType() { return buffer.getShort(16) & 0xFFFF; }
+
+    public int getMachineType() { return buffer.getShort(18) & 0xFFFF; }
+
+    public long getObjectFileVersion() { return buffer.getInt(20) & 0xFFFFFFFFL; }
+
+    public long getEntryPointAddress() { return buffer.getLong(24); }
+
+    public long getProgramHeaderOffset() { return buffer.getLong(32); }
+
+    public long getSectionHeaderOffset() { return buffer.getLong(40); }
+
+    public long getProcessorSpecificFlag() { return buffer.getInt(48) & 0xFFFFFFFFL; }
+
+    public int getElfHeaderSize() { return buffer.getShort(52) & 0xFFFF; }
+
+    public int getProgramHeaderEntrySize() { return buffer.getShort(54) & 0xFFFF; }
+
+    public int getProgramHeaderCount() { return buffer.getShort(56) & 0xFFFF; }
+
+    public int getSectionHeaderEntrySize() { return buffer.getShort(58) & 0xFFFF; }
+
+    public int getSectionHeaderCount() { return buffer.getShort(60) & 0xFFFF; }
+
+    public int getSectionStringTableIndex() { return buffer.getShort(62) & 0xFFFF; }
+}
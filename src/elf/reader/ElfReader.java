@@ -0,0 +1,220 @@
+package elf.reader;
+
+import elf.header.ElfHeader;
+import elf.section.SectionCompressor;
+import elf.section.SectionHeaderEntry.SectionFlag;
+import elf.section.SectionHeaderEntry.SectionType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads an existing ELF64 file through a read only memory mapping. Nothing is parsed up front:
+ * header, section headers, symbols and strings are flyweight views that decode their fields
+ * from the mapped bytes on every access, so opening a file costs the same regardless of its size.
+ *
+ * Views do not copy anything out of the mapping and stay valid for as long as the reader is
+ * reachable. Absolute reads are used throughout, so views may be read from several threads.
+ * Contents of compressed sections are the exception: they are inflated, into a buffer of their own,
+ * every time they are asked for.
+ */
+public final class ElfReader {
+    private static final int SHN_UNDEF = 0;
+    private static final int SHN_XINDEX = 0xFFFF;
+    private static final int CHDR_SIZE = 24;   // Elf64_Chdr
+
+    private final ByteBuffer buffer;
+    private final ElfHeaderView header;
+    private final int sectionCount;
+    private final int sectionStringTableIndex;
+    private final StringTableView sectionNames;
+
+    private ElfReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        checkIdentification();
+        buffer.order(buffer.get(5) == ElfHeader.DataEncoding.ELF_DATA2MSB.getValue()
+                ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+
+        header = new ElfHeaderView(buffer);
+        if(header.getSectionHeaderOffset() == 0){
+            sectionCount = 0;
+            sectionStringTableIndex = SHN_UNDEF;
+            sectionNames = null;
+            return;
+        }
+
+        // Counts that do not fit the header are kept in the first section header entry
+        SectionHeaderView first = sectionAt(0);
+        sectionCount = header.getSectionHeaderCount() != 0
+                ? header.getSectionHeaderCount() : Math.toIntExact(first.getSize());
+        sectionStringTableIndex = header.getSectionStringTableIndex() != SHN_XINDEX
+                ? header.getSectionStringTableIndex() : first.getLink();
+        sectionNames = sectionStringTableIndex == SHN_UNDEF ? null : getStringTable(getSection(sectionStringTableIndex));
+    }
+
+    public static ElfReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE){
+                throw new IOException("File of " + size + " bytes can not be mapped at once");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new ElfReader(buffer);
+        }
+    }
+
+    /**
+     * Reads the file image held by the buffer, starting from its index 0.
+     */
+    public static ElfReader of(ByteBuffer image) {
+        return new ElfReader(image.duplicate());
+    }
+
+    private void checkIdentification() {
+        if(buffer.capacity() < ElfHeader.SIZE_IN_BYTES
+                || buffer.get(0) != 0x7F || buffer.get(1) != 'E' || buffer.get(2) != 'L' || buffer.get(3) != 'F'){
+            throw new IllegalArgumentException("Not an elf file");
+        }
+        if(buffer.get(4) != ElfHeader.FileClass.ELF_CLASS_64.getValue()){
+            throw new IllegalArgumentException("Only ELF64 files are supported, file class is " + buffer.get(4));
+        }
+    }
+
+    public ElfHeaderView getHeader() {
+        return header;
+    }
+
+    public int getSectionCount() {
+        return sectionCount;
+    }
+
+    public int getSectionStringTableIndex() {
+        return sectionStringTableIndex;
+    }
+
+    /**
+     * @return view of the section header entry with given index
+     */
+    public SectionHeaderView getSection(int index) {
+        if(index < 0 || index >= sectionCount){
+            throw new IndexOutOfBoundsException("Section index " + index + " out of " + sectionCount);
+        }
+        return sectionAt(index);
+    }
+
+    private SectionHeaderView sectionAt(int index) {
+        SectionHeaderView view = new SectionHeaderView(this, buffer,
+                Math.toIntExact(header.getSectionHeaderOffset()), header.getSectionHeaderEntrySize());
+        return view.moveTo(index);
+    }
+
+    /**
+     * @return view of the first section with given name, or null
+     */
+    public SectionHeaderView findSection(String name) {
+        if(sectionNames == null){
+            return null;
+        }
+        SectionHeaderView view = sectionAt(0);
+        for(int i = 0; i < sectionCount; i++){
+            if(sectionNames.equals(view.moveTo(i).getNameOffset(), name)){
+                return view;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return string table holding section names, or null if file has none
+     */
+    public StringTableView getSectionNames() {
+        return sectionNames;
+    }
+
+    public StringTableView getStringTable(SectionHeaderView section) {
+        return new StringTableView(contentsOf(section));
+    }
+
+    /**
+     * @return symbols of a SHT_SYMTAB or SHT_DYNSYM section, with names from the section it links to
+     */
+    public SymbolTableView getSymbolTable(SectionHeaderView section) {
+        if(section.getType() != SectionType.SHT_SYMTAB.getValue() && section.getType() != SectionType.SHT_DYNSYM.getValue()){
+            throw new IllegalArgumentException("Section " + section.getIndex() + " is not a symbol table");
+        }
+        return new SymbolTableView(contentsOf(section), section.getEntrySize(),
+                getStringTable(getSection(section.getLink())));
+    }
+
+    /**
+     * @return the .symtab of the file, or null
+     */
+    public SymbolTableView getSymbolTable() {
+        SectionHeaderView view = sectionAt(0);
+        for(int i = 0; i < sectionCount; i++){
+            if(view.moveTo(i).getType() == SectionType.SHT_SYMTAB.getValue()){
+                return getSymbolTable(view);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return contents of the section as a slice of the mapping, inflated if the section is
+     *         compressed; empty for SHT_NOBITS sections
+     * @throws IllegalArgumentException if compressed contents are not zlib, or do not inflate to
+     *                                  the size their compression header gives
+     */
+    public ByteBuffer contentsOf(SectionHeaderView section) {
+        int size = section.getType() == SectionType.SHT_NOBITS.getValue() ? 0 : Math.toIntExact(section.getSize());
+        int offset = Math.toIntExact(section.getOffset());
+        ByteBuffer contents = buffer.duplicate();
+        contents.limit(offset + size).position(offset);
+        contents = contents.slice().order(buffer.order());
+        if(size == 0 || (section.getFlags() & SectionFlag.SHF_COMPRESSED.getMask()) == 0){
+            return contents;
+        }
+        return inflate(section, contents);
+    }
+
+    private static ByteBuffer inflate(SectionHeaderView section, ByteBuffer compressed) {
+        if(compressed.remaining() < CHDR_SIZE){
+            throw new IllegalArgumentException("Section " + section.getIndex() + " is too small for a compression header");
+        }
+        int type = compressed.getInt(0);
+        long size = compressed.getLong(8);
+        if(type != SectionCompressor.ELFCOMPRESS_ZLIB){
+            throw new IllegalArgumentException("Section " + section.getIndex() + " has unsupported compression type " + type);
+        }
+        if(size < 0 || size > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Section " + section.getIndex() + " inflates to " + size + " bytes");
+        }
+
+        ByteBuffer contents = ByteBuffer.allocate((int) size).order(compressed.order());
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.position(CHDR_SIZE));
+            while(contents.hasRemaining() && !inflater.finished()){
+                if(inflater.inflate(contents) == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+                    break;
+                }
+            }
+            if(contents.hasRemaining() || !inflater.finished()){
+                throw new IllegalArgumentException("Section " + section.getIndex()
+                        + " does not inflate to the " + size + " bytes of its compression header");
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalArgumentException("Section " + section.getIndex() + " holds a broken zlib stream", ex);
+        } finally {
+            inflater.end();
+        }
+        return contents.flip();
+    }
+}
@@ -0,0 +1,63 @@
+package elf.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight over one section header entry of a file being read. The same view can be moved over
+ * every entry of the table, so walking all sections allocates nothing.
+ */
+public final class SectionHeaderView {
+    private final ElfReader reader;
+    private final ByteBuffer buffer;
+    private final int tableOffset;
+    private final int entrySize;
+
+    private int index;
+    private int position;
+
+    SectionHeaderView(ElfReader reader, ByteBuffer buffer, int tableOffset, int entrySize) {
+        this.reader = reader;
+        this.buffer = buffer;
+        this.tableOffset = tableOffset;
+        this.entrySize = entrySize;
+    }
+
+    /**
+     * Points the view at the entry with given index.
+     */
+    public SectionHeaderView moveTo(int index) {
+        this.index = index;
+        this.position = tableOffset + index * entrySize;
+        return this;
+    }
+
+    public int getIndex() { return index; }
+
+    public int getNameOffset() { return buffer.getInt(position); }
+
+    /**
+     * @return name of the section, looked up in the section name string table
+     */
+    public String getName() {
+        StringTableView names = reader.getSectionNames();
+        return names == null ? null : names.getString(getNameOffset());
+    }
+
+    public long getType() { return buffer.getInt(position + 4) & 0xFFFFFFFFL; }
+
+    public long getFlags() { return buffer.getLong(position + 8); }
+
+    public long getAddress() { return buffer.getLong(position + 16); }
+
+    public long getOffset() { return buffer.getLong(position + 24); }
+
+    public long getSize() { return buffer.getLong(position + 32); }
+
+    public int getLink() { return buffer.getInt(position + 40); }
+
+    public int getInfo() { return buffer.getInt(position + 44); }
+
+    public long getAddressAlignment() { return buffer.getLong(position + 48); }
+
+    public long getEntrySize() { return buffer.getLong(position + 56); }
+}
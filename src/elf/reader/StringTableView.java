@@ -0,0 +1,54 @@
+package elf.reader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * String table of a file being read. Strings are decoded from the file only when looked up.
+ */
+public final class StringTableView {
+    private final ByteBuffer contents;
+
+    StringTableView(ByteBuffer contents) {
+        this.contents = contents;
+    }
+
+    public int getSizeInBytes() {
+        return contents.capacity();
+    }
+
+    /**
+     * @return length in bytes of the null terminated string starting at the offset
+     */
+    public int lengthAt(int offset) {
+        int end = offset;
+        while(end < contents.capacity() && contents.get(end) != 0){
+            end++;
+        }
+        return end - offset;
+    }
+
+    public String getString(int offset) {
+        byte[] bytes = new byte[lengthAt(offset)];
+        for(int i = 0; i < bytes.length; i++){
+            bytes[i] = contents.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares the string at the offset with given one, without decoding it.
+     */
+    public boolean equals(int offset, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if(offset + bytes.length >= contents.capacity()){
+            return false;
+        }
+        for(int i = 0; i < bytes.length; i++){
+            if(contents.get(offset + i) != bytes[i]){
+                return false;
+            }
+        }
+        return contents.get(offset + bytes.length) == 0;
+    }
+}
@@ -0,0 +1,49 @@
+package elf.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Symbol table of a file being read, together with the string table holding its names.
+ */
+public final class SymbolTableView {
+    private final ByteBuffer contents;
+    private final int entrySize;
+    private final StringTableView names;
+
+    SymbolTableView(ByteBuffer contents, long entrySize, StringTableView names) {
+        this.contents = contents;
+        this.entrySize = entrySize == 0 ? SymbolView.SIZE_IN_BYTES : Math.toIntExact(entrySize);
+        this.names = names;
+    }
+
+    public int getSymbolCount() {
+        return contents.capacity() / entrySize;
+    }
+
+    public StringTableView getNames() {
+        return names;
+    }
+
+    /**
+     * @return view of the symbol with given index
+     */
+    public SymbolView getSymbol(int index) {
+        if(index < 0 || index >= getSymbolCount()){
+            throw new IndexOutOfBoundsException("Symbol index " + index + " out of " + getSymbolCount());
+        }
+        return new SymbolView(contents, entrySize, names).moveTo(index);
+    }
+
+    /**
+     * @return view of the first symbol with given name, or null
+     */
+    public SymbolView findSymbol(String name) {
+        SymbolView view = new SymbolView(contents, entrySize, names);
+        for(int i = 0; i < getSymbolCount(); i++){
+            if(names.equals(view.moveTo(i).getNameOffset(), name)){
+                return view;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,53 @@
+package elf.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight over one Elf64_Sym of a file being read. The same view can be moved over every
+ * symbol of the table, so walking all symbols allocates nothing.
+ */
+public final class SymbolView {
+    static final int SIZE_IN_BYTES = 24;
+
+    private final ByteBuffer contents;
+    private final int entrySize;
+    private final StringTableView names;
+
+    private int index;
+    private int position;
+
+    SymbolView(ByteBuffer contents, int entrySize, StringTableView names) {
+        this.contents = contents;
+        this.entrySize = entrySize;
+        this.names = names;
+    }
+
+    /**
+     * Points the view at the symbol with given index.
+     */
+    public SymbolView moveTo(int index) {
+        this.index = index;
+        this.position = index * entrySize;
+        return this;
+    }
+
+    public int getIndex() { return index; }
+
+    public int getNameOffset() { return contents.getInt(position); }
+
+    public String getName() { return names.getString(getNameOffset()); }
+
+    public int getInfo() { return contents.get(position + 4) & 0xFF; }
+
+    public int getBinding() { return getInfo() >>> 4; }
+
+    public int getType() { return getInfo() & 0xF; }
+
+    public int getOther() { return contents.get(position + 5) & 0xFF; }
+
+    public int getSectionIndex() { return contents.getShort(position + 6) & 0xFFFF; }
+
+    public long getValue() { return contents.getLong(position + 8); }
+
+    public long getSize() { return contents.getLong(position + 16); }
+}
@@ -1,5 +1,9 @@
 package elf.section;
 
+import elf.encoding.ElfEncoder;
+
+import java.nio.ByteBuffer;
+
 /**
  * Each section occupies one contiguous (possibly empty) sequence of bytes within a file.
  * Sections in a file may not overlap. No byte in a file resides in more than one section.
@@ -9,8 +13,6 @@ package elf.section;
 public abstract class Section {
     // TODO:
     // 1. Make API:
-    //      * Fill compiled code
-    //      * Make relocation data and insert inside rel section.
     //      * Find way to update multiple dependent sections - probably from most top level.
     // 2. Every Section has it's entry inside section header table. (need to link this properly, and to fast change
     //    corresponding entries
@@ -18,6 +20,16 @@ public abstract class Section {
 
     // For debug purpose
     private String name;
+    private SectionHeaderEntry headerEntry;
+    private int sectionIndex;
+
+    private Section link;           // Section referenced by sh_link
+    private Section infoLink;       // Section referenced by sh_info, for sections where info is an index
+    private ElfEncoder encoder = ElfEncoder.ELF64_LSB;
+
+    private long compressionThreshold = -1;
+    private ByteBuffer compressedContents;  // Compression header and compressed contents, while compressed
+    private long contentsAlignment;         // Alignment of uncompressed contents, while compressed
 
     public Section(String name) {
         this.name = name;
@@ -26,4 +38,163 @@ public abstract class Section {
     public String getSectionName() {
         return name;
     }
+
+    public SectionHeaderEntry getHeaderEntry() {
+        return headerEntry;
+    }
+
+    public void setHeaderEntry(SectionHeaderEntry headerEntry) {
+        this.headerEntry = headerEntry;
+    }
+
+    /**
+     * @return index of this section inside section header table
+     */
+    public int getSectionIndex() {
+        return sectionIndex;
+    }
+
+    public void setSectionIndex(int sectionIndex) {
+        this.sectionIndex = sectionIndex;
+    }
+
+    public Section getLink() {
+        return link;
+    }
+
+    public void setLink(Section link) {
+        this.link = link;
+    }
+
+    public Section getInfoLink() {
+        return infoLink;
+    }
+
+    public void setInfoLink(Section infoLink) {
+        this.infoLink = infoLink;
+    }
+
+    /**
+     * Encoder of the file the section is in, which its contents are written with.
+     */
+    public ElfEncoder getEncoder() {
+        return encoder;
+    }
+
+    public void setEncoder(ElfEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    /**
+     * Value of sh_info for sections that do not reference another section through it.
+     */
+    public long getHeaderInfo() {
+        return headerEntry.getSectionInfo().value();
+    }
+
+    /**
+     * Called by layout once the section got its offset and address. Does nothing by default.
+     */
+    public void onLayout() {
+    }
+
+    /**
+     * @return true if contents hold addresses of other sections, so they are final only once
+     * every allocated section is laid out. False by default.
+     */
+    public boolean refersToAddresses() {
+        return false;
+    }
+
+    /**
+     * Alignment the section asks for when it is added to the file.
+     */
+    public long getDefaultAlignment() {
+        return 1;
+    }
+
+    /**
+     * @return number of bytes section contents occupy in the file
+     */
+    public abstract long getSizeInBytes();
+
+    /**
+     * Writes section contents at the current position of the buffer.
+     */
+    public abstract void writeTo(ByteBuffer buffer);
+
+    /**
+     * Sections of at least threshold bytes get compressed by layout, see {@link SectionCompressor}.
+     * Only sections not allocated in memory can be compressed; others ignore the threshold.
+     *
+     * @param threshold size in bytes from which contents get compressed, or -1 to never compress them
+     */
+    public void setCompressionThreshold(long threshold) {
+        if(threshold < -1){
+            throw new IllegalArgumentException("Compression threshold can not be negative: " + threshold);
+        }
+        this.compressionThreshold = threshold;
+    }
+
+    public long getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * @return true if the section is stored compressed, as decided by the last layout
+     */
+    public boolean isCompressed() {
+        return compressedContents != null;
+    }
+
+    /**
+     * Alignment of section contents. Compressed section has the alignment of its compression
+     * header in its entry, and the alignment of its contents in that header.
+     */
+    public long getContentsAlignment() {
+        return compressedContents != null ? contentsAlignment : headerEntry.getAddressAlignment().value();
+    }
+
+    /**
+     * Called by layout with the compression header and compressed contents, or with null when
+     * the section is stored as it is.
+     */
+    public void setCompressedContents(ByteBuffer compressedContents, long contentsAlignment) {
+        this.compressedContents = compressedContents;
+        this.contentsAlignment = contentsAlignment;
+    }
+
+    /**
+     * Stops compressing the section and drops its compressed contents.
+     */
+    public void resetCompression() {
+        compressionThreshold = -1;
+        compressedContents = null;
+    }
+
+    /**
+     * @return number of bytes the section is stored in: compressed size if it is compressed
+     */
+    public long getStoredSizeInBytes() {
+        return compressedContents != null ? compressedContents.remaining() : getSizeInBytes();
+    }
+
+    /**
+     * Writes section the way it is stored in the file: compressed if it is compressed.
+     */
+    public void writeStoredTo(ByteBuffer buffer) {
+        if(compressedContents != null){
+            buffer.put(compressedContents.duplicate());
+        }
+        else {
+            writeTo(buffer);
+        }
+    }
+
+    /**
+     * Called once section contents got written out and are not needed anymore, so sections
+     * holding large contents can let them go. Does nothing by default.
+     */
+    public void releaseContents() {
+    }
 }
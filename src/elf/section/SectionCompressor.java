@@ -0,0 +1,127 @@
+package elf.section;
+
+import elf.encoding.ElfEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses section contents to the form SHF_COMPRESSED sections are stored in: Elf_Chdr, in
+ * the class and byte order of the file, followed by a zlib stream of the contents.
+ *
+ * Contents are cut into chunks which are deflated in parallel, each by a deflater of its own.
+ * Every chunk but the last ends with a sync flush, which finishes its output on a byte boundary
+ * without ending the stream, so the chunk outputs put one after another form a single deflate
+ * stream. Checksum of the whole stream is combined from the checksums of the chunks. A chunk
+ * can not refer back into the previous one, which costs a little of the ratio at every boundary.
+ */
+public final class SectionCompressor {
+    public static final int ELFCOMPRESS_ZLIB = 1;
+
+    public static final int CHUNK_SIZE = 1 << 20;
+
+    private static final int ADLER_BASE = 65521;
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9C};
+
+    private SectionCompressor() {
+    }
+
+    /**
+     * @param alignment alignment of uncompressed contents, recorded in the compression header
+     * @return compression header followed by compressed contents, or null if they would not be
+     * smaller than the contents themselves
+     */
+    public static ByteBuffer compress(Section section, long alignment) {
+        int size = Math.toIntExact(section.getSizeInBytes());
+        ByteBuffer contents = ByteBuffer.allocate(size);
+        section.writeTo(contents);
+        byte[] data = contents.array();
+
+        int chunks = Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        Chunk[] compressed = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> deflate(data, chunk * CHUNK_SIZE,
+                        Math.min(CHUNK_SIZE, size - chunk * CHUNK_SIZE), chunk == chunks - 1))
+                .toArray(Chunk[]::new);
+
+        ElfEncoder encoder = section.getEncoder();
+        long compressedSize = encoder.getCompressionHeaderSize() + ZLIB_HEADER.length + Integer.BYTES;
+        long checksum = 1;
+        for(Chunk chunk : compressed){
+            compressedSize += chunk.length;
+            checksum = combineAdler32(checksum, chunk.checksum, chunk.inputLength);
+        }
+        if(compressedSize >= size){
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) compressedSize);
+        encoder.putCompressionHeader(buffer, ELFCOMPRESS_ZLIB, size, alignment);
+        buffer.put(ZLIB_HEADER);
+        for(Chunk chunk : compressed){
+            buffer.put(chunk.output, 0, chunk.length);
+        }
+        buffer.putInt((int) checksum);     // zlib trailer is big-endian in every file
+        return buffer.flip();
+    }
+
+    private static Chunk deflate(byte[] data, int from, int length, boolean last) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data, from, length);
+            if(last){
+                deflater.finish();
+            }
+            byte[] output = new byte[length + (length >> 4) + 64];
+            int position = 0;
+            while(true){
+                int space = output.length - position;
+                position += deflater.deflate(output, position, space, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                boolean done = last ? deflater.finished() : position < output.length;
+                if(done){
+                    break;
+                }
+                if(position == output.length){
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+            }
+            Adler32 adler = new Adler32();
+            adler.update(data, from, length);
+            return new Chunk(output, position, adler.getValue(), length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Adler-32 of two pieces put together, from the checksums of the pieces and the length of the second.
+     */
+    static long combineAdler32(long first, long second, long secondLength) {
+        long remainder = secondLength % ADLER_BASE;
+        long sum1 = first & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (second & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((first >>> 16) & 0xFFFF) + ((second >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if(sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if(sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if(sum2 >= 2L * ADLER_BASE) sum2 -= 2L * ADLER_BASE;
+        if(sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+        return sum1 | (sum2 << 16);
+    }
+
+    private static final class Chunk {
+        final byte[] output;
+        final int length;
+        final long checksum;
+        final int inputLength;
+
+        Chunk(byte[] output, int length, long checksum, int inputLength) {
+            this.output = output;
+            this.length = length;
+            this.checksum = checksum;
+            this.inputLength = inputLength;
+        }
+    }
+}
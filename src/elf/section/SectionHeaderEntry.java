@@ -1,13 +1,14 @@
 package elf.section;
 
-import elf.datatype.Elf64Address;
-import elf.datatype.Elf64Offset;
+import elf.datatype.Elf64LongAddress;
+import elf.datatype.Elf64LongOffset;
+import elf.datatype.Elf64LongXWord;
 import elf.datatype.Elf64Word;
-import elf.datatype.Elf64XWord;
-import elf.util.Util.Const;
+import elf.encoding.ElfEncoder;
+import elf.util.DumpWriter;
 
-import java.math.BigInteger;
-import java.util.Formatter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class SectionHeaderEntry {
     public static final byte SIZE_IN_BYTES = 64;
@@ -23,20 +24,20 @@ public class SectionHeaderEntry {
      * Sections support 1-bit flags that describe miscellaneous attributes. Flag definitions
      * appear below.
      */
-    private Elf64XWord sectionAttributes;
+    private Elf64LongXWord sectionAttributes;
 
     /**
      * Contains the virtual address of the beginning of the section in memory.
      * If the section is not allocated to the memory image of the program, this
      * field should be zero.
      */
-    private Elf64Address virtualMemoryAddress;
+    private Elf64LongAddress virtualMemoryAddress;
 
     /**
      * Contains the offset, in bytes, of the beginning of the section contents in the file.
      */
-    private Elf64Offset offsetInFile;
-    private Elf64XWord sectionSize;
+    private Elf64LongOffset offsetInFile;
+    private Elf64LongXWord sectionSize;
 
     /**
      * This member holds a section header table index link, whose interpretation depends
@@ -71,44 +72,44 @@ public class SectionHeaderEntry {
      * sh_addralign. Currently, only 0 and positive integral powers of two are allowed.
      * Values 0 and 1 mean the section has no alignment constraints.
      */
-    private Elf64XWord addressAlignment;
+    private Elf64LongXWord addressAlignment;
 
     /**
      * Some sections hold a table of fixed-size entries, such as a symbol table. For such a section,
      * this member gives the size in bytes of each entry. The member contains 0 if the
      * section does not hold a table of fixed-size entries.
      */
-    private Elf64XWord entriesSize;
+    private Elf64LongXWord entriesSize;
 
     private String dbgSectionName;
-    private Elf64Address absoluteAddress;  // TODO: see how to work with absoluteAddress(Comes last)
+    private Elf64LongAddress absoluteAddress;  // TODO: see how to work with absoluteAddress(Comes last)
 
     public SectionHeaderEntry(){
         sectionName = new Elf64Word(0);
         sectionType = new Elf64Word(0);
-        sectionAttributes = new Elf64XWord(new BigInteger("0"));
-        virtualMemoryAddress = new Elf64Address(new BigInteger("0"));
-        offsetInFile = new Elf64Offset(BigInteger.valueOf(0));
-        sectionSize = new Elf64XWord(BigInteger.valueOf(0));
+        sectionAttributes = new Elf64LongXWord(0);
+        virtualMemoryAddress = new Elf64LongAddress(0);
+        offsetInFile = new Elf64LongOffset(0);
+        sectionSize = new Elf64LongXWord(0);
         linkToOtherSection = new Elf64Word(0);
         sectionInfo = new Elf64Word(0);
-        addressAlignment = new Elf64XWord(BigInteger.valueOf(0));
-        entriesSize = new Elf64XWord(BigInteger.valueOf(0));
+        addressAlignment = new Elf64LongXWord(0);
+        entriesSize = new Elf64LongXWord(0);
 
-        absoluteAddress = new Elf64Address(BigInteger.ZERO);
+        absoluteAddress = new Elf64LongAddress(0);
     }
 
     public SectionHeaderEntry(
         Elf64Word sectionName,
         Elf64Word sectionType,
-        Elf64XWord sectionAttributes,
-        Elf64Address virtualMemoryAddress,
-        Elf64Offset offsetInFile,
-        Elf64XWord sectionSize,
+        Elf64LongXWord sectionAttributes,
+        Elf64LongAddress virtualMemoryAddress,
+        Elf64LongOffset offsetInFile,
+        Elf64LongXWord sectionSize,
         Elf64Word linkToOtherSection,
         Elf64Word sectionInfo,
-        Elf64XWord addressAlignment,
-        Elf64XWord entriesSize
+        Elf64LongXWord addressAlignment,
+        Elf64LongXWord entriesSize
     ) {
         this.sectionName = sectionName;
         this.sectionType = sectionType;
@@ -120,6 +121,8 @@ public class SectionHeaderEntry {
         this.sectionInfo = sectionInfo;
         this.addressAlignment = addressAlignment;
         this.entriesSize = entriesSize;
+
+        absoluteAddress = new Elf64LongAddress(0);
     }
 
     public void setSectionName(Elf64Word word) {
@@ -139,18 +142,34 @@ public class SectionHeaderEntry {
     }
 
     public void setSectionAttributes(SectionFlag flag) {
-        this.sectionAttributes.setValue(new BigInteger(flag.value, 16));
+        this.sectionAttributes.setValue(flag.mask);
+    }
+
+    public void addSectionAttribute(SectionFlag flag) {
+        this.sectionAttributes.setValue(sectionAttributes.value() | flag.mask);
+    }
+
+    public void removeSectionAttribute(SectionFlag flag) {
+        this.sectionAttributes.setValue(sectionAttributes.value() & ~flag.mask);
+    }
+
+    public boolean hasSectionAttribute(SectionFlag flag) {
+        return (sectionAttributes.value() & flag.mask) != 0;
+    }
+
+    public boolean isOfType(SectionType type) {
+        return sectionType.value() == type.value;
     }
 
-    public void setVirtualMemoryAddress(BigInteger memAdr) {
+    public void setVirtualMemoryAddress(long memAdr) {
         this.virtualMemoryAddress.setValue(memAdr);
     }
 
-    public void setOffsetInFile(BigInteger offset) {
+    public void setOffsetInFile(long offset) {
         this.offsetInFile.setValue(offset);
     }
 
-    public void setSectionSize(BigInteger size) {
+    public void setSectionSize(long size) {
         this.sectionSize.setValue(size);
     }
 
@@ -163,14 +182,40 @@ public class SectionHeaderEntry {
     }
 
     public void setAddressAlignment(String align) {
-        this.addressAlignment.setValue(new BigInteger(align));
+        this.addressAlignment.setValue(Long.parseUnsignedLong(align));
+    }
+
+    public void setAddressAlignment(long align) {
+        this.addressAlignment.setValue(align);
     }
 
     public void setEntriesSize(String entriesSize) {
-        this.entriesSize.setValue(new BigInteger(entriesSize));
+        this.entriesSize.setValue(Long.parseUnsignedLong(entriesSize));
     }
 
-    public void setAbsoluteAddress(Elf64Address address) {
+    public void setEntriesSize(long entriesSize) {
+        this.entriesSize.setValue(entriesSize);
+    }
+
+    public Elf64Word getSectionType() { return sectionType; }
+
+    public Elf64LongXWord getSectionAttributes() { return sectionAttributes; }
+
+    public Elf64LongAddress getVirtualMemoryAddress() { return virtualMemoryAddress; }
+
+    public Elf64LongOffset getOffsetInFile() { return offsetInFile; }
+
+    public Elf64LongXWord getSectionSize() { return sectionSize; }
+
+    public Elf64Word getLinkToOtherSection() { return linkToOtherSection; }
+
+    public Elf64Word getSectionInfo() { return sectionInfo; }
+
+    public Elf64LongXWord getAddressAlignment() { return addressAlignment; }
+
+    public Elf64LongXWord getEntriesSize() { return entriesSize; }
+
+    public void setAbsoluteAddress(Elf64LongAddress address) {
         this.absoluteAddress = address;
     }
 
@@ -179,8 +224,26 @@ public class SectionHeaderEntry {
     }
 
     public byte[] toBytes() {
-        // TODO get hexa content
-        return new byte[]{0};
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE_IN_BYTES);
+        writeTo(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the entry at the current position of the buffer, as an ELF64 little-endian entry.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        writeTo(buffer, ElfEncoder.ELF64_LSB);
+    }
+
+    /**
+     * Writes the entry at the current position of the buffer, in the class and byte order of the encoder.
+     */
+    public void writeTo(ByteBuffer buffer, ElfEncoder encoder) {
+        encoder.putSectionHeader(buffer, sectionName.value().intValue(), sectionType.value().intValue(),
+                sectionAttributes.value(), virtualMemoryAddress.value(), offsetInFile.value(), sectionSize.value(),
+                linkToOtherSection.value().intValue(), sectionInfo.value().intValue(), addressAlignment.value(),
+                entriesSize.value());
     }
 
     public int getNumOfBytes(){
@@ -199,35 +262,38 @@ public class SectionHeaderEntry {
         return result;
     }
 
+    /**
+     * Writes a listing of the entry fields, with their addresses and values.
+     */
+    public void dump(Appendable out) throws IOException {
+        DumpWriter writer = new DumpWriter(out);
+        long offset = absoluteAddress.value();
+
+        writer.field("Section Name:", offset, sectionName, dbgSectionName);
+        offset += sectionName.getSize().numOfBytes;
+        writer.field("Section Type:", offset, sectionType, "");
+        offset += sectionType.getSize().numOfBytes;
+        writer.field("Section Attributes:", offset, sectionAttributes, "");
+        offset += sectionAttributes.getSize().numOfBytes;
+        writer.field("Virtual Memory Address:", offset, virtualMemoryAddress, "");
+        offset += virtualMemoryAddress.getSize().numOfBytes;
+        writer.field("Offset In File:", offset, offsetInFile, "");
+        offset += offsetInFile.getSize().numOfBytes;
+        writer.field("Section Size:", offset, sectionSize, "");
+        offset += sectionSize.getSize().numOfBytes;
+        writer.field("Link To Other Section:", offset, linkToOtherSection, "");
+        offset += linkToOtherSection.getSize().numOfBytes;
+        writer.field("Section Info:", offset, sectionInfo, "");
+        offset += sectionInfo.getSize().numOfBytes;
+        writer.field("Address Alignment:", offset, addressAlignment, "");
+        offset += addressAlignment.getSize().numOfBytes;
+        writer.field("Entries Size:", offset, entriesSize, "");
+        offset += entriesSize.getSize().numOfBytes;
+    }
+
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        Formatter formatter = new Formatter(sb);
-
-        Elf64Address offset = new Elf64Address(absoluteAddress.value());
-
-        formatter.format(Const.dbgFormat, "Section Name:", offset, sectionName, dbgSectionName);
-        offset.incrementBy(sectionName.getSize().numOfBytes);
-        formatter.format(Const.dbgFormat, "Section Type:", offset, sectionType, "");
-        offset.incrementBy(sectionType.getSize().numOfBytes);
-        formatter.format(Const.dbgFormat, "Section Attributes:", offset, sectionAttributes, "");
-        offset.incrementBy(sectionAttributes.getSize().numOfBytes);
-        formatter.format(Const.dbgFormat, "Virtual Memory Address:", offset, virtualMemoryAddress, "");
-        offset.incrementBy(virtualMemoryAddress.getSize().numOfBytes);
-        formatter.format(Const.dbgFormat, "Offset In File:", offset, offsetInFile, "");
-        offset.incrementBy(offsetInFile.getSize().numOfBytes);
-        formatter.format(Const.dbgFormat, "Section Size:", offset, sectionSize, "");
-        offset.incrementBy(sectionSize.getSize().numOfBytes);
-        formatter.format(Const.dbgFormat, "Link To Other Section:", offset, linkToOtherSection, "");
-        offset.incrementBy(linkToOtherSection.getSize().numOfBytes);
-        formatter.format(Const.dbgFormat, "Section Info:", offset, sectionInfo, "");
-        offset.incrementBy(sectionInfo.getSize().numOfBytes);
-        formatter.format(Const.dbgFormat, "Address Alignment:", offset, addressAlignment, "");
-        offset.incrementBy(addressAlignment.getSize().numOfBytes);
-        formatter.format(Const.dbgFormat, "Entries Size:", offset, entriesSize, "");
-        offset.incrementBy(entriesSize.getSize().numOfBytes);
-
-        return sb.toString();
+        return DumpWriter.toString(this::dump);
     }
 
     public enum SectionType{
@@ -244,23 +310,35 @@ public class SectionHeaderEntry {
         SHT_REL(9),             /** Contains “Rel” type relocation entries       */
         SHT_SHLIB(10),          /** Reserved                                     */
         SHT_DYNSYM(11),         /** Contains a dynamic loader symbol table       */
+        SHT_RELR(19),           /** Contains packed relative relocations         */
         SHT_LOOS(0x60000000),   /** Environment-specific use                     */
+        SHT_GNU_HASH(0x6FFFFFF6),/** Contains GNU style symbol hash table        */
         SHT_HIOS(0x6FFFFFFF),
         SHT_LOPROC(0x70000000), /** Processor-specific use                       */
         SHT_HIPROC(0x7FFFFFFF);
 
         private final long value;
         private SectionType(long size){ value = size; }
+
+        public long getValue() { return value; }
     }
 
     public enum SectionFlag {
         SHF_WRITE("1"),              /** Section contains writable data                  - W */
         SHF_ALLOC("2"),              /** Section is allocated in memory image of program - A */
         SHF_EXECINSTR("4"),          /** Section contains executable instructions        - X */
+        SHF_INFO_LINK("40"),         /** sh_info holds a section header table index      - I */
+        SHF_COMPRESSED("800"),       /** Section holds compressed data                   - C */
         SHF_MASKOS("0F000000"),      /** Environment-specific use                            */
         SHF_MASKPROC("F0000000");    /** Processor-specific use                              */
 
         private final String value;
-        private SectionFlag(String size){ value = size; }
+        private final long mask;
+        private SectionFlag(String size){
+            value = size;
+            mask = Long.parseLong(size, 16);
+        }
+
+        public long getMask() { return mask; }
     }
 }
@@ -1,21 +1,36 @@
 package elf.section;
 
-import elf.datatype.Elf64Word;
+import elf.encoding.ElfEncoder;
+import elf.util.DumpWriter;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 
 /**
  * An object file’s section header table lets one locate all the file’s sections.
  */
 public class SectionHeaderTable {
-    // Hash map is used to speed up the search for some section
+    // Entries are kept in table order, hash map is used to speed up the search for some section.
     // If section search is wanted to be performed by its name, string section should be searched first
-    private final LinkedHashMap<String, SectionHeaderEntry> table;
+    private final ArrayList<SectionHeaderEntry> table;
+    private final HashMap<String, Integer> indexByName;
+    private ElfEncoder encoder = ElfEncoder.ELF64_LSB;
 
     public SectionHeaderTable(){
-        table = new LinkedHashMap<>();
+        table = new ArrayList<>();
+        indexByName = new HashMap<>();
+        initReservedSectionEntry();
+    }
+
+    /**
+     * Removes every entry but the reserved first one.
+     */
+    public void reset(){
+        table.clear();
+        indexByName.clear();
         initReservedSectionEntry();
     }
 
@@ -25,17 +40,66 @@ public class SectionHeaderTable {
         addSectionEntry("SHT_NULL", zeroEntry);
     }
 
-    public void addSectionEntry(String sectionName, SectionHeaderEntry entry){
-        table.put(sectionName, entry);
+    /**
+     * Appends entry to the table. Section names do not have to be unique, search by name
+     * finds the first section with that name.
+     *
+     * @return index of the entry inside the table
+     */
+    public int addSectionEntry(String sectionName, SectionHeaderEntry entry){
+        table.add(entry);
+        indexByName.putIfAbsent(sectionName, table.size() - 1);
+        return table.size() - 1;
     }
 
     public int getEntryCount(){
         return table.size();
     }
 
+    public SectionHeaderEntry getEntry(int index){
+        return table.get(index);
+    }
+
+    /**
+     * @return index of the first section with given name, or -1 if there is none
+     */
+    public int indexOf(String sectionName){
+        Integer index = indexByName.get(sectionName);
+        return index == null ? -1 : index;
+    }
+
+    public Collection<SectionHeaderEntry> getEntries(){
+        return table;
+    }
+
+    /**
+     * Encoder of the file, which entries are written with.
+     */
+    public ElfEncoder getEncoder(){
+        return encoder;
+    }
+
+    public void setEncoder(ElfEncoder encoder){
+        this.encoder = encoder;
+    }
+
+    public long getSizeInBytes(){
+        return (long) table.size() * encoder.getSectionHeaderEntrySize();
+    }
+
     public byte[] toBytes(){
-        // TODO: implement this
-        return new byte[1];
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(getSizeInBytes()));
+        writeTo(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Writes all entries, in table order, at the current position of the buffer.
+     */
+    public void writeTo(ByteBuffer buffer){
+        for(SectionHeaderEntry entry : table){
+            entry.writeTo(buffer, encoder);
+        }
     }
 
     private enum ReservedEntries {
@@ -80,19 +144,23 @@ public class SectionHeaderTable {
         }
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Section table\n");
-        sb.append("====================\n\n");
-        Set<Map.Entry<String, SectionHeaderEntry>> set = table.entrySet();
+    /**
+     * Writes a listing of every entry of the table.
+     */
+    public void dump(Appendable out) throws IOException {
+        out.append("Section table\n");
+        out.append("====================\n\n");
         int order = 0;
-        for(Map.Entry<String, SectionHeaderEntry> e : set){
-            sb.append("Section header table: ").append(order++).append('\n');
-            sb.append("--------------------\n");
-            sb.append(e.getValue().toString()).append('\n');
+        for(SectionHeaderEntry entry : table){
+            out.append("Section header table: ").append(Integer.toString(order++)).append('\n');
+            out.append("--------------------\n");
+            entry.dump(out);
+            out.append('\n');
         }
+    }
 
-        return sb.toString();
+    @Override
+    public String toString() {
+        return DumpWriter.toString(this::dump);
     }
 }
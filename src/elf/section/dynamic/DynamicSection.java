@@ -0,0 +1,117 @@
+package elf.section.dynamic;
+
+import elf.encoding.ElfEncoder;
+import elf.section.Section;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Dynamic section: the array of tag and value pairs the dynamic loader reads to find everything
+ * else it needs - symbol and string tables, hash table, relocations.
+ *
+ * Most values are addresses or sizes of other sections, which are not known until the file is
+ * laid out. Such entries remember the section, and their values are taken from its section header
+ * entry when the dynamic section is written. Array is terminated by a DT_NULL entry.
+ */
+public class DynamicSection extends Section {
+    public static final int ENTRY_SIZE_IN_BYTES = 16;
+
+    private static final byte VALUE = 0;
+    private static final byte ADDRESS_OF = 1;
+    private static final byte SIZE_OF = 2;
+
+    private final ArrayList<Entry> entries = new ArrayList<>();
+
+    public DynamicSection() {
+        super(".dynamic");
+    }
+
+    public void addEntry(DynamicTag tag, long value) {
+        entries.add(new Entry(tag.getValue(), VALUE, value, null));
+    }
+
+    /**
+     * Adds entry whose value is the address of the section.
+     */
+    public void addAddressOf(DynamicTag tag, Section section) {
+        entries.add(new Entry(tag.getValue(), ADDRESS_OF, 0, section));
+    }
+
+    /**
+     * Adds entry whose value is the size of the section.
+     */
+    public void addSizeOf(DynamicTag tag, Section section) {
+        entries.add(new Entry(tag.getValue(), SIZE_OF, 0, section));
+    }
+
+    /**
+     * @return index of the first entry with given tag, or -1
+     */
+    public int indexOf(DynamicTag tag) {
+        for(int i = 0; i < entries.size(); i++){
+            if(entries.get(i).tag == tag.getValue()){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getTag(int index) {
+        return entries.get(index).tag;
+    }
+
+    public long getValue(int index) {
+        Entry entry = entries.get(index);
+        switch (entry.kind){
+            case ADDRESS_OF:
+                return entry.section.getHeaderEntry().getVirtualMemoryAddress().value();
+            case SIZE_OF:
+                return entry.section.getSizeInBytes();
+            default:
+                return entry.value;
+        }
+    }
+
+    @Override
+    public boolean refersToAddresses() {
+        return true;
+    }
+
+    @Override
+    public long getDefaultAlignment() {
+        return 8;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return (long) (entries.size() + 1) * getEncoder().getDynamicEntrySize();
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        ElfEncoder encoder = getEncoder();
+        for(int i = 0; i < entries.size(); i++){
+            encoder.putDynamic(buffer, entries.get(i).tag, getValue(i));
+        }
+        encoder.putDynamic(buffer, DynamicTag.DT_NULL.getValue(), 0);
+    }
+
+    private static final class Entry {
+        final long tag;
+        final byte kind;
+        final long value;
+        final Section section;
+
+        Entry(long tag, byte kind, long value, Section section) {
+            this.tag = tag;
+            this.kind = kind;
+            this.value = value;
+            this.section = section;
+        }
+    }
+}
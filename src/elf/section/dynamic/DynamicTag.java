@@ -0,0 +1,37 @@
+package elf.section.dynamic;
+
+/**
+ * Tags of dynamic section entries. Value of an entry is either an address or a plain value,
+ * depending on the tag.
+ */
+public enum DynamicTag {
+    DT_NULL(0),                 /** Marks the end of the dynamic array              */
+    DT_NEEDED(1),               /** String table offset of a needed library         */
+    DT_PLTRELSZ(2),             /** Size of relocations of the PLT                  */
+    DT_PLTGOT(3),               /** Address of PLT and/or GOT                       */
+    DT_HASH(4),                 /** Address of the symbol hash table                */
+    DT_STRTAB(5),               /** Address of the dynamic string table             */
+    DT_SYMTAB(6),               /** Address of the dynamic symbol table             */
+    DT_RELA(7),                 /** Address of the relocation table with addends    */
+    DT_RELASZ(8),               /** Size of the relocation table with addends       */
+    DT_RELAENT(9),              /** Size of one relocation entry with addend        */
+    DT_STRSZ(10),               /** Size of the dynamic string table                */
+    DT_SYMENT(11),              /** Size of one symbol table entry                  */
+    DT_INIT(12),                /** Address of the initialization function          */
+    DT_FINI(13),                /** Address of the termination function             */
+    DT_SONAME(14),              /** String table offset of the shared object name   */
+    DT_TEXTREL(22),             /** Relocations might modify a non writable segment */
+    DT_JMPREL(23),              /** Address of relocations of the PLT               */
+    DT_FLAGS(30),               /** Flags of the object being loaded                */
+    DT_RELRSZ(35),              /** Size of the packed relative relocations         */
+    DT_RELR(36),                /** Address of the packed relative relocations      */
+    DT_RELRENT(37),             /** Size of one packed relative relocation entry    */
+    DT_GNU_HASH(0x6FFFFEF5),    /** Address of the GNU style symbol hash table      */
+    DT_RELACOUNT(0x6FFFFFF9),   /** Number of relative relocations with addends     */
+    DT_FLAGS_1(0x6FFFFFFB);     /** State flags                                     */
+
+    private final long value;
+    DynamicTag(long value) { this.value = value; }
+
+    public long getValue() { return value; }
+}
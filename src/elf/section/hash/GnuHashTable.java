@@ -0,0 +1,250 @@
+package elf.section.hash;
+
+import elf.encoding.ElfEncoder;
+import elf.section.Section;
+import elf.section.string.StringTable;
+import elf.section.symbol.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * GNU style hash table of the dynamic symbol table, used by the dynamic loader to find exported
+ * symbols. It consists of a bloom filter, which rejects most lookups of symbols that are not
+ * there, buckets holding the index of the first symbol of each bucket, and chains holding the
+ * hash of every hashed symbol.
+ *
+ * Lookup requires the symbols of one bucket to be adjacent in the symbol table, so building the
+ * table reorders the dynamic symbol table: symbols that are not hashed - local and undefined ones -
+ * go first, followed by defined symbols ordered by bucket.
+ *
+ * Table is sized from the number of symbols: a bucket per four hashed symbols, and a bloom filter
+ * of twelve bits per hashed symbol rounded up to a power of two words.
+ */
+public class GnuHashTable extends Section {
+    public static final int DEFAULT_BLOOM_SHIFT = 6;
+    private static final int HEADER_SIZE_IN_BYTES = 16;
+    private static final int BLOOM_BITS_PER_SYMBOL = 12;
+    private static final int PARALLEL_THRESHOLD = 8192;
+
+    private final SymbolTable symbolTable;
+    private final StringTable stringTable;
+    private int bloomShift;
+
+    // Contents, valid once the table is built
+    private int builtModification = -1;    // Modification count of the symbols the table was built for
+    private int symbolOffset;
+    private long[] bloom;
+    private int[] buckets;
+    private int[] chains;
+    private int[] newIndexes;
+
+    public GnuHashTable(SymbolTable symbolTable, StringTable stringTable) {
+        super(".gnu.hash");
+        this.symbolTable = symbolTable;
+        this.stringTable = stringTable;
+        this.bloomShift = DEFAULT_BLOOM_SHIFT;
+        setLink(symbolTable);
+    }
+
+    /**
+     * Shift giving the second bloom filter bit of a symbol from its hash. Changing it leaves the
+     * table to be built again, on the next finalization.
+     */
+    public void setBloomShift(int bloomShift) {
+        if(bloomShift < 0 || bloomShift >= Integer.SIZE){
+            throw new IllegalArgumentException("Bloom shift out of range: " + bloomShift);
+        }
+        if(bloomShift != this.bloomShift){
+            builtModification = -1;
+        }
+        this.bloomShift = bloomShift;
+    }
+
+    public int getBloomShift() {
+        return bloomShift;
+    }
+
+    /**
+     * Hash function of the GNU hash table, over the name at given offset of the string table.
+     */
+    public static int hash(StringTable stringTable, int offset) {
+        int h = 5381;
+        for(byte b = stringTable.getByte(offset); b != 0; b = stringTable.getByte(++offset)){
+            h = (h << 5) + h + (b & 0xFF);
+        }
+        return h;
+    }
+
+    private boolean isHashed(int symbol) {
+        int binding = symbolTable.getInfo(symbol) >>> 4;
+        return symbol != 0 && binding != 0 && symbolTable.getSectionIndex(symbol) != 0;
+    }
+
+    private int countHashed() {
+        int hashedCount = 0;
+        for(int i = 0; i < symbolTable.getSymbolCount(); i++){
+            if(isHashed(i)){
+                hashedCount++;
+            }
+        }
+        return hashedCount;
+    }
+
+    private static int bucketCountFor(int hashedCount) {
+        return Math.max(hashedCount / 4, 1);
+    }
+
+    private static int bloomWordsFor(int hashedCount) {
+        int words = Math.max(hashedCount * BLOOM_BITS_PER_SYMBOL / Long.SIZE, 1);
+        return words == 1 ? 1 : Integer.highestOneBit(words - 1) << 1;
+    }
+
+    /**
+     * Reorders the symbol table by bucket and fills the table. Is called on finalization; symbols
+     * should be referred to by index only after it, or translated with {@link #getNewIndex(int)}.
+     * Does nothing if neither the symbols nor the bloom shift changed since the last build.
+     */
+    public void build() {
+        if(isBuilt()){
+            return;
+        }
+        int count = symbolTable.getSymbolCount();
+
+        // Symbols that are not hashed keep their relative order in front of the hashed ones
+        int[] order = new int[count];
+        int unhashed = 0;
+        for(int i = 0; i < count; i++){
+            if(!isHashed(i)){
+                order[unhashed++] = i;
+            }
+        }
+        symbolOffset = unhashed;
+        int hashedCount = count - unhashed;
+
+        int[] hashed = new int[hashedCount];
+        for(int i = 0, next = 0; i < count; i++){
+            if(isHashed(i)){
+                hashed[next++] = i;
+            }
+        }
+
+        IntStream indexes = IntStream.range(0, hashedCount);
+        if(hashedCount >= PARALLEL_THRESHOLD){
+            indexes = indexes.parallel();
+        }
+        int[] hashes = indexes.map(i -> hash(stringTable, symbolTable.getNameOffset(hashed[i]))).toArray();
+
+        int bucketCount = bucketCountFor(hashedCount);
+        int bloomWords = bloomWordsFor(hashedCount);
+
+        // Counting sort by bucket, stable within a bucket
+        int[] bucketStarts = new int[bucketCount + 1];
+        for(int h : hashes){
+            bucketStarts[Integer.remainderUnsigned(h, bucketCount) + 1]++;
+        }
+        for(int b = 0; b < bucketCount; b++){
+            bucketStarts[b + 1] += bucketStarts[b];
+        }
+        int[] sortedHashes = new int[hashedCount];
+        int[] next = bucketStarts.clone();
+        for(int i = 0; i < hashedCount; i++){
+            int position = next[Integer.remainderUnsigned(hashes[i], bucketCount)]++;
+            order[unhashed + position] = hashed[i];
+            sortedHashes[position] = hashes[i];
+        }
+
+        bloom = new long[bloomWords];
+        buckets = new int[bucketCount];
+        chains = new int[hashedCount];
+        for(int b = 0; b < bucketCount; b++){
+            int from = bucketStarts[b];
+            int to = bucketStarts[b + 1];
+            buckets[b] = from == to ? 0 : unhashed + from;
+            for(int i = from; i < to; i++){
+                int h = sortedHashes[i];
+                // Last symbol of a bucket has the lowest bit of its chain value set
+                chains[i] = i == to - 1 ? h | 1 : h & ~1;
+
+                int word = Integer.divideUnsigned(h, Long.SIZE) & (bloomWords - 1);
+                bloom[word] |= (1L << (h & (Long.SIZE - 1))) | (1L << ((h >>> bloomShift) & (Long.SIZE - 1)));
+            }
+        }
+
+        int[] current = new int[count];
+        for(int i = 0; i < count; i++){
+            current[order[i]] = i;
+        }
+        // Symbols moved by an earlier build are translated through both orders
+        if(newIndexes != null){
+            int[] combined = new int[count];
+            for(int i = 0; i < count; i++){
+                combined[i] = current[i < newIndexes.length ? newIndexes[i] : i];
+            }
+            current = combined;
+        }
+        newIndexes = current;
+        symbolTable.permute(order);
+        builtModification = symbolTable.getModificationCount();
+    }
+
+    /**
+     * @return true if neither the symbols nor the bloom shift changed since the table was last built
+     */
+    public boolean isBuilt() {
+        return builtModification == symbolTable.getModificationCount();
+    }
+
+    /**
+     * @return index a dynamic symbol got when the table was built, given its index before
+     */
+    public int getNewIndex(int oldIndex) {
+        return newIndexes == null ? oldIndex : newIndexes[oldIndex];
+    }
+
+    public int getSymbolOffset() {
+        return symbolOffset;
+    }
+
+    @Override
+    public long getDefaultAlignment() {
+        return 8;
+    }
+
+    /**
+     * Size depends only on the number of hashed symbols, so it is known before the table is built.
+     */
+    @Override
+    public long getSizeInBytes() {
+        int hashedCount = isBuilt() ? chains.length : countHashed();
+        return HEADER_SIZE_IN_BYTES + (long) bloomWordsFor(hashedCount) * Long.BYTES
+                + (long) bucketCountFor(hashedCount) * Integer.BYTES + (long) hashedCount * Integer.BYTES;
+    }
+
+    /**
+     * Writes the table as built on finalization. Building reorders the dynamic symbol table, so
+     * writing does not build it, as sections may be written concurrently.
+     *
+     * @throws IllegalStateException if the symbols or the bloom shift changed since the table was last built
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if(!isBuilt()){
+            throw new IllegalStateException("Hash table has to be built, on finalization, before it is written");
+        }
+        ElfEncoder encoder = getEncoder();
+        encoder.putWord(buffer, buckets.length);
+        encoder.putWord(buffer, symbolOffset);
+        encoder.putWord(buffer, bloom.length);
+        encoder.putWord(buffer, bloomShift);
+        for(long word : bloom){
+            encoder.putXWord(buffer, word);
+        }
+        for(int bucket : buckets){
+            encoder.putWord(buffer, bucket);
+        }
+        for(int chain : chains){
+            encoder.putWord(buffer, chain);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package elf.section.relocation;
+
+import elf.encoding.ElfEncoder;
+import elf.section.Section;
+import elf.util.RadixSort;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Section of Elf_Rela entries. Entries are kept column by column in primitive arrays - offset,
+ * info (symbol index and relocation type packed as in Elf64_Rela) and addend - so a relocation costs
+ * its 24 bytes on disk, 12 in an ELF32 file, and nothing more.
+ *
+ * sh_link of the section references the symbol table the entries use, and sh_info the section
+ * they apply to. Entries are sorted by offset when the section is laid out.
+ *
+ * Dynamic relocations are given relative to the section they apply to, whose address is not known
+ * until the whole file is laid out. Such entries remember their section, get their address
+ * resolved when written, and are written in address order.
+ */
+public class RelocationTable extends Section {
+    public static final int ENTRY_SIZE_IN_BYTES = 24;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] offsets;
+    private long[] infos;
+    private long[] addends;
+    private int count;
+
+    // Present only once an entry relative to a section is added
+    private int[] baseIndexes;
+    private final ArrayList<Section> bases = new ArrayList<>();
+    private final IdentityHashMap<Section, Integer> baseToIndex = new IdentityHashMap<>();
+
+    public RelocationTable(String name) {
+        this(name, DEFAULT_CAPACITY);
+    }
+
+    public RelocationTable(String name, int initialCapacity) {
+        super(name);
+        int capacity = Math.max(initialCapacity, 1);
+        offsets = new long[capacity];
+        infos = new long[capacity];
+        addends = new long[capacity];
+    }
+
+    public static long makeInfo(int symbol, int type) {
+        return ((long) symbol << 32) | (type & 0xFFFFFFFFL);
+    }
+
+    public void addRelocation(long offset, int symbol, RelocationType type, long addend) {
+        addRelocation(offset, symbol, type.getValue(), addend);
+    }
+
+    public void addRelocation(long offset, int symbol, int type, long addend) {
+        ensureCapacity(count + 1);
+        offsets[count] = offset;
+        infos[count] = makeInfo(symbol, type);
+        addends[count] = addend;
+        count++;
+    }
+
+    /**
+     * Adds entry whose offset is relative to the start of given section. Offset written to the file
+     * is the address of that byte, once the section has one.
+     */
+    public void addRelocation(Section base, long offset, int symbol, RelocationType type, long addend) {
+        if(baseIndexes == null){
+            baseIndexes = new int[offsets.length];
+            Arrays.fill(baseIndexes, -1);
+        }
+        Integer baseIndex = baseToIndex.get(base);
+        if(baseIndex == null){
+            baseIndex = bases.size();
+            bases.add(base);
+            baseToIndex.put(base, baseIndex);
+        }
+        addRelocation(offset, symbol, type, addend);
+        baseIndexes[count - 1] = baseIndex;
+    }
+
+    /**
+     * Removes every relocation, keeping the grown columns.
+     */
+    public void reset() {
+        count = 0;
+        baseIndexes = null;
+        bases.clear();
+        baseToIndex.clear();
+    }
+
+    public void ensureCapacity(int capacity) {
+        if(capacity <= offsets.length){
+            return;
+        }
+        int grown = Math.max(capacity, offsets.length + (offsets.length >> 1));
+        offsets = Arrays.copyOf(offsets, grown);
+        infos = Arrays.copyOf(infos, grown);
+        addends = Arrays.copyOf(addends, grown);
+        if(baseIndexes != null){
+            int old = baseIndexes.length;
+            baseIndexes = Arrays.copyOf(baseIndexes, grown);
+            Arrays.fill(baseIndexes, old, grown, -1);
+        }
+    }
+
+    public int getRelocationCount() { return count; }
+
+    public long getOffset(int index) { return offsets[index]; }
+
+    /**
+     * @return offset written to the file for the entry: its address, if it is relative to a section
+     */
+    public long getResolvedOffset(int index) {
+        if(baseIndexes == null || baseIndexes[index] < 0){
+            return offsets[index];
+        }
+        return bases.get(baseIndexes[index]).getHeaderEntry().getVirtualMemoryAddress().value() + offsets[index];
+    }
+
+    public int getSymbol(int index) { return (int) (infos[index] >>> 32); }
+
+    public int getType(int index) { return (int) infos[index]; }
+
+    public long getAddend(int index) { return addends[index]; }
+
+    /**
+     * Sorts entries by offset. Order of entries with the same offset is kept.
+     */
+    public void sort() {
+        if(baseIndexes != null || RadixSort.isSorted(offsets, count)){
+            return;
+        }
+        int[] order = RadixSort.sortedOrder(offsets, count);
+        long[] scratch = new long[count];
+        RadixSort.permute(offsets, order, scratch);
+        RadixSort.permute(infos, order, scratch);
+        RadixSort.permute(addends, order, scratch);
+    }
+
+    @Override
+    public void onLayout() {
+        sort();
+    }
+
+    /**
+     * Entries relative to sections hold their addresses.
+     */
+    @Override
+    public boolean refersToAddresses() {
+        return baseIndexes != null;
+    }
+
+    @Override
+    public long getDefaultAlignment() {
+        return 8;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return (long) count * getEncoder().getRelaSize();
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        if(baseIndexes != null){
+            writeResolved(buffer);
+            return;
+        }
+        ElfEncoder encoder = getEncoder();
+        for(int i = 0; i < count; i++){
+            encoder.putRela(buffer, offsets[i], infos[i], addends[i]);
+        }
+    }
+
+    // Entries relative to sections are sorted by address only now, when every address is known.
+    private void writeResolved(ByteBuffer buffer) {
+        long[] resolved = new long[count];
+        for(int i = 0; i < count; i++){
+            resolved[i] = getResolvedOffset(i);
+        }
+        ElfEncoder encoder = getEncoder();
+        for(int i : RadixSort.sortedOrder(resolved, count)){
+            encoder.putRela(buffer, resolved[i], infos[i], addends[i]);
+        }
+    }
+}
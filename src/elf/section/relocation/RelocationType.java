@@ -0,0 +1,25 @@
+package elf.section.relocation;
+
+/**
+ * x86-64 relocation types. In calculations A is the addend, P the place being relocated,
+ * S the value of the symbol and B the base address of a shared object.
+ */
+public enum RelocationType {
+    R_X86_64_NONE(0),       /** No relocation            */
+    R_X86_64_64(1),         /** word64 : S + A           */
+    R_X86_64_PC32(2),       /** word32 : S + A - P       */
+    R_X86_64_GOT32(3),      /** word32 : G + A           */
+    R_X86_64_PLT32(4),      /** word32 : L + A - P       */
+    R_X86_64_COPY(5),       /** none                     */
+    R_X86_64_GLOB_DAT(6),   /** word64 : S               */
+    R_X86_64_JUMP_SLOT(7),  /** word64 : S               */
+    R_X86_64_RELATIVE(8),   /** word64 : B + A           */
+    R_X86_64_GOTPCREL(9),   /** word32 : G + GOT + A - P */
+    R_X86_64_32(10),        /** word32 : S + A           */
+    R_X86_64_32S(11);       /** word32 : S + A           */
+
+    private final int value;
+    RelocationType(int value) { this.value = value; }
+
+    public int getValue() { return value; }
+}
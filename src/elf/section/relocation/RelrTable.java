@@ -0,0 +1,189 @@
+package elf.section.relocation;
+
+import elf.encoding.ElfEncoder;
+import elf.section.Section;
+import elf.util.RadixSort;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Packed relative relocations (SHT_RELR). Every relative relocation adds the load base to the
+ * word at its address, so only the addresses are stored, in a compressed form: an even word is
+ * an address, relocated itself, and each odd word following it is a bitmap of which of the next
+ * 63 words are relocated as well. A run of pointers costs one bit each instead of a 24 byte
+ * Elf64_Rela entry.
+ *
+ * Addend of a packed relocation is the value already stored at its address. Relocations that
+ * can not be packed - addresses not aligned to a word - are added to the fallback relocation
+ * table as R_X86_64_RELATIVE entries with an explicit addend.
+ *
+ * Addresses are given relative to the section they are in, and each section is encoded on its own,
+ * so the size of the table is known before the sections get their addresses.
+ */
+public class RelrTable extends Section {
+    public static final int ENTRY_SIZE_IN_BYTES = 8;
+    private static final int WORD_SIZE = 8;
+    private static final int BITMAP_BITS = 63;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final RelocationTable fallback;
+
+    private long[] offsets;
+    private int[] baseIndexes;
+    private int count;
+    private final ArrayList<Section> bases = new ArrayList<>();
+    private final IdentityHashMap<Section, Integer> baseToIndex = new IdentityHashMap<>();
+
+    // Encoding, valid until the next relocation is added
+    private long[] words;
+    private int[] wordBases;            // Section of every address word, -1 for bitmaps
+    private int wordCount = -1;
+
+    /**
+     * @param fallback table receiving the relocations that can not be packed
+     */
+    public RelrTable(String name, RelocationTable fallback) {
+        super(name);
+        this.fallback = fallback;
+        offsets = new long[DEFAULT_CAPACITY];
+        baseIndexes = new int[DEFAULT_CAPACITY];
+    }
+
+    public RelocationTable getFallback() {
+        return fallback;
+    }
+
+    /**
+     * Adds relative relocation of the word at given offset inside of the section.
+     *
+     * @param addend value the loader adds the base to; for a packed relocation it has to be stored
+     *               at the offset already, and is only written to the fallback table otherwise
+     * @return true if the relocation got packed
+     */
+    public boolean addRelative(Section base, long offset, long addend) {
+        long alignment = base.getHeaderEntry().getAddressAlignment().value();
+        if(offset % WORD_SIZE != 0 || alignment < WORD_SIZE){
+            fallback.addRelocation(base, offset, 0, RelocationType.R_X86_64_RELATIVE, addend);
+            return false;
+        }
+
+        Integer baseIndex = baseToIndex.get(base);
+        if(baseIndex == null){
+            baseIndex = bases.size();
+            bases.add(base);
+            baseToIndex.put(base, baseIndex);
+        }
+        if(count == offsets.length){
+            offsets = Arrays.copyOf(offsets, count * 2);
+            baseIndexes = Arrays.copyOf(baseIndexes, count * 2);
+        }
+        offsets[count] = offset;
+        baseIndexes[count] = baseIndex;
+        count++;
+        wordCount = -1;
+        return true;
+    }
+
+    public int getRelocationCount() {
+        return count;
+    }
+
+    private void encode() {
+        if(wordCount >= 0){
+            return;
+        }
+        words = new long[Math.max(count, 1)];
+        wordBases = new int[words.length];
+        wordCount = 0;
+
+        // Sorted by offset, then grouped by section; grouping is stable, so offsets stay sorted
+        int[] byOffset = RadixSort.sortedOrder(offsets, count);
+        int[] groupStarts = new int[bases.size() + 1];
+        for(int i = 0; i < count; i++){
+            groupStarts[baseIndexes[i] + 1]++;
+        }
+        for(int b = 0; b < bases.size(); b++){
+            groupStarts[b + 1] += groupStarts[b];
+        }
+        int[] grouped = new int[count];
+        int[] next = groupStarts.clone();
+        for(int i : byOffset){
+            grouped[next[baseIndexes[i]]++] = i;
+        }
+
+        for(int b = 0; b < bases.size(); b++){
+            encodeGroup(grouped, groupStarts[b], groupStarts[b + 1], b);
+        }
+    }
+
+    private void encodeGroup(int[] grouped, int from, int to, int baseIndex) {
+        int i = from;
+        while(i < to){
+            long address = offsets[grouped[i++]];
+            addWord(address, baseIndex);
+            long where = address + WORD_SIZE;
+
+            while(true){
+                long bitmap = 0;
+                for(; i < to; i++){
+                    long delta = offsets[grouped[i]] - where;
+                    if(delta < 0){
+                        // Same offset added more than once
+                        continue;
+                    }
+                    if(delta >= BITMAP_BITS * WORD_SIZE){
+                        break;
+                    }
+                    bitmap |= 1L << (delta / WORD_SIZE);
+                }
+                if(bitmap == 0){
+                    break;
+                }
+                addWord((bitmap << 1) | 1, -1);
+                where += BITMAP_BITS * WORD_SIZE;
+            }
+        }
+    }
+
+    private void addWord(long word, int baseIndex) {
+        if(wordCount == words.length){
+            words = Arrays.copyOf(words, wordCount * 2);
+            wordBases = Arrays.copyOf(wordBases, wordCount * 2);
+        }
+        words[wordCount] = word;
+        wordBases[wordCount] = baseIndex;
+        wordCount++;
+    }
+
+    @Override
+    public boolean refersToAddresses() {
+        return true;
+    }
+
+    @Override
+    public long getDefaultAlignment() {
+        return WORD_SIZE;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        encode();
+        return (long) wordCount * ENTRY_SIZE_IN_BYTES;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        encode();
+        ElfEncoder encoder = getEncoder();
+        for(int i = 0; i < wordCount; i++){
+            long word = words[i];
+            if(wordBases[i] >= 0){
+                word += bases.get(wordBases[i]).getHeaderEntry().getVirtualMemoryAddress().value();
+            }
+            encoder.putXWord(buffer, word);
+        }
+    }
+}
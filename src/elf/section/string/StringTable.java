@@ -1,12 +1,15 @@
 package elf.section.string;
 
 import elf.datatype.Elf64Word;
+import elf.datatype.ElfDataType;
+import elf.metrics.TableGrowthEvent;
 import elf.section.Section;
-import elf.util.Util;
-import elf.util.Util.Const;
+import elf.util.DumpWriter;
 
-import java.util.ArrayList;
-import java.util.Formatter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * String table sections contain strings used for section names and symbol
@@ -18,49 +21,438 @@ import java.util.Formatter;
  *
  * The first byte in a string table is defined to be null, so that the index 0 always refers
  * to a null or non-existent name.
+ *
+ * Strings are encoded as UTF-8 straight into a growable byte arena. An open addressing hash
+ * index over the arena makes adding a string that is already present return its existing offset.
  */
 public class StringTable extends Section {
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final int EMPTY_SLOT = -1;
+    private static final int STRING_COLUMN_WIDTH = 60;
+
+    private byte[] arena;
+    private int size;           // Offset from String table section where we put next str.
+
+    // Hash index: slot holds arena offset of a string, or EMPTY_SLOT
+    private int[] slots;
+    private int[] slotHashes;
+    private int indexedCount;
 
-    private final ArrayList<char[]> table;
-    private long offset;        // Offset from String table section where we put str.
+    // Start offsets of strings laid out in the arena, in ascending order
+    private int[] starts;
+    private int startCount;
+
+    // Offset translation recorded by the last mergeTails() call
+    private int[] mergedOldStarts;
+    private int[] mergedNewStarts;
 
     public StringTable() {
-        super(".strtab");
-        table = new ArrayList<>();
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StringTable(int initialCapacity) {
+        this(".strtab", initialCapacity);
+    }
+
+    public StringTable(String name, int initialCapacity) {
+        super(name);
+        arena = new byte[Math.max(initialCapacity, 16)];
+        slots = new int[64];
+        Arrays.fill(slots, EMPTY_SLOT);
+        slotHashes = new int[64];
+        starts = new int[64];
+
+        initZeroIndex();
+    }
+
+    private void initZeroIndex() {
+        arena[0] = '\0';
+        size = 1;
+        index(0, 0, hash(0, 0));
+        starts[startCount++] = 0;
+    }
 
-        // Initialize zero index
-        table.add(new char[]{'\0'});
-        offset = 1;
+    /**
+     * Removes every string but the empty one at offset 0. Arena and index keep their grown size.
+     */
+    public void reset() {
+        Arrays.fill(slots, EMPTY_SLOT);
+        indexedCount = 0;
+        startCount = 0;
+        mergedOldStarts = null;
+        mergedNewStarts = null;
+        initZeroIndex();
     }
 
     public Elf64Word addString(String newString){
-        table.add(Util.toCharArray(newString));
-        Elf64Word temp = new Elf64Word(offset);
-        offset += (newString.length() + 1);
-        return temp;
+        return new Elf64Word(addStringOffset(newString));
+    }
+
+    /**
+     * Adds string to the table, unless it is already present.
+     * @return offset of the string inside the table
+     */
+    public int addStringOffset(String newString){
+        // The string is encoded after the last one, and only kept if it turns out to be new.
+        ensureCapacity(size + newString.length() * 3 + 1);
+        int start = size;
+        int end = encode(newString, start);
+        int hash = hash(start, end);
+
+        int existing = find(start, end - start, hash);
+        if(existing != EMPTY_SLOT){
+            return existing;
+        }
+
+        arena[end] = '\0';
+        size = end + 1;
+        index(start, end - start, hash);
+        if(startCount == starts.length){
+            starts = Arrays.copyOf(starts, startCount * 2);
+        }
+        starts[startCount++] = start;
+        return start;
+    }
+
+    public String getString(int offset){
+        int end = offset;
+        while(arena[end] != '\0'){
+            end++;
+        }
+        return new String(arena, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the string at given offset without creating a String for it, as long as it is ASCII.
+     *
+     * @return number of characters appended
+     */
+    public int appendString(int offset, Appendable out) throws IOException {
+        int end = offset;
+        boolean ascii = true;
+        while(arena[end] != '\0'){
+            ascii &= arena[end] >= 0;
+            end++;
+        }
+        if(!ascii){
+            String string = getString(offset);
+            out.append(string);
+            return string.length();
+        }
+        for(int i = offset; i < end; i++){
+            out.append((char) arena[i]);
+        }
+        return end - offset;
+    }
+
+    /**
+     * @return byte of the table at given offset, as written to the file
+     */
+    public byte getByte(int offset){
+        return arena[offset];
     }
 
     @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        Formatter formatter = new Formatter(sb);
+    public long getSizeInBytes(){
+        return size;
+    }
 
-        sb.append("STRING TABLE").append('\n');
-        sb.append("============").append('\n').append('\n');
+    @Override
+    public void writeTo(ByteBuffer buffer){
+        buffer.put(arena, 0, size);
+    }
 
-        String format = "%-30s%-60s\n";
+    /**
+     * Tail merging, the same thing ld -O1 does for string tables: a string that is the suffix of
+     * another one is dropped and its offset points into the tail of the longer string.
+     *
+     * Offsets handed out before this call are invalidated, use {@link #remapOffset(int)} to
+     * translate them.
+     *
+     * @return true if the table got smaller
+     */
+    public boolean mergeTails(){
+        int n = startCount - 1;      // Zero index is never merged
+        int[] order = new int[n];
+        for(int i = 0; i < n; i++){
+            order[i] = i + 1;
+        }
+        int[] lengths = new int[startCount];
+        for(int i = 1; i < startCount; i++){
+            lengths[i] = lengthAt(starts[i]);
+        }
 
-        sb.append(Const.ANSI_YELLOW);
-        formatter.format(format, "Offset", "String value");
-        sb.append(Const.ANSI_RESET);
+        sortByReversedBytes(order, 0, n, 0, lengths);
 
-        long offs = 0;
-        for (char[] chars : table) {
-            String str = String.valueOf(chars);
-            formatter.format(format, new Elf64Word(offs), str);
-            offs += str.length();
+        // Walking from the greatest reversed string down, a string whose reversed bytes are
+        // a prefix of the last kept one is a suffix of it.
+        int[] parent = new int[startCount];
+        int kept = -1;
+        boolean merged = false;
+        for(int i = n - 1; i >= 0; i--){
+            int current = order[i];
+            if(kept != -1 && isSuffix(current, kept, lengths)){
+                parent[current] = kept;
+                merged = true;
+            }
+            else {
+                parent[current] = -1;
+                kept = current;
+            }
+        }
+        if(!merged){
+            mergedOldStarts = null;
+            mergedNewStarts = null;
+            return false;
         }
 
-        return sb.toString();
+        byte[] newArena = new byte[arena.length];
+        int[] newStarts = new int[startCount];
+        int newSize = 1;
+        int[] keptStarts = new int[startCount];
+        int keptCount = 1;
+        for(int i = 1; i < startCount; i++){
+            if(parent[i] == -1){
+                System.arraycopy(arena, starts[i], newArena, newSize, lengths[i] + 1);
+                newStarts[i] = newSize;
+                keptStarts[keptCount++] = newSize;
+                newSize += lengths[i] + 1;
+            }
+        }
+        for(int i = 1; i < startCount; i++){
+            if(parent[i] != -1){
+                int p = parent[i];
+                newStarts[i] = newStarts[p] + lengths[p] - lengths[i];
+            }
+        }
+
+        mergedOldStarts = Arrays.copyOf(starts, startCount);
+        mergedNewStarts = newStarts;
+
+        arena = newArena;
+        size = newSize;
+        starts = keptStarts;
+        startCount = keptCount;
+
+        // Merged strings stay in the index, so adding them again still finds their tails.
+        Arrays.fill(slots, EMPTY_SLOT);
+        indexedCount = 0;
+        for(int i = 0; i < mergedNewStarts.length; i++){
+            int start = mergedNewStarts[i];
+            int length = lengths[i];
+            index(start, length, hash(start, start + length));
+        }
+        return true;
+    }
+
+    /**
+     * Translates an offset handed out before the last {@link #mergeTails()} call.
+     */
+    public int remapOffset(int oldOffset){
+        if(mergedOldStarts == null){
+            return oldOffset;
+        }
+        int i = Arrays.binarySearch(mergedOldStarts, oldOffset);
+        if(i < 0){
+            i = -i - 2;     // Offset points inside of a string
+        }
+        return mergedNewStarts[i] + (oldOffset - mergedOldStarts[i]);
+    }
+
+    private int lengthAt(int offset){
+        int end = offset;
+        while(arena[end] != '\0'){
+            end++;
+        }
+        return end - offset;
+    }
+
+    private boolean isSuffix(int shorter, int longer, int[] lengths){
+        int ls = lengths[shorter];
+        int ll = lengths[longer];
+        if(ls > ll){
+            return false;
+        }
+        int s = starts[shorter];
+        int l = starts[longer] + ll - ls;
+        for(int i = 0; i < ls; i++){
+            if(arena[s + i] != arena[l + i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Byte at given depth counted from the end of the string, -1 past its beginning
+    private int reversedByteAt(int string, int depth, int[] lengths){
+        int length = lengths[string];
+        return depth < length ? arena[starts[string] + length - 1 - depth] & 0xFF : -1;
+    }
+
+    /**
+     * Multikey quicksort of string numbers in [from, to) by their reversed bytes.
+     */
+    private void sortByReversedBytes(int[] order, int from, int to, int depth, int[] lengths){
+        while(to - from > 1){
+            int pivot = reversedByteAt(order[from + (to - from) / 2], depth, lengths);
+            int lt = from, i = from, gt = to;
+            while(i < gt){
+                int b = reversedByteAt(order[i], depth, lengths);
+                if(b < pivot){
+                    swap(order, lt++, i++);
+                }
+                else if(b > pivot){
+                    swap(order, i, --gt);
+                }
+                else {
+                    i++;
+                }
+            }
+            sortByReversedBytes(order, from, lt, depth, lengths);
+            sortByReversedBytes(order, gt, to, depth, lengths);
+            if(pivot == -1){
+                return;
+            }
+            from = lt;
+            to = gt;
+            depth++;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j){
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+
+    private int encode(String s, int position){
+        int len = s.length();
+        for(int i = 0; i < len; i++){
+            char c = s.charAt(i);
+            if(c < 0x80){
+                arena[position++] = (byte) c;
+            }
+            else if(c < 0x800){
+                arena[position++] = (byte) (0xC0 | (c >> 6));
+                arena[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))){
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                arena[position++] = (byte) (0xF0 | (cp >> 18));
+                arena[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                arena[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                arena[position++] = (byte) (0x80 | (cp & 0x3F));
+            }
+            else {
+                arena[position++] = (byte) (0xE0 | (c >> 12));
+                arena[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                arena[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+
+    private int hash(int from, int to){
+        int h = 0x811C9DC5;     // FNV-1a
+        for(int i = from; i < to; i++){
+            h = (h ^ (arena[i] & 0xFF)) * 0x01000193;
+        }
+        return h;
+    }
+
+    private int find(int start, int length, int hash){
+        int mask = slots.length - 1;
+        for(int slot = hash & mask; slots[slot] != EMPTY_SLOT; slot = (slot + 1) & mask){
+            if(slotHashes[slot] == hash && matches(slots[slot], start, length)){
+                return slots[slot];
+            }
+        }
+        return EMPTY_SLOT;
+    }
+
+    private boolean matches(int existing, int start, int length){
+        for(int i = 0; i < length; i++){
+            if(arena[existing + i] != arena[start + i]){
+                return false;
+            }
+        }
+        return arena[existing + length] == '\0';
+    }
+
+    private void index(int start, int length, int hash){
+        if((indexedCount + 1) * 2 > slots.length){
+            growIndex();
+        }
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while(slots[slot] != EMPTY_SLOT){
+            if(slotHashes[slot] == hash && matches(slots[slot], start, length)){
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = start;
+        slotHashes[slot] = hash;
+        indexedCount++;
+    }
+
+    private void growIndex(){
+        int[] oldSlots = slots;
+        int[] oldHashes = slotHashes;
+        slots = new int[oldSlots.length * 2];
+        Arrays.fill(slots, EMPTY_SLOT);
+        slotHashes = new int[oldSlots.length * 2];
+
+        int mask = slots.length - 1;
+        for(int i = 0; i < oldSlots.length; i++){
+            if(oldSlots[i] != EMPTY_SLOT){
+                int slot = oldHashes[i] & mask;
+                while(slots[slot] != EMPTY_SLOT){
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = oldSlots[i];
+                slotHashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity){
+        if(capacity > arena.length){
+            int newCapacity = Math.max(capacity, arena.length * 2);
+            TableGrowthEvent.commit(getSectionName(), startCount, arena.length, newCapacity);
+            arena = Arrays.copyOf(arena, newCapacity);
+        }
+    }
+
+    /**
+     * Writes a listing of every string of the table with its offset.
+     */
+    public void dump(Appendable out) throws IOException {
+        dump(out, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes a listing of at most limit strings of the table, starting with the one at position skip.
+     */
+    public void dump(Appendable out, int skip, int limit) throws IOException {
+        DumpWriter writer = new DumpWriter(out);
+        writer.append("STRING TABLE").newLine();
+        writer.append("============").newLine().newLine();
+
+        writer.highlight();
+        writer.column("Offset").column("String value", STRING_COLUMN_WIDTH).newLine();
+        writer.reset();
+
+        int end = (int) Math.min(startCount, (long) skip + limit);
+        for(int i = Math.max(skip, 0); i < end; i++){
+            writer.hexColumn(starts[i], ElfDataType.Size._4_BYTES.numOfBytes, DumpWriter.COLUMN_WIDTH);
+            writer.spaces(STRING_COLUMN_WIDTH - appendString(starts[i], out));
+            writer.newLine();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return DumpWriter.toString(this::dump);
     }
 }
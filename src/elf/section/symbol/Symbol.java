@@ -2,7 +2,9 @@ package elf.section.symbol;
 
 import elf.datatype.*;
 
-import java.math.BigInteger;
+import elf.encoding.ElfEncoder;
+
+import java.nio.ByteBuffer;
 import java.util.Formatter;
 import elf.util.Util.Const;
 
@@ -40,12 +42,12 @@ public class Symbol {
      * In executable and shared object files, this field contains a virtual address
      * for defined relocatable symbols.
      */
-    private Elf64Address symbolValue;
+    private Elf64LongAddress symbolValue;
     /**
      * contains the size associated with the symbol. If a symbol does not
      * have an associated size, or the size is unknown, this field contains zero.
      */
-    private Elf64XWord objectSize;
+    private Elf64LongXWord objectSize;
 
     public int getByteNum(){
         return nameOffset.getSize().numOfBytes +
@@ -56,13 +58,34 @@ public class Symbol {
                 objectSize.getSize().numOfBytes;
     }
 
+    public byte[] toBytes(){
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE_IN_BYTES);
+        writeTo(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the symbol at the current position of the buffer, as an ELF64 little-endian symbol.
+     */
+    public void writeTo(ByteBuffer buffer){
+        writeTo(buffer, ElfEncoder.ELF64_LSB);
+    }
+
+    /**
+     * Writes the symbol at the current position of the buffer, in the class and byte order of the encoder.
+     */
+    public void writeTo(ByteBuffer buffer, ElfEncoder encoder){
+        encoder.putSymbol(buffer, nameOffset.value().intValue(), info.value().byteValue(), other.value().byteValue(),
+                sectionTableIndex.value().shortValue(), symbolValue.value(), objectSize.value());
+    }
+
     public Symbol(){
         nameOffset = new Elf64Word(0);
         other = new Elf64Byte((short)0);
         info = new Elf64Byte((short)0);
         sectionTableIndex = new Elf64Half(0);
-        symbolValue = new Elf64Address(BigInteger.ZERO);
-        objectSize = new Elf64XWord(BigInteger.ZERO);
+        symbolValue = new Elf64LongAddress(0);
+        objectSize = new Elf64LongXWord(0);
     }
 
     public Elf64Word getNameOffset() { return nameOffset; }
@@ -83,6 +106,13 @@ public class Symbol {
         this.info.setValue(newValue);
     }
 
+    /**
+     * Packs binding and type into the value of the info field.
+     */
+    public static int makeInfo(SymbolBindings bind, SymbolType type){
+        return (bind.value << 4) | (type.value & 0x0F);
+    }
+
     public Elf64Half getSectionTableIndex() {
         return sectionTableIndex;
     }
@@ -91,19 +121,19 @@ public class Symbol {
         this.sectionTableIndex = sectionTableIndex;
     }
 
-    public Elf64Address getSymbolValue() {
+    public Elf64LongAddress getSymbolValue() {
         return symbolValue;
     }
 
-    public void setSymbolValue(Elf64Address symbolValue) {
+    public void setSymbolValue(Elf64LongAddress symbolValue) {
         this.symbolValue = symbolValue;
     }
 
-    public Elf64XWord getObjectSize() {
+    public Elf64LongXWord getObjectSize() {
         return objectSize;
     }
 
-    public void setObjectSize(Elf64XWord objectSize) {
+    public void setObjectSize(Elf64LongXWord objectSize) {
         this.objectSize = objectSize;
     }
 
@@ -164,7 +194,7 @@ public class Symbol {
         StringBuilder sb = new StringBuilder();
         Formatter formatter = new Formatter(sb);
 
-        Elf64Address offset = new Elf64Address(BigInteger.ZERO);
+        Elf64LongAddress offset = new Elf64LongAddress(0);
 
         formatter.format(Const.dbgFormat, "String table offset:", offset, nameOffset, "");
         formatter.format(Const.dbgFormat, "Type and Binding attributes:", offset, info, "");
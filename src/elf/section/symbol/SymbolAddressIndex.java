@@ -0,0 +1,180 @@
+package elf.section.symbol;
+
+import elf.reader.SymbolTableView;
+import elf.reader.SymbolView;
+import elf.util.RadixSort;
+
+import java.util.Arrays;
+
+/**
+ * Immutable index answering which symbol contains an address. Covers defined symbols with a non
+ * zero size, other than section and file symbols; a symbol contains the addresses from its value
+ * up to, not including, value + size.
+ *
+ * Symbols are kept sorted by value in primitive arrays. Lookups go through a copy of the values
+ * in Eytzinger (breadth first) order, whose first levels stay in cache, and then walk back over
+ * symbols starting before the address for as long as one of them may still reach it, so nested
+ * and overlapping symbols are found too; the innermost, latest starting one wins.
+ *
+ * Addresses are compared unsigned. Internally every address is kept with its sign bit flipped,
+ * so that plain signed comparisons order them the same way.
+ */
+public final class SymbolAddressIndex {
+    private static final int STT_SECTION = 3;
+    private static final int STT_FILE = 4;
+
+    private final long[] starts;        // Flipped, sorted
+    private final long[] ends;          // Flipped
+    private final long[] reach;         // Flipped; the largest end of this and all earlier symbols
+    private final int[] symbols;        // Index inside of the symbol table
+    private final long[] eytzinger;     // Flipped starts, in breadth first order from index 1
+    private final int[] eytzingerRanks; // Position inside of the sorted arrays for every node
+
+    private SymbolAddressIndex(long[] values, long[] sizes, int[] indexes, int count) {
+        int[] order = RadixSort.sortedOrder(values, count);
+
+        starts = new long[count];
+        ends = new long[count];
+        reach = new long[count];
+        symbols = new int[count];
+        long farthest = Long.MIN_VALUE;
+        for(int i = 0; i < count; i++){
+            int from = order[i];
+            starts[i] = flip(values[from]);
+            ends[i] = flip(values[from] + sizes[from]);
+            symbols[i] = indexes[from];
+            farthest = Math.max(farthest, ends[i]);
+            reach[i] = farthest;
+        }
+
+        eytzinger = new long[count + 1];
+        eytzingerRanks = new int[count + 1];
+        fillEytzinger(0, 1);
+    }
+
+    // In order walk of the implicit tree hands out sorted positions.
+    private int fillEytzinger(int rank, int node) {
+        if(node < eytzinger.length){
+            rank = fillEytzinger(rank, 2 * node);
+            eytzinger[node] = starts[rank];
+            eytzingerRanks[node] = rank;
+            rank = fillEytzinger(rank + 1, 2 * node + 1);
+        }
+        return rank;
+    }
+
+    private static long flip(long address) {
+        return address ^ Long.MIN_VALUE;
+    }
+
+    private static boolean isIndexed(int info, int sectionIndex, long size) {
+        int type = info & 0xF;
+        return sectionIndex != 0 && size != 0 && type != STT_SECTION && type != STT_FILE;
+    }
+
+    /**
+     * Indexes symbols of a symbol table being built. Values have to be final, as they are once
+     * the elf structure is finalized; section relative ones are indexed by their address.
+     */
+    public static SymbolAddressIndex of(SymbolTable table) {
+        int capacity = table.getSymbolCount();
+        long[] values = new long[capacity];
+        long[] sizes = new long[capacity];
+        int[] indexes = new int[capacity];
+        int count = 0;
+        for(int i = 0; i < capacity; i++){
+            if(isIndexed(table.getInfo(i), table.getSectionIndex(i), table.getSize(i))){
+                values[count] = table.getAddress(i);
+                sizes[count] = table.getSize(i);
+                indexes[count] = i;
+                count++;
+            }
+        }
+        return new SymbolAddressIndex(values, sizes, indexes, count);
+    }
+
+    /**
+     * Indexes symbols of a symbol table read from a file.
+     */
+    public static SymbolAddressIndex of(SymbolTableView table) {
+        int capacity = table.getSymbolCount();
+        long[] values = new long[capacity];
+        long[] sizes = new long[capacity];
+        int[] indexes = new int[capacity];
+        int count = 0;
+        if(capacity > 0){
+            SymbolView symbol = table.getSymbol(0);
+            for(int i = 0; i < capacity; i++){
+                symbol.moveTo(i);
+                if(isIndexed(symbol.getInfo(), symbol.getSectionIndex(), symbol.getSize())){
+                    values[count] = symbol.getValue();
+                    sizes[count] = symbol.getSize();
+                    indexes[count] = i;
+                    count++;
+                }
+            }
+        }
+        return new SymbolAddressIndex(values, sizes, indexes, count);
+    }
+
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    /**
+     * @return index inside of the symbol table of the symbol containing the address, or -1
+     */
+    public int find(long address) {
+        long key = flip(address);
+        return containing(key, lastStartingAtOrBefore(key));
+    }
+
+    /**
+     * Looks up many addresses at once. Addresses are sorted first and then matched in one forward
+     * pass over the symbols, so the cost does not depend on the symbol table fitting in cache.
+     *
+     * @return for every address, index of the symbol containing it, or -1
+     */
+    public int[] findAll(long[] addresses) {
+        int[] results = new int[addresses.length];
+        int position = -1;
+        for(int i : RadixSort.sortedOrder(addresses, addresses.length)){
+            long key = flip(addresses[i]);
+            while(position + 1 < starts.length && starts[position + 1] <= key){
+                position++;
+            }
+            results[i] = containing(key, position);
+        }
+        return results;
+    }
+
+    /**
+     * @return position inside of the sorted arrays of the last symbol starting at or before the key, or -1
+     */
+    private int lastStartingAtOrBefore(long key) {
+        int node = 1;
+        while(node < eytzinger.length){
+            node = 2 * node + (eytzinger[node] <= key ? 1 : 0);
+        }
+        // Strip the right turns taken after the last left one, which leads to the first start above the key
+        node >>>= Integer.numberOfTrailingZeros(~node) + 1;
+        int firstAbove = node == 0 ? starts.length : eytzingerRanks[node];
+        return firstAbove - 1;
+    }
+
+    private int containing(long key, int position) {
+        for(int i = position; i >= 0 && reach[i] > key; i--){
+            if(ends[i] > key){
+                return symbols[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return indexes inside of the symbol table of every indexed symbol, ordered by address
+     */
+    public int[] getSymbolsByAddress() {
+        return Arrays.copyOf(symbols, symbols.length);
+    }
+}
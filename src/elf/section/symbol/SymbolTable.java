@@ -1,51 +1,416 @@
 package elf.section.symbol;
 
-import elf.datatype.Elf64Word;
+import elf.datatype.*;
+import elf.encoding.ElfEncoder;
+import elf.metrics.TableGrowthEvent;
 import elf.section.Section;
-import elf.section.SectionHeaderEntry;
-import elf.util.Util;
+import elf.section.string.StringTable;
+import elf.util.DumpWriter;
 
-import java.util.Formatter;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
 
+/**
+ * Symbol table is stored column by column: every field of Elf64_Sym lives in its own primitive
+ * array, indexed by the symbol index. This keeps one symbol close to its 24 bytes on disk instead
+ * of an object graph of boxed data types, and lets the whole table be written in one pass.
+ *
+ * Symbol names are optionally tracked in a name to index map. Without it, symbols can only be
+ * addressed by index and the table holds nothing but the primitive columns.
+ *
+ * Local symbols have to precede the others, as sh_info tells where they end. Symbols are never
+ * moved to keep it so, as relocations refer to them by index: binding a symbol local after a
+ * non-local one is rejected instead.
+ */
 public class SymbolTable extends Section {
-    private final LinkedHashMap<String, Symbol> table;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int SHN_LORESERVE = 0xFF00;
+
+    private int[] nameOffsets;
+    private byte[] infos;
+    private byte[] others;
+    private short[] sectionIndexes;
+    private long[] values;
+    private long[] sizes;
+    private int count;
+    private int localCount;     // Symbols before this index are local, the others are not
+    private int modificationCount;
+    private IntToLongFunction sectionAddresses;     // Present only when values are relative to sections
+
+    // Present only when names are tracked
+    private final HashMap<String, Integer> nameToIndex;
+    private String[] names;
 
     public SymbolTable(){
-        super(".symtab");
-        table = new LinkedHashMap<>();
+        this(DEFAULT_CAPACITY, true);
+    }
+
+    public SymbolTable(int initialCapacity, boolean trackNames){
+        this(".symtab", initialCapacity, trackNames);
+    }
+
+    public SymbolTable(String name, int initialCapacity, boolean trackNames){
+        super(name);
+        int capacity = Math.max(initialCapacity, 1);
+
+        nameOffsets = new int[capacity];
+        infos = new byte[capacity];
+        others = new byte[capacity];
+        sectionIndexes = new short[capacity];
+        values = new long[capacity];
+        sizes = new long[capacity];
+
+        nameToIndex = trackNames ? new HashMap<>() : null;
+        names = trackNames ? new String[capacity] : null;
 
         // The first symbol table entry is reserved and must be all zeroes.
-        Symbol undSymbol = new Symbol();
-        table.put(" ", undSymbol);
+        addSymbol(" ", 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Adds symbol and returns its index. If names are tracked and a symbol with the same
+     * name already exists, its entry is overwritten.
+     */
+    public int addSymbol(String name, Symbol sym){
+        return addSymbol(name,
+                sym.getNameOffset().value().intValue(),
+                sym.getInfo().value(),
+                sym.getOther().value(),
+                sym.getSectionTableIndex().value(),
+                sym.getSymbolValue().value(),
+                sym.getObjectSize().value());
+    }
+
+    public int addSymbol(String name, int nameOffset, int info, int other, int sectionIndex, long value, long size){
+        if(nameToIndex == null){
+            return addSymbol(nameOffset, info, other, sectionIndex, value, size);
+        }
+
+        Integer existing = nameToIndex.get(name);
+        if(existing != null){
+            setSymbol(existing, nameOffset, info, other, sectionIndex, value, size);
+            return existing;
+        }
+
+        int index = addSymbol(nameOffset, info, other, sectionIndex, value, size);
+        names[index] = name;
+        nameToIndex.put(name, index);
+        return index;
+    }
+
+    /**
+     * Appends symbol without touching the name map.
+     *
+     * @throws IllegalStateException if the symbol is local and a non-local one was added already
+     */
+    public int addSymbol(int nameOffset, int info, int other, int sectionIndex, long value, long size){
+        ensureCapacity(count + 1);
+        setSymbol(count, nameOffset, info, other, sectionIndex, value, size);
+        return count++;
+    }
+
+    /**
+     * @throws IllegalStateException if the new binding would leave a local symbol after a non-local one
+     */
+    public void setSymbol(int index, int nameOffset, int info, int other, int sectionIndex, long value, long size){
+        bind(index, info);
+        modificationCount++;
+        nameOffsets[index] = nameOffset;
+        infos[index] = (byte) info;
+        others[index] = (byte) other;
+        sectionIndexes[index] = (short) sectionIndex;
+        values[index] = value;
+        sizes[index] = size;
+    }
+
+    // Keeps locals in front: a symbol may only turn local right after the last local, and
+    // non-local only if it is the last local or not local at all.
+    private void bind(int index, int info){
+        if((info & 0xF0) == 0){
+            if(index > localCount){
+                throw new IllegalStateException("Local symbol " + index + " of " + getSectionName()
+                        + " can not follow non-local symbol " + localCount);
+            }
+            localCount = Math.max(localCount, index + 1);
+        } else {
+            if(index < localCount - 1){
+                throw new IllegalStateException("Symbol " + index + " of " + getSectionName()
+                        + " can not become non-local, local symbols follow it");
+            }
+            localCount = Math.min(localCount, index);
+        }
+    }
+
+    /**
+     * Makes values of symbols defined in a section relative to that section: the address layout
+     * gave the section is added to them when the table is written. Values in the table stay
+     * relative, so the file can be laid out again. Undefined symbols, and those of reserved
+     * indexes such as SHN_ABS, are written as they are.
+     *
+     * @param sectionAddresses address of a section, given its index
+     */
+    public void setSectionRelative(IntToLongFunction sectionAddresses){
+        this.sectionAddresses = sectionAddresses;
+    }
+
+    public boolean isSectionRelative(){ return sectionAddresses != null; }
+
+    /**
+     * @return value of the symbol as it is written: relative to no section, once the file is laid out
+     */
+    public long getAddress(int index){
+        int sectionIndex = getSectionIndex(index);
+        if(sectionAddresses == null || sectionIndex == 0 || sectionIndex >= SHN_LORESERVE){
+            return values[index];
+        }
+        return values[index] + sectionAddresses.applyAsLong(sectionIndex);
+    }
+
+    /**
+     * Removes every symbol but the reserved first one. Grown columns are kept for the symbols to come.
+     */
+    public void reset(){
+        if(names != null){
+            Arrays.fill(names, 0, count, null);
+            nameToIndex.clear();
+        }
+        count = 0;
+        localCount = 0;
+        addSymbol(" ", 0, 0, 0, 0, 0, 0);
+    }
+
+    public void ensureCapacity(int capacity){
+        if(capacity <= nameOffsets.length){
+            return;
+        }
+        int newCapacity = Math.max(capacity, nameOffsets.length + (nameOffsets.length >> 1));
+        TableGrowthEvent.commit(getSectionName(), count, (long) nameOffsets.length * Symbol.SIZE_IN_BYTES,
+                (long) newCapacity * Symbol.SIZE_IN_BYTES);
+
+        nameOffsets = Arrays.copyOf(nameOffsets, newCapacity);
+        infos = Arrays.copyOf(infos, newCapacity);
+        others = Arrays.copyOf(others, newCapacity);
+        sectionIndexes = Arrays.copyOf(sectionIndexes, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        if(names != null){
+            names = Arrays.copyOf(names, newCapacity);
+        }
+    }
+
+    /**
+     * @return index of the symbol with given name, or -1 if there is no such symbol
+     *         or names are not tracked.
+     */
+    public int indexOf(String name){
+        if(nameToIndex == null){
+            return -1;
+        }
+        Integer index = nameToIndex.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public boolean isTrackingNames(){ return nameToIndex != null; }
+
+    public int getSymbolCount(){ return count; }
+
+    public String getName(int index){ return names == null ? null : names[index]; }
+
+    public int getNameOffset(int index){ return nameOffsets[index]; }
+
+    public void setNameOffset(int index, int nameOffset){
+        nameOffsets[index] = nameOffset;
+        modificationCount++;
+    }
+
+    /**
+     * @return number of changes to the symbols, their names and their order so far, which tables
+     * derived from the symbols, such as {@link elf.section.hash.GnuHashTable}, compare to tell if
+     * they are stale. Values and sizes, which layout sets, and name offsets remapped to the same
+     * names do not count.
+     */
+    public int getModificationCount(){ return modificationCount; }
+
+    /**
+     * Translates all name offsets after the string table got tail merged.
+     */
+    public void remapNameOffsets(StringTable stringTable){
+        for(int i = 0; i < count; i++){
+            nameOffsets[i] = stringTable.remapOffset(nameOffsets[i]);
+        }
+    }
+
+    public int getInfo(int index){ return infos[index] & 0xFF; }
+
+    public int getOther(int index){ return others[index] & 0xFF; }
+
+    public int getSectionIndex(int index){ return sectionIndexes[index] & 0xFFFF; }
+
+    public long getValue(int index){ return values[index]; }
+
+    public void setValue(int index, long value){ values[index] = value; }
+
+    public long getSize(int index){ return sizes[index]; }
+
+    public void setSize(int index, long size){ sizes[index] = size; }
+
+    /**
+     * Reorders symbols so that the symbol at index i is the one previously at index order[i].
+     * Order has to cover every symbol, keep the reserved entry 0 in place and local symbols in front.
+     */
+    public void permute(int[] order){
+        if(order.length != count || order[0] != 0){
+            throw new IllegalArgumentException("Order has to cover all " + count + " symbols, starting with 0");
+        }
+        for(int i = 0; i < count; i++){
+            if((order[i] < localCount) != (i < localCount)){
+                throw new IllegalArgumentException("Order has to keep the " + localCount + " local symbols in front");
+            }
+        }
+        int[] newNameOffsets = new int[nameOffsets.length];
+        byte[] newInfos = new byte[infos.length];
+        byte[] newOthers = new byte[others.length];
+        short[] newSectionIndexes = new short[sectionIndexes.length];
+        long[] newValues = new long[values.length];
+        long[] newSizes = new long[sizes.length];
+        String[] newNames = names == null ? null : new String[names.length];
+
+        for(int i = 0; i < count; i++){
+            int from = order[i];
+            newNameOffsets[i] = nameOffsets[from];
+            newInfos[i] = infos[from];
+            newOthers[i] = others[from];
+            newSectionIndexes[i] = sectionIndexes[from];
+            newValues[i] = values[from];
+            newSizes[i] = sizes[from];
+            if(newNames != null){
+                newNames[i] = names[from];
+                // Names are unique inside of the map, so no entry gets moved twice
+                Integer mapped = names[from] == null ? null : nameToIndex.get(names[from]);
+                if(mapped != null && mapped == from){
+                    nameToIndex.put(names[from], i);
+                }
+            }
+        }
+
+        nameOffsets = newNameOffsets;
+        infos = newInfos;
+        others = newOthers;
+        sectionIndexes = newSectionIndexes;
+        values = newValues;
+        sizes = newSizes;
+        names = newNames;
+        modificationCount++;
     }
 
-    public void addSymbol(String name, Symbol sym){
-        table.put(name, sym);
+    /**
+     * Materializes one row as a {@link Symbol}. Meant for debugging and interop only.
+     */
+    public Symbol getSymbol(int index){
+        Symbol sym = new Symbol();
+        sym.setNameOffset(new Elf64Word(getNameOffset(index) & 0xFFFFFFFFL));
+        sym.setInfo(new Elf64Byte((short) getInfo(index)));
+        sym.setOther(new Elf64Byte((short) getOther(index)));
+        sym.setSectionTableIndex(new Elf64Half(getSectionIndex(index)));
+        sym.setSymbolValue(new Elf64LongAddress(values[index]));
+        sym.setObjectSize(new Elf64LongXWord(sizes[index]));
+        return sym;
     }
 
+    /**
+     * For symbol table sh_info holds one greater than the index of the last local symbol.
+     */
     @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        Formatter formatter = new Formatter(sb);
+    public long getHeaderInfo(){
+        return localCount;
+    }
 
-        sb.append("SYMBOL TABLE").append('\n');
-        sb.append("============").append('\n').append('\n');
+    /**
+     * Values of function symbols are set once text is laid out, see {@link elf.section.text.Text#onLayout()},
+     * and section relative values are written with the address of their section.
+     */
+    @Override
+    public boolean refersToAddresses(){
+        return true;
+    }
 
-        sb.append(Util.Const.ANSI_YELLOW);
-        formatter.format(Util.Const.tableDbgFormat, "Value", "Size", "Info (Binding|Type)", "Other", "Sect. Tab. Index", "Name");
-        sb.append(Util.Const.ANSI_RESET);
+    @Override
+    public long getDefaultAlignment(){
+        return 8;
+    }
 
-        Set<Map.Entry<String, Symbol>> set = table.entrySet();
-        for(Map.Entry<String, Symbol> e : set){
-            Symbol sym = e.getValue();
-            formatter.format(Util.Const.tableDbgFormat, sym.getSymbolValue(),
-                    sym.getObjectSize(), sym.getInfo(), sym.getOther(), sym.getSectionTableIndex(), e.getKey());
+    @Override
+    public long getSizeInBytes(){
+        return (long) count * getEncoder().getSymbolSize();
+    }
+
+    /**
+     * Writes every symbol, in the Elf_Sym layout of the encoder, at the current position of the buffer.
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer){
+        ElfEncoder encoder = getEncoder();
+        for(int i = 0; i < count; i++){
+            long value = sectionAddresses == null ? values[i] : getAddress(i);
+            encoder.putSymbol(buffer, nameOffsets[i], infos[i], others[i], sectionIndexes[i], value, sizes[i]);
         }
-        sb.append('\n');
+    }
+
+    /**
+     * Writes a listing of every symbol of the table.
+     */
+    public void dump(Appendable out) throws IOException {
+        dump(out, index -> true, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes a listing of the symbols accepted by the filter, paged: the first skip accepted
+     * symbols are left out, and at most limit are written. Names are taken from the tracked names,
+     * or from the linked string table, and are shown as offsets if there is neither.
+     *
+     * @param filter tests the index of a symbol
+     */
+    public void dump(Appendable out, IntPredicate filter, int skip, int limit) throws IOException {
+        DumpWriter writer = new DumpWriter(out);
+        writer.append("SYMBOL TABLE").newLine();
+        writer.append("============").newLine().newLine();
+
+        writer.highlight();
+        writer.column("Value").column("Size").column("Info (Binding|Type)").column("Other").column("Sect. Tab. Index")
+                .column("Name", DumpWriter.LAST_COLUMN_WIDTH).newLine();
+        writer.reset();
 
-        return sb.toString();
+        StringTable strings = getLink() instanceof StringTable ? (StringTable) getLink() : null;
+        int matched = 0;
+        int written = 0;
+        for(int i = 0; i < count && written < limit; i++){
+            if(!filter.test(i) || matched++ < skip){
+                continue;
+            }
+            writer.hexColumn(values[i], Long.BYTES, DumpWriter.COLUMN_WIDTH);
+            writer.hexColumn(sizes[i], Long.BYTES, DumpWriter.COLUMN_WIDTH);
+            writer.hexColumn(getInfo(i), Byte.BYTES, DumpWriter.COLUMN_WIDTH);
+            writer.hexColumn(getOther(i), Byte.BYTES, DumpWriter.COLUMN_WIDTH);
+            writer.hexColumn(getSectionIndex(i), Short.BYTES, DumpWriter.COLUMN_WIDTH);
+            if(names != null){
+                writer.column(names[i], DumpWriter.LAST_COLUMN_WIDTH);
+            } else if(strings != null){
+                writer.spaces(DumpWriter.LAST_COLUMN_WIDTH - strings.appendString(nameOffsets[i], out));
+            } else {
+                writer.decimalColumn(nameOffsets[i], DumpWriter.LAST_COLUMN_WIDTH);
+            }
+            writer.newLine();
+            written++;
+        }
+        writer.newLine();
+    }
+
+    @Override
+    public String toString() {
+        return DumpWriter.toString(this::dump);
     }
 }
@@ -0,0 +1,103 @@
+package elf.section.text;
+
+import jnr.x86asm.Assembler;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Reaches the code buffer and the pending relocations of asmtk {@link Assembler}. Both are
+ * package private in the library, and going through {@code Assembler.relocCode} would copy the
+ * code and resolve relocations against an absolute address, instead of leaving them to the linker.
+ */
+final class AsmtkAccess {
+    private static final Field BUFFER;
+    private static final Field BUFFER_BYTES;
+    private static final Field RELOC_DATA;
+    private static final Field RELOC_TYPE;
+    private static final Field RELOC_SIZE;
+    private static final Field RELOC_OFFSET;
+    private static final Field RELOC_DESTINATION;
+
+    static {
+        try {
+            BUFFER = accessible(Assembler.class.getDeclaredField("_buffer"));
+            BUFFER_BYTES = accessible(Class.forName("jnr.x86asm.CodeBuffer").getDeclaredField("buf"));
+            RELOC_DATA = accessible(Assembler.class.getDeclaredField("_relocData"));
+
+            Class<?> relocData = Class.forName("jnr.x86asm.RelocData");
+            RELOC_TYPE = accessible(relocData.getDeclaredField("type"));
+            RELOC_SIZE = accessible(relocData.getDeclaredField("size"));
+            RELOC_OFFSET = accessible(relocData.getDeclaredField("offset"));
+            RELOC_DESTINATION = accessible(relocData.getDeclaredField("destination"));
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private AsmtkAccess() { }
+
+    private static Field accessible(Field field) {
+        field.setAccessible(true);
+        return field;
+    }
+
+    /**
+     * @return read only view of the emitted code, from 0 to the current offset of the assembler.
+     *         Trampolines are not part of it.
+     */
+    static ByteBuffer code(Assembler assembler) {
+        try {
+            ByteBuffer bytes = ((ByteBuffer) BUFFER_BYTES.get(BUFFER.get(assembler))).asReadOnlyBuffer();
+            bytes.limit(assembler.offset()).position(0);
+            return bytes;
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static List<?> relocations(Assembler assembler) {
+        try {
+            return (List<?>) RELOC_DATA.get(assembler);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @return name of the relocation type: ABSOLUTE_TO_ABSOLUTE, RELATIVE_TO_ABSOLUTE,
+     *         ABSOLUTE_TO_RELATIVE or ABSOLUTE_TO_RELATIVE_TRAMPOLINE
+     */
+    static String type(Object relocation) {
+        try {
+            return ((Enum<?>) RELOC_TYPE.get(relocation)).name();
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static int size(Object relocation) {
+        try {
+            return RELOC_SIZE.getInt(relocation);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static int offset(Object relocation) {
+        try {
+            return RELOC_OFFSET.getInt(relocation);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static long destination(Object relocation) {
+        try {
+            return RELOC_DESTINATION.getLong(relocation);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
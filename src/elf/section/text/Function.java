@@ -0,0 +1,74 @@
+package elf.section.text;
+
+import jnr.x86asm.Asm;
+import jnr.x86asm.Assembler;
+
+import java.util.Arrays;
+
+/**
+ * One function being assembled. Code goes straight into its own asmtk {@link Assembler}; calls to
+ * other symbols are emitted with a zero displacement and remembered, so that {@link Text} can turn
+ * them into relocations once the function is appended to the section.
+ */
+public class Function {
+    private final String name;
+    private final Assembler assembler;
+
+    // Call sites: offset of the displacement inside of the function, and the called symbol
+    private int[] callOffsets;
+    private String[] callTargets;
+    private int callCount;
+
+    public Function(String name) {
+        this.name = name;
+        this.assembler = new Assembler(Asm.X86_64);
+        this.callOffsets = new int[4];
+        this.callTargets = new String[4];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Assembler assembler() {
+        return assembler;
+    }
+
+    /**
+     * Emits a call to the symbol with given name. The symbol does not have to be defined yet.
+     */
+    public void call(String target) {
+        assembler.call(0L);
+        if(callCount == callOffsets.length){
+            callOffsets = Arrays.copyOf(callOffsets, callCount * 2);
+            callTargets = Arrays.copyOf(callTargets, callCount * 2);
+        }
+        callOffsets[callCount] = assembler.offset() - 4;
+        callTargets[callCount] = target;
+        callCount++;
+    }
+
+    public int size() {
+        return assembler.offset();
+    }
+
+    int getCallCount() {
+        return callCount;
+    }
+
+    int getCallOffset(int index) {
+        return callOffsets[index];
+    }
+
+    String getCallTarget(int index) {
+        return callTargets[index];
+    }
+
+    /**
+     * @return index of the call site whose displacement starts at the offset, or -1
+     */
+    int findCall(int offset) {
+        int i = Arrays.binarySearch(callOffsets, 0, callCount, offset);
+        return i < 0 ? -1 : i;
+    }
+}
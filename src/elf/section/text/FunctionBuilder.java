@@ -0,0 +1,8 @@
+package elf.section.text;
+
+/**
+ * Emits the body of one function, through the assembler of given function.
+ */
+public interface FunctionBuilder {
+    void build(Function function);
+}
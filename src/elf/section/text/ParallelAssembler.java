@@ -0,0 +1,85 @@
+package elf.section.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Assembles a batch of independent functions on a fork join pool, and appends them to the text
+ * section. Each function has its own assembler, so bodies are emitted in parallel; appending is
+ * done serially, in the order functions were added, which makes the section, its symbols and its
+ * relocations byte for byte the same as if the functions were assembled one after another.
+ *
+ * Functions are assembled in windows, so that only one window of assembled code is held at a time.
+ */
+public class ParallelAssembler {
+    private static final int WINDOW_SIZE = 1024;
+    private static final int FUNCTIONS_PER_TASK = 4;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<FunctionBuilder> builders = new ArrayList<>();
+
+    public ParallelAssembler add(String name, FunctionBuilder builder) {
+        names.add(name);
+        builders.add(builder);
+        return this;
+    }
+
+    public int getFunctionCount() {
+        return names.size();
+    }
+
+    /**
+     * @return indexes of function symbols inside of symbol table, in the order functions were added
+     */
+    public int[] appendTo(Text text) {
+        return appendTo(text, ForkJoinPool.commonPool());
+    }
+
+    public int[] appendTo(Text text, ForkJoinPool pool) {
+        int[] symbols = new int[names.size()];
+        Function[] window = new Function[Math.min(WINDOW_SIZE, names.size())];
+
+        for(int from = 0; from < names.size(); from += WINDOW_SIZE){
+            int count = Math.min(WINDOW_SIZE, names.size() - from);
+            pool.invoke(new AssembleTask(window, from, 0, count));
+
+            for(int i = 0; i < count; i++){
+                symbols[from + i] = text.appendFunction(window[i]);
+                window[i] = null;
+            }
+        }
+        return symbols;
+    }
+
+    private final class AssembleTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Function[] window;
+        private final int base;
+        private final int from;
+        private final int to;
+
+        AssembleTask(Function[] window, int base, int from, int to) {
+            this.window = window;
+            this.base = base;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= FUNCTIONS_PER_TASK){
+                for(int i = from; i < to; i++){
+                    Function function = new Function(names.get(base + i));
+                    builders.get(base + i).build(function);
+                    window[i] = function;
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new AssembleTask(window, base, from, middle), new AssembleTask(window, base, middle, to));
+        }
+    }
+}
@@ -1,10 +1,273 @@
 package elf.section.text;
 
 import elf.section.Section;
+import elf.section.relocation.RelocationTable;
+import elf.section.relocation.RelocationType;
+import elf.section.string.StringTable;
+import elf.section.symbol.Symbol;
+import elf.section.symbol.SymbolTable;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Executable code of the program. Functions are assembled through asmtk and appended, aligned,
+ * to a growable direct buffer, which is what ends up in the file. Every function gets a symbol in
+ * the symbol table, and every relocation asmtk recorded for it becomes an entry of the
+ * relocation section of text.
+ *
+ * Symbol values and relocation offsets are kept relative to the start of the section; symbol
+ * values are moved to virtual addresses when the section gets its address in layout.
+ */
 public class Text extends Section {
+    public static final long DEFAULT_FUNCTION_ALIGNMENT = 16;
+    private static final byte NOP = (byte) 0x90;
+    private static final int INITIAL_CAPACITY = 64 << 10;
+
+    private final SymbolTable symbolTable;
+    private final StringTable stringTable;
+    private final HashMap<String, Integer> symbolIndexes;
+    private long functionAlignment;
+
+    private ByteBuffer code;
+    private long releasedSize = -1;
+    private Function current;
+
+    // Functions defined in this section
+    private int[] functionSymbols;
+    private long[] functionStarts;
+    private int functionCount;
 
-    public Text() {
+    private final RelocationTable relocations;
+
+    public Text(SymbolTable symbolTable, StringTable stringTable) {
         super(".text");
+        this.symbolTable = symbolTable;
+        this.stringTable = stringTable;
+        this.symbolIndexes = new HashMap<>();
+        this.functionAlignment = DEFAULT_FUNCTION_ALIGNMENT;
+
+        code = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+        functionSymbols = new int[16];
+        functionStarts = new long[16];
+        relocations = new RelocationTable(".rela.text");
+    }
+
+    /**
+     * Removes every function and relocation, keeping the code buffer for the functions to come.
+     * Symbols of the removed functions are left to the symbol table, which is reset on its own.
+     */
+    public void reset() {
+        if(releasedSize >= 0){
+            code = ByteBuffer.allocateDirect(INITIAL_CAPACITY);
+            releasedSize = -1;
+        }
+        code.clear();
+        current = null;
+        functionCount = 0;
+        functionAlignment = DEFAULT_FUNCTION_ALIGNMENT;
+        symbolIndexes.clear();
+        relocations.reset();
+    }
+
+    public void setFunctionAlignment(long functionAlignment) {
+        this.functionAlignment = functionAlignment;
+    }
+
+    public long getFunctionAlignment() {
+        return functionAlignment;
+    }
+
+    /**
+     * Starts a new function. Code is emitted through the assembler of returned function, until
+     * {@link #endFunction()} is called.
+     */
+    public Function beginFunction(String name) {
+        if(current != null){
+            throw new IllegalStateException("Function " + current.getName() + " is not ended");
+        }
+        current = new Function(name);
+        return current;
+    }
+
+    /**
+     * Appends the current function to the section.
+     *
+     * @return index of the function symbol inside of symbol table
+     */
+    public int endFunction() {
+        if(current == null){
+            throw new IllegalStateException("No function is started");
+        }
+        Function function = current;
+        current = null;
+        return appendFunction(function);
+    }
+
+    /**
+     * Appends an assembled function to the section: pads to function alignment, copies the code,
+     * defines the function symbol and records its relocations.
+     *
+     * @return index of the function symbol inside of symbol table
+     */
+    public int appendFunction(Function function) {
+        long start = align(getCurrentOffset());
+        padTo(start);
+
+        ByteBuffer functionCode = AsmtkAccess.code(function.assembler());
+        ensureCapacity(functionCode.remaining());
+        code.put(functionCode);
+
+        int symbol = defineFunction(function.getName(), start, function.size());
+        addRelocations(function, start, symbol);
+        return symbol;
+    }
+
+    /**
+     * @return offset inside of the section at which the next byte of code goes
+     */
+    public long getCurrentOffset() {
+        return code.position() + (current == null ? 0 : current.size());
+    }
+
+    private long align(long offset) {
+        long alignment = Math.max(functionAlignment, 1);
+        return (offset + alignment - 1) & -alignment;
+    }
+
+    private void padTo(long offset) {
+        ensureCapacity((int) (offset - code.position()));
+        while(code.position() < offset){
+            code.put(NOP);
+        }
+    }
+
+    private void ensureCapacity(int additional) {
+        if(code.remaining() >= additional){
+            return;
+        }
+        int capacity = Math.max(code.capacity() * 2, code.position() + additional);
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        code.flip();
+        grown.put(code);
+        code = grown;
+    }
+
+    private int defineFunction(String name, long start, long size) {
+        int info = Symbol.makeInfo(Symbol.SymbolBindings.STB_GLOBAL, Symbol.SymbolType.STT_FUNC);
+        Integer existing = symbolIndexes.get(name);
+        int symbol;
+        if(existing != null){
+            // Symbol was referenced before it got defined
+            symbol = existing;
+            symbolTable.setSymbol(symbol, symbolTable.getNameOffset(symbol), info, 0, getSectionIndex(), start, size);
+        }
+        else {
+            symbol = symbolTable.addSymbol(name, stringTable.addStringOffset(name), info, 0, getSectionIndex(), start, size);
+            symbolIndexes.put(name, symbol);
+        }
+
+        if(functionCount == functionSymbols.length){
+            functionSymbols = Arrays.copyOf(functionSymbols, functionCount * 2);
+            functionStarts = Arrays.copyOf(functionStarts, functionCount * 2);
+        }
+        functionSymbols[functionCount] = symbol;
+        functionStarts[functionCount] = start;
+        functionCount++;
+        return symbol;
+    }
+
+    /**
+     * @return index of the symbol with given name, added as undefined if it is not known yet
+     */
+    public int symbolFor(String name) {
+        Integer existing = symbolIndexes.get(name);
+        if(existing != null){
+            return existing;
+        }
+        int info = Symbol.makeInfo(Symbol.SymbolBindings.STB_GLOBAL, Symbol.SymbolType.STT_NOTYPE);
+        int symbol = symbolTable.addSymbol(name, stringTable.addStringOffset(name), info, 0, 0, 0, 0);
+        symbolIndexes.put(name, symbol);
+        return symbol;
+    }
+
+    private void addRelocations(Function function, long start, int functionSymbol) {
+        for(Object relocation : AsmtkAccess.relocations(function.assembler())){
+            int offset = AsmtkAccess.offset(relocation);
+            long destination = AsmtkAccess.destination(relocation);
+            boolean wide = AsmtkAccess.size(relocation) == 8;
+
+            switch (AsmtkAccess.type(relocation)){
+                case "ABSOLUTE_TO_RELATIVE":
+                case "ABSOLUTE_TO_RELATIVE_TRAMPOLINE":
+                    int call = function.findCall(offset);
+                    if(call != -1){
+                        addRelocation(start + offset, symbolFor(function.getCallTarget(call)),
+                                RelocationType.R_X86_64_PLT32, -4);
+                    }
+                    else {
+                        // Jump to an absolute address, displacement is counted from the end of the field
+                        addRelocation(start + offset, 0, RelocationType.R_X86_64_PC32, destination - 4);
+                    }
+                    break;
+                case "ABSOLUTE_TO_ABSOLUTE":
+                    addRelocation(start + offset, 0,
+                            wide ? RelocationType.R_X86_64_64 : RelocationType.R_X86_64_32, destination);
+                    break;
+                case "RELATIVE_TO_ABSOLUTE":
+                    // Destination is relative to the start of the function
+                    addRelocation(start + offset, functionSymbol,
+                            wide ? RelocationType.R_X86_64_64 : RelocationType.R_X86_64_32, destination);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown asmtk relocation " + AsmtkAccess.type(relocation));
+            }
+        }
+    }
+
+    public void addRelocation(long offset, int symbol, RelocationType type, long addend) {
+        relocations.addRelocation(offset, symbol, type, addend);
+    }
+
+    /**
+     * @return relocation section holding the entries against this section
+     */
+    public RelocationTable getRelocations() { return relocations; }
+
+    public int getFunctionCount() { return functionCount; }
+
+    /**
+     * Function symbols hold the address of the function, once section has its own.
+     */
+    @Override
+    public void onLayout() {
+        long address = getHeaderEntry().getVirtualMemoryAddress().value();
+        for(int i = 0; i < functionCount; i++){
+            symbolTable.setValue(functionSymbols[i], address + functionStarts[i]);
+        }
+    }
+
+    @Override
+    public long getDefaultAlignment() {
+        return DEFAULT_FUNCTION_ALIGNMENT;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return releasedSize >= 0 ? releasedSize : code.position();
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        ByteBuffer contents = code.duplicate();
+        contents.flip();
+        buffer.put(contents);
+    }
+
+    @Override
+    public void releaseContents() {
+        releasedSize = code.position();
+        code = ByteBuffer.allocateDirect(0);
     }
 }
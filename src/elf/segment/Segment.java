@@ -1,4 +1,46 @@
 package elf.segment;
 
+import elf.programinfo.ProgramHeaderEntry;
+import elf.programinfo.ProgramHeaderEntry.SegmentType;
+import elf.section.Section;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Part of the file described by one program header entry, together with the sections it spans.
+ * Loadable segments become one mapping each when the file is loaded; segments of other types,
+ * such as the one of the program header table itself, may span no section at all.
+ */
 public class Segment {
+    private final ProgramHeaderEntry headerEntry;
+    private final ArrayList<Section> sections = new ArrayList<>();
+
+    public Segment(SegmentType type, int flags) {
+        headerEntry = new ProgramHeaderEntry(type, flags);
+    }
+
+    public ProgramHeaderEntry getHeaderEntry() { return headerEntry; }
+
+    /**
+     * Adds section to the ones the segment spans, which are kept in the order of their addresses.
+     */
+    public void addSection(Section section) {
+        sections.add(section);
+    }
+
+    public List<Section> getSections() { return sections; }
+
+    public boolean isOfType(SegmentType type) {
+        return headerEntry.isOfType(type);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(SegmentType.nameOf(headerEntry.getSegmentType().value()));
+        for(Section section : sections){
+            sb.append(' ').append(section.getSectionName());
+        }
+        return sb.toString();
+    }
 }
@@ -0,0 +1,173 @@
+package elf.util;
+
+import elf.datatype.ElfDataType;
+import elf.datatype.ElfLongDataType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+
+/**
+ * Writes human readable dumps of elf structures, row by row, straight to an {@link Appendable}.
+ * Values are rendered through a lookup table into one reused character buffer, so a row costs no
+ * allocation and a dump of any size needs no more memory than the destination keeps.
+ *
+ * Values are shown as in the rest of the debug output: bytes in hex, most significant first,
+ * each followed by a space. Columns are left aligned and padded with spaces to their width.
+ */
+public final class DumpWriter {
+    public static final int COLUMN_WIDTH = 30;
+    public static final int LAST_COLUMN_WIDTH = 32;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final String SPACES = " ".repeat(64);
+
+    private final Appendable out;
+    private final char[] scratch = new char[64];
+    private final CharBuffer scratchView = CharBuffer.wrap(scratch);
+
+    public DumpWriter(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Something that can dump itself to an {@link Appendable}.
+     */
+    public interface Dumpable {
+        void dump(Appendable out) throws IOException;
+    }
+
+    /**
+     * Dumps into a string. Meant for toString methods.
+     */
+    public static String toString(Dumpable dumpable) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            dumpable.dump(sb);
+        } catch (IOException ex) {
+            // StringBuilder does not throw
+            throw new UncheckedIOException(ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Renders value as hex bytes, most significant first, each followed by a space.
+     *
+     * @return number of characters written, three per byte
+     */
+    public static int toHex(long value, int numOfBytes, char[] chars, int at) {
+        for(int i = 0; i < numOfBytes; i++){
+            int b = (int) (value >>> ((numOfBytes - 1 - i) * 8)) & 0xFF;
+            chars[at++] = HEX_DIGITS[b >>> 4];
+            chars[at++] = HEX_DIGITS[b & 0x0F];
+            chars[at++] = ' ';
+        }
+        return numOfBytes * 3;
+    }
+
+    public DumpWriter append(CharSequence text) throws IOException {
+        out.append(text);
+        return this;
+    }
+
+    public DumpWriter append(char c) throws IOException {
+        out.append(c);
+        return this;
+    }
+
+    public DumpWriter newLine() throws IOException {
+        out.append('\n');
+        return this;
+    }
+
+    public DumpWriter highlight() throws IOException {
+        out.append(Util.Const.ANSI_YELLOW);
+        return this;
+    }
+
+    public DumpWriter reset() throws IOException {
+        out.append(Util.Const.ANSI_RESET);
+        return this;
+    }
+
+    public DumpWriter column(CharSequence text, int width) throws IOException {
+        if(text == null){
+            text = "null";
+        }
+        out.append(text);
+        return spaces(width - text.length());
+    }
+
+    public DumpWriter column(CharSequence text) throws IOException {
+        return column(text, COLUMN_WIDTH);
+    }
+
+    public DumpWriter column(ElfDataType<?> value) throws IOException {
+        return hexColumn(value.value().longValue(), value.getSize().numOfBytes, COLUMN_WIDTH);
+    }
+
+    public DumpWriter column(ElfLongDataType value) throws IOException {
+        return hexColumn(value.value(), value.getSize().numOfBytes, COLUMN_WIDTH);
+    }
+
+    public DumpWriter hexColumn(long value, int numOfBytes, int width) throws IOException {
+        int length = toHex(value, numOfBytes, scratch, 0);
+        out.append(scratchView, 0, length);
+        return spaces(width - length);
+    }
+
+    public DumpWriter decimalColumn(long value, int width) throws IOException {
+        int at = scratch.length;
+        long rest = Math.abs(value);
+        do {
+            scratch[--at] = (char) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while(rest != 0);
+        if(value < 0){
+            scratch[--at] = '-';
+        }
+        out.append(scratchView, at, scratch.length);
+        return spaces(width - (scratch.length - at));
+    }
+
+    /**
+     * Writes one row of a field listing: name, offset of the field, its value and a note.
+     */
+    public DumpWriter field(CharSequence name, long offset, ElfDataType<?> value, CharSequence note) throws IOException {
+        fieldStart(name, offset).column(value);
+        return fieldEnd(note);
+    }
+
+    public DumpWriter field(CharSequence name, long offset, ElfLongDataType value, CharSequence note) throws IOException {
+        fieldStart(name, offset).column(value);
+        return fieldEnd(note);
+    }
+
+    public DumpWriter field(CharSequence name, long offset, CharSequence value, CharSequence note) throws IOException {
+        fieldStart(name, offset).column(value);
+        return fieldEnd(note);
+    }
+
+    private DumpWriter fieldStart(CharSequence name, long offset) throws IOException {
+        column(name);
+        return hexColumn(offset, ElfDataType.Size._8_BYTES.numOfBytes, COLUMN_WIDTH);
+    }
+
+    private DumpWriter fieldEnd(CharSequence note) throws IOException {
+        column(note, LAST_COLUMN_WIDTH);
+        return newLine();
+    }
+
+    /**
+     * Writes count spaces; nothing if count is not positive. Pads a column written straight to
+     * the destination.
+     */
+    public DumpWriter spaces(int count) throws IOException {
+        while(count > 0){
+            int chunk = Math.min(count, SPACES.length());
+            out.append(SPACES, 0, chunk);
+            count -= chunk;
+        }
+        return this;
+    }
+}
@@ -0,0 +1,89 @@
+package elf.util;
+
+import java.util.Arrays;
+
+/**
+ * Least significant digit radix sort over unsigned long keys, sixteen bits per pass. Instead of
+ * moving the keys it returns the sorted order of their indexes, so callers keeping their data in
+ * parallel primitive columns can permute every column the same way.
+ *
+ * Sort is stable. Passes over digits that are equal for every key are skipped, so keys using only
+ * the low bits - file offsets, addresses within one image - cost two or three passes.
+ */
+public final class RadixSort {
+    private static final int BITS = 16;
+    private static final int RADIX = 1 << BITS;
+    private static final int MASK = RADIX - 1;
+
+    private RadixSort() {
+    }
+
+    /**
+     * @return indexes of the first {@code count} keys, ordered by key
+     */
+    public static int[] sortedOrder(long[] keys, int count) {
+        int[] order = new int[count];
+        for(int i = 0; i < count; i++){
+            order[i] = i;
+        }
+        if(isSorted(keys, count)){
+            return order;
+        }
+
+        int[] scratch = new int[count];
+        int[] histogram = new int[RADIX];
+        for(int shift = 0; shift < Long.SIZE; shift += BITS){
+            Arrays.fill(histogram, 0);
+            for(int i = 0; i < count; i++){
+                histogram[(int) (keys[i] >>> shift) & MASK]++;
+            }
+            if(histogram[(int) (keys[0] >>> shift) & MASK] == count){
+                continue;
+            }
+
+            int sum = 0;
+            for(int digit = 0; digit < RADIX; digit++){
+                int digitCount = histogram[digit];
+                histogram[digit] = sum;
+                sum += digitCount;
+            }
+            for(int i = 0; i < count; i++){
+                int index = order[i];
+                scratch[histogram[(int) (keys[index] >>> shift) & MASK]++] = index;
+            }
+
+            int[] swap = order;
+            order = scratch;
+            scratch = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Reorders the first {@code order.length} elements of the column as given by the order.
+     *
+     * @param scratch array at least as long as the order, overwritten
+     */
+    public static void permute(long[] column, int[] order, long[] scratch) {
+        for(int i = 0; i < order.length; i++){
+            scratch[i] = column[order[i]];
+        }
+        System.arraycopy(scratch, 0, column, 0, order.length);
+    }
+
+    public static void permute(int[] column, int[] order, int[] scratch) {
+        for(int i = 0; i < order.length; i++){
+            scratch[i] = column[order[i]];
+        }
+        System.arraycopy(scratch, 0, column, 0, order.length);
+    }
+
+    public static boolean isSorted(long[] keys, int count) {
+        for(int i = 1; i < count; i++){
+            if(Long.compareUnsigned(keys[i - 1], keys[i]) > 0){
+                return false;
+            }
+        }
+        return true;
+    }
+}